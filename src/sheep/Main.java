@@ -3,6 +3,7 @@ package sheep;
 import javafx.scene.control.Alert;
 import sheep.expression.CoreFactory;
 import sheep.expression.ExpressionFactory;
+import sheep.expression.OptimizingFactory;
 import sheep.fun.Fibonacci;
 import sheep.fun.FunException;
 import sheep.fun.Pascal;
@@ -18,6 +19,7 @@ import sheep.ui.textual.TextUI;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Execute the SheeP spreadsheet program.
@@ -44,11 +46,13 @@ public class Main {
      * @param uiType the type of UI to use: between TEXT, LEGACY, or default
      */
     private static void sheep(String uiType) {
-        ExpressionFactory factory = new CoreFactory();
+        ExpressionFactory factory = new OptimizingFactory(new CoreFactory());
         Parser parser = new ComplexParser(factory);
 
         SheetBuilder builder = new SheetBuilder(parser, factory.createEmpty());
         builder.includeBuiltIn("life", factory.createConstant(42));
+        builder.holdErrorsAsValues(true);
+        builder.parseOn(ForkJoinPool.commonPool());
 
         run(uiType, builder, defaultSheet(builder));
     }
@@ -0,0 +1,193 @@
+package sheep.core;
+
+/**
+ * Conversion between cell references, e.g. A1 or AB12, and row and column indices.
+ * <p>
+ * Columns are named with one to three uppercase letters in the same way as most spreadsheets:
+ * A to Z are the first 26 columns, followed by AA to AZ, BA to BZ, and so on up to ZZZ.
+ * <p>
+ * References are decoded into a single packed long holding both the row and column,
+ * so resolving a reference never allocates.
+ * <pre>
+ * {@code
+ * long packed = ReferenceCodec.decode("AB12");
+ * ReferenceCodec.row(packed); // 12
+ * ReferenceCodec.column(packed); // 27
+ * ReferenceCodec.encode(12, 27); // "AB12"
+ * ReferenceCodec.decode("12AB"); // ReferenceCodec.NOT_A_REFERENCE
+ * }</pre>
+ */
+public final class ReferenceCodec {
+    /**
+     * Result of decoding a string which is not a cell reference.
+     */
+    public static final long NOT_A_REFERENCE = -1;
+
+    /**
+     * The greatest number of letters in the name of a column.
+     */
+    public static final int MAX_COLUMN_LETTERS = 3;
+
+    /**
+     * The number of columns that can be named, i.e. A to ZZZ.
+     */
+    public static final int MAX_COLUMNS = 26 + 26 * 26 + 26 * 26 * 26;
+
+    private ReferenceCodec() {
+    }
+
+    /**
+     * Pack a row and column into a single value.
+     *
+     * @param row    A row index.
+     * @param column A column index.
+     * @return The packed row and column.
+     * @requires row &gt;= 0 &amp;&amp; column &gt;= 0
+     */
+    public static long pack(int row, int column) {
+        return ((long) row << 32) | column;
+    }
+
+    /**
+     * The row of a packed reference.
+     *
+     * @param packed A reference packed by {@link #pack(int, int)} or {@link #decode(CharSequence)}.
+     * @return The row index of the reference.
+     */
+    public static int row(long packed) {
+        return (int) (packed >>> 32);
+    }
+
+    /**
+     * The column of a packed reference.
+     *
+     * @param packed A reference packed by {@link #pack(int, int)} or {@link #decode(CharSequence)}.
+     * @return The column index of the reference.
+     */
+    public static int column(long packed) {
+        return (int) packed;
+    }
+
+    /**
+     * Decode a reference made of one to three uppercase letters followed by a row number,
+     * without spaces or any other characters.
+     *
+     * @param reference A string that may be a cell reference.
+     * @return The packed row and column of the reference,
+     *         or {@link #NOT_A_REFERENCE} if the string is not a reference
+     *         or its row does not fit in an int.
+     * @requires reference != null
+     */
+    public static long decode(CharSequence reference) {
+        int length = reference.length();
+        int index = 0;
+        int column = 0;
+        while (index < length && index < MAX_COLUMN_LETTERS) {
+            char letter = reference.charAt(index);
+            if (letter < 'A' || letter > 'Z') {
+                break;
+            }
+            column = column * 26 + (letter - 'A' + 1);
+            index++;
+        }
+        if (index == 0 || index == length) {
+            return NOT_A_REFERENCE;
+        }
+
+        long row = 0;
+        for (; index < length; index++) {
+            char digit = reference.charAt(index);
+            if (digit < '0' || digit > '9') {
+                return NOT_A_REFERENCE;
+            }
+            row = row * 10 + (digit - '0');
+            if (row > Integer.MAX_VALUE) {
+                return NOT_A_REFERENCE;
+            }
+        }
+        return pack((int) row, column - 1);
+    }
+
+    /**
+     * Decode a reference written in its canonical form, i.e. as {@link #encode(int, int)} would write it.
+     * <p>
+     * This is {@link #decode(CharSequence)} except that rows with leading zeros, e.g. A01, are rejected,
+     * so every cell has exactly one canonical reference.
+     *
+     * @param reference A string that may be a cell reference.
+     * @return The packed row and column of the reference,
+     *         or {@link #NOT_A_REFERENCE} if the string is not a canonical reference.
+     * @requires reference != null
+     */
+    public static long decodeCanonical(CharSequence reference) {
+        long packed = decode(reference);
+        if (packed == NOT_A_REFERENCE) {
+            return NOT_A_REFERENCE;
+        }
+        // the row starts after the column letters, it must not have leading zeros
+        int digits = reference.length() - columnLetters(column(packed));
+        if (digits > 1 && reference.charAt(reference.length() - digits) == '0') {
+            return NOT_A_REFERENCE;
+        }
+        return packed;
+    }
+
+    /**
+     * The number of letters in the name of a column, e.g. 1 for A and 2 for AB.
+     *
+     * @param column A column index.
+     * @return The number of letters naming the column.
+     * @requires 0 &lt;= column &lt; {@link #MAX_COLUMNS}
+     */
+    public static int columnLetters(int column) {
+        if (column < 26) {
+            return 1;
+        }
+        return column < 26 + 26 * 26 ? 2 : 3;
+    }
+
+    /**
+     * The name of a column, e.g. A for 0, Z for 25 and AA for 26.
+     *
+     * @param column A column index.
+     * @return The letters naming the column.
+     * @requires 0 &lt;= column &lt; {@link #MAX_COLUMNS}
+     */
+    public static String columnName(int column) {
+        return appendColumnName(new StringBuilder(MAX_COLUMN_LETTERS), column).toString();
+    }
+
+    /**
+     * Append the name of a column to a builder.
+     *
+     * @param builder The builder to append to.
+     * @param column  A column index.
+     * @return The given builder.
+     * @requires 0 &lt;= column &lt; {@link #MAX_COLUMNS}
+     */
+    public static StringBuilder appendColumnName(StringBuilder builder, int column) {
+        int start = builder.length();
+        int remaining = column + 1;
+        while (remaining > 0) {
+            remaining--;
+            builder.insert(start, (char) ('A' + remaining % 26));
+            remaining /= 26;
+        }
+        return builder;
+    }
+
+    /**
+     * The reference naming a cell, e.g. A0 or AB12.
+     *
+     * @param row    A row index.
+     * @param column A column index.
+     * @return The reference to the cell.
+     * @requires row &gt;= 0
+     * @requires 0 &lt;= column &lt; {@link #MAX_COLUMNS}
+     */
+    public static String encode(int row, int column) {
+        return appendColumnName(new StringBuilder(MAX_COLUMN_LETTERS + 10), column)
+                .append(row)
+                .toString();
+    }
+}
@@ -0,0 +1,35 @@
+package sheep.expression;
+
+import sheep.expression.basic.ErrorValue;
+
+/**
+ * Thrown when evaluating an expression reads an error value, see {@link ErrorValue}.
+ * <p>
+ * The error being read is carried along,
+ * so that a sheet which holds errors as values can pass the same error on to the cells using it.
+ * Each error value throws its own shared instance, which records no stack trace.
+ */
+public class CellError extends TypeError {
+    private static final long serialVersionUID = 1L;
+
+    private final transient ErrorValue error;
+
+    /**
+     * Construct an exception for reading an error value.
+     *
+     * @param error The error value that was read.
+     */
+    public CellError(ErrorValue error) {
+        super(error.render(), false);
+        this.error = error;
+    }
+
+    /**
+     * The error value that was read.
+     *
+     * @return The error value that caused this exception.
+     */
+    public ErrorValue getError() {
+        return error;
+    }
+}
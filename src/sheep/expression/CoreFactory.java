@@ -1,8 +1,10 @@
 package sheep.expression;
 
+import sheep.core.ReferenceCodec;
 import sheep.expression.arithmetic.Operation;
 import sheep.expression.basic.Constant;
 import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Range;
 import sheep.expression.basic.Reference;
 
 /**
@@ -25,25 +27,48 @@ public class CoreFactory implements ExpressionFactory {
         return new Reference(identifier);
     }
 
+    /**
+     * An instance of {@link Range} covering every cell between two corners.
+     *
+     * @param from The identifier of a corner cell of the range, e.g. A1.
+     * @param to   The identifier of the opposite corner cell of the range, e.g. B500.
+     * @return An instance of {@link Range} between the two corners.
+     * @throws InvalidExpression If either corner is not a cell reference,
+     *                           or the range covers more than {@link Range#MAX_CELLS} cells.
+     */
+    @Override
+    public Expression createRange(String from, String to) throws InvalidExpression {
+        long start = ReferenceCodec.decodeCanonical(from);
+        long end = ReferenceCodec.decodeCanonical(to);
+        if (start == ReferenceCodec.NOT_A_REFERENCE || end == ReferenceCodec.NOT_A_REFERENCE) {
+            throw new InvalidExpression("Invalid range: " + from + ":" + to);
+        }
+        if (Range.cells(start, end) > Range.MAX_CELLS) {
+            throw new InvalidExpression("Range too large: " + from + ":" + to);
+        }
+        return new Range(start, end);
+    }
+
     /**
      * An instance of {@link Constant} that stores the given value.
+     * Small values share a cached instance, see {@link Constant#of(long)}.
      *
      * @param value A constant long value of the expression.
      * @return An instance of {@link Constant} that stores the given value.
      */
     @Override
     public Expression createConstant(long value) {
-        return new Constant(value);
+        return Constant.of(value);
     }
 
     /**
-     * An instance of {@link Nothing}.
+     * The shared instance of {@link Nothing}.
      *
-     * @return An instance of {@link Nothing}.
+     * @return The shared instance of {@link Nothing}.
      */
     @Override
     public Expression createEmpty() {
-        return new Nothing();
+        return Nothing.instance();
     }
 
 
@@ -77,17 +102,20 @@ public class CoreFactory implements ExpressionFactory {
      *     <li>,;</li>
      *     <li>MEAN;</li>
      *     <li>MEDIAN;</li>
+     *     <li>SUM;</li>
      *     <li>The empty string ("");</li>
      * </ul>
      * and create the appropriate {@link Operation} subclass.
      * If the operator name is not listed above, {@link InvalidExpression} should be thrown.
+     * Ranges are only accepted as arguments by operations that {@link Operation#acceptsRanges() accept them}.
      *
      * @param name An identifier for the operator, e.g. +, *.
      * @param args A list of {@link Expression} instances as arguments to the {@link Operation} instance.
      * @return An appropriate operator expression.
      * @throws InvalidExpression If the operator name is unknown or
      *                           if any of the given {@link Object} arguments are not subclasses of {@link Expression} or
-     *                           if there are no arguments given.
+     *                           if there are no arguments given or
+     *                           if a range is given to an operation that does not accept ranges.
      * @hint The {@code instanceof} operator can determine if an instance is a subclass of a class.
      */
     @Override
@@ -95,9 +123,10 @@ public class CoreFactory implements ExpressionFactory {
         if (args.length < 1) {
             throw new InvalidExpression("No arguments provided");
         }
-        return switch (name) {
+        Operation operation = switch (name) {
             case "MEAN" -> Operation.mean(castArguments(name, args));
             case "MEDIAN" -> Operation.median(castArguments(name, args));
+            case "SUM" -> Operation.sum(castArguments(name, args));
             case "," -> Operation.list(castArguments(name, args));
             case "+" -> Operation.plus(castArguments(name, args));
             case "-" -> Operation.minus(castArguments(name, args));
@@ -108,5 +137,13 @@ public class CoreFactory implements ExpressionFactory {
             case "" -> Operation.identity(castArguments(name, args));
             default -> throw new InvalidExpression("Unknown operator: " + name);
         };
+        if (operation.ranges().length > 0 && !operation.acceptsRanges()) {
+            for (Object arg : args) {
+                if (arg instanceof Range) {
+                    throw new InvalidExpression("Operator [" + name + "] does not accept ranges");
+                }
+            }
+        }
+        return operation;
     }
 }
@@ -0,0 +1,85 @@
+package sheep.expression;
+
+import sheep.core.ReferenceCodec;
+import sheep.expression.arithmetic.Median;
+import sheep.expression.basic.Range;
+
+import java.util.Map;
+
+/**
+ * The surroundings an expression is evaluated within by {@link Expression#value(EvalContext)}.
+ * <p>
+ * Cells are addressed by an integer slot rather than by name,
+ * so an evaluation context can hand out the numeric value of a cell
+ * without looking it up in a map or wrapping it in an expression.
+ * Identifiers that do not name a cell, such as built-ins, are resolved through {@link #state()}.
+ */
+public interface EvalContext {
+    /**
+     * The slot of the cell named by an identifier.
+     *
+     * @param identifier An identifier which may name a cell.
+     * @return The slot of the named cell, or -1 if the identifier does not name a cell.
+     */
+    int slot(String identifier);
+
+    /**
+     * The slot of the cell at a packed reference.
+     * <p>
+     * By default the reference is encoded as an identifier and resolved with {@link #slot(String)},
+     * contexts backed by cell storage should resolve it directly.
+     *
+     * @param reference A reference packed by {@link ReferenceCodec}.
+     * @return The slot of the referenced cell, or -1 if the reference does not name a cell.
+     */
+    default int slotAt(long reference) {
+        return slot(ReferenceCodec.encode(ReferenceCodec.row(reference), ReferenceCodec.column(reference)));
+    }
+
+    /**
+     * The numeric value of a cell.
+     *
+     * @param slot The slot of a cell, as returned by {@link #slot(String)}.
+     * @return The numeric value held in the cell.
+     * @throws TypeError If the cell does not hold a numeric value.
+     */
+    long valueAt(int slot) throws TypeError;
+
+    /**
+     * The sum of the numeric values of every cell within a range.
+     * <p>
+     * By default every cell is read, see {@link Range#sumCells(EvalContext)},
+     * contexts that maintain running sums of their cells may answer without reading them.
+     *
+     * @param range The range of cells to sum.
+     * @return The sum of the cells, wrapping on overflow as {@code +} does.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    default long sum(Range range) throws TypeError {
+        return range.sumCells(this);
+    }
+
+    /**
+     * The median of the numeric values of every cell within a range, as computed by {@link Median}.
+     * <p>
+     * By default every cell is read and the median is selected from them,
+     * contexts that keep the values of their cells in order may answer without reading them.
+     *
+     * @param range The range of cells to find the median of.
+     * @return The median of the cells.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    default long median(Range range) throws TypeError {
+        long[] values = new long[range.size()];
+        range.fill(this, values, 0);
+        return Median.median(values, 0, values.length);
+    }
+
+    /**
+     * The state this context represents as a mapping of identifiers to the expression they hold,
+     * as expected by {@link Expression#value(Map)}.
+     *
+     * @return A mapping of every identifier in this context to the expression it holds.
+     */
+    Map<String, Expression> state();
+}
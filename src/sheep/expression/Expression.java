@@ -1,5 +1,7 @@
 package sheep.expression;
 
+import sheep.core.ReferenceCodec;
+
 import java.util.Map;
 import java.util.Set;
 
@@ -11,6 +13,11 @@ import java.util.Set;
  * @ass1
  */
 public abstract class Expression {
+    /**
+     * The references of an expression that does not reference any cell.
+     */
+    protected static final long[] NO_REFERENCES = new long[0];
+
     /**
      * Construct an instance of an expression, used by subclasses constructors.
      *
@@ -40,6 +47,40 @@ public abstract class Expression {
      */
     public abstract Set<String> dependencies();
 
+    /**
+     * The cells depended upon by the expression, resolved ahead of time.
+     * <p>
+     * Each dependency that is a canonical cell reference, e.g. A1 but not A01 or a built-in,
+     * is packed into a long by {@link ReferenceCodec}.
+     * The references are sorted and distinct, so a sheet can track which cells use which
+     * without parsing identifiers.
+     * By default the references are computed from {@link #dependencies()} on every call,
+     * the core expressions compute them once when constructed.
+     * The returned array is shared and must not be modified.
+     *
+     * @return The sorted, distinct, packed references to cells depended upon by the expression.
+     */
+    public long[] references() {
+        return dependencies().stream()
+                .mapToLong(ReferenceCodec::decodeCanonical)
+                .filter(reference -> reference != ReferenceCodec.NOT_A_REFERENCE)
+                .sorted().distinct().toArray();
+    }
+
+    /**
+     * The rectangular ranges of cells depended upon by the expression,
+     * in addition to the individual cells given by {@link #references()}.
+     * <p>
+     * Each range is given by two consecutive packed references, its top left and bottom right cells.
+     * The returned array is shared and must not be modified.
+     *
+     * @return The packed corners of every range depended upon by the expression.
+     * @see sheep.expression.basic.Range
+     */
+    public long[] ranges() {
+        return NO_REFERENCES;
+    }
+
     /**
      * Evaluate the expression to a numeric value.
      *
@@ -62,6 +103,23 @@ public abstract class Expression {
      */
     public abstract Expression value(Map<String, Expression> state) throws TypeError;
 
+    /**
+     * Evaluate the expression within a context to a numeric value.
+     * <p>
+     * The result must be the same as calling {@link #value()} on the result of {@link #value(Map)}
+     * with the state of the context, i.e. {@code value(context.state()).value()},
+     * which is what this method does by default.
+     * Subclasses may override this method to avoid creating an intermediate expression.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return A long that represents the numeric value of the evaluated expression.
+     * @throws TypeError If a type error occurs in the process of evaluation
+     *                   or the evaluated expression does not have a numeric value.
+     */
+    public long value(EvalContext context) throws TypeError {
+        return value(context.state()).value();
+    }
+
     /**
      * True if the expression is a reference.
      * The abstract class, expression, should return false by default.
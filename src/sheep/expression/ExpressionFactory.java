@@ -17,6 +17,20 @@ public interface ExpressionFactory {
      */
     Expression createReference(String identifier);
 
+    /**
+     * Construct an expression representing a rectangular range of cells, e.g. A1:B500.
+     * <p>
+     * By default ranges are not supported.
+     *
+     * @param from The identifier of a corner cell of the range, e.g. A1.
+     * @param to   The identifier of the opposite corner cell of the range, e.g. B500.
+     * @return A range expression covering every cell between the two corners.
+     * @throws InvalidExpression If ranges are not supported or either corner is not a cell reference.
+     */
+    default Expression createRange(String from, String to) throws InvalidExpression {
+        throw new InvalidExpression("Ranges are not supported: " + from + ":" + to);
+    }
+
     /**
      * Construct a numeric constant expression that holds the given value.
      *
@@ -0,0 +1,57 @@
+package sheep.expression;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A table of canonical instances of expressions.
+ * <p>
+ * Interning an expression returns the first equal expression that was interned and is still in use,
+ * so equal expressions constructed independently, e.g. in the formulas of different cells,
+ * can share a single instance.
+ * Expressions are only weakly held by the table,
+ * an expression that is no longer used elsewhere is removed once it has been garbage collected.
+ * <p>
+ * Interning relies upon {@link Object#equals(Object)} and {@link Object#hashCode()},
+ * which compare the core expressions structurally.
+ * Interning the arguments of an operation before the operation itself
+ * makes comparing operations with their interned equivalents cheap,
+ * as their arguments are then compared by identity.
+ * <pre>
+ * {@code
+ * Interner interner = new Interner();
+ * Expression first = interner.intern(new Reference("A1"));
+ * Expression second = interner.intern(new Reference("A1"));
+ * first == second; // true
+ * }</pre>
+ */
+public final class Interner {
+    private final Map<Expression, WeakReference<Expression>> canonical = new WeakHashMap<>();
+
+    /**
+     * The canonical instance of an expression.
+     *
+     * @param expression The expression to intern.
+     * @return An interned expression equal to the given expression,
+     *         which is the given expression if no equal expression has been interned.
+     */
+    public synchronized Expression intern(Expression expression) {
+        WeakReference<Expression> reference = canonical.get(expression);
+        Expression existing = reference == null ? null : reference.get();
+        if (existing != null) {
+            return existing;
+        }
+        canonical.put(expression, new WeakReference<>(expression));
+        return expression;
+    }
+
+    /**
+     * The number of distinct expressions currently interned.
+     *
+     * @return The number of interned expressions that have not been garbage collected.
+     */
+    public synchronized int size() {
+        return canonical.size();
+    }
+}
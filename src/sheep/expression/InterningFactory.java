@@ -0,0 +1,53 @@
+package sheep.expression;
+
+/**
+ * Factory that shares equal expressions constructed by another factory.
+ * <p>
+ * Every constant, reference and operation is interned as it is constructed,
+ * so identical formulas, or identical parts of formulas, share a single instance
+ * across every cell of a sheet, see {@link Interner}.
+ * Expressions are otherwise constructed exactly as the underlying factory constructs them.
+ * <pre>
+ * {@code
+ * Parser parser = new ComplexParser(new InterningFactory(new CoreFactory()));
+ * parser.parse("A1 + 1") == parser.parse("A1 + 1"); // true
+ * }</pre>
+ */
+public class InterningFactory implements ExpressionFactory {
+    private final ExpressionFactory factory;
+    private final Interner interner = new Interner();
+
+    /**
+     * Construct a factory sharing the expressions of the given factory.
+     *
+     * @param factory The factory used to construct every expression.
+     */
+    public InterningFactory(ExpressionFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Expression createReference(String identifier) {
+        return interner.intern(factory.createReference(identifier));
+    }
+
+    @Override
+    public Expression createRange(String from, String to) throws InvalidExpression {
+        return interner.intern(factory.createRange(from, to));
+    }
+
+    @Override
+    public Expression createConstant(long value) {
+        return interner.intern(factory.createConstant(value));
+    }
+
+    @Override
+    public Expression createEmpty() {
+        return interner.intern(factory.createEmpty());
+    }
+
+    @Override
+    public Expression createOperator(String name, Object[] args) throws InvalidExpression {
+        return interner.intern(factory.createOperator(name, args));
+    }
+}
@@ -0,0 +1,194 @@
+package sheep.expression;
+
+import sheep.expression.arithmetic.Divide;
+import sheep.expression.arithmetic.Equal;
+import sheep.expression.arithmetic.ExpressionList;
+import sheep.expression.arithmetic.Identity;
+import sheep.expression.arithmetic.Less;
+import sheep.expression.arithmetic.Mean;
+import sheep.expression.arithmetic.Median;
+import sheep.expression.arithmetic.Minus;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.arithmetic.Plus;
+import sheep.expression.arithmetic.Sum;
+import sheep.expression.arithmetic.Times;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Reference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Factory that simplifies the expressions constructed by another factory.
+ * <p>
+ * Operators are simplified as they are constructed:
+ * <ul>
+ *     <li>operations whose arguments are all constants are replaced by the constant they evaluate to,
+ *     e.g. {@code (2 * 3) + A1} becomes {@code 6 + A1};</li>
+ *     <li>additions and multiplications nested within additions and multiplications of the same kind
+ *     are flattened into one operation, e.g. {@code (A1 + A2) + A3} becomes {@code A1 + A2 + A3},
+ *     and their constant arguments are combined into one;</li>
+ *     <li>parentheses around a single constant or reference within an operation are removed;</li>
+ *     <li>structurally equal expressions are shared rather than constructed again,
+ *     so a repeated subexpression within a formula is a single instance, see {@link Interner}.</li>
+ * </ul>
+ * The simplified expressions evaluate exactly as the original expressions would.
+ * A simplified operation is returned as a {@link Simplified} expression,
+ * which evaluates the simplified formula but renders the formula as it was written,
+ * so editing or saving a formula shows what the user typed rather than its simplification.
+ * Only the core expressions are simplified,
+ * other expressions constructed by the underlying factory are left untouched.
+ * <pre>
+ * {@code
+ * Parser parser = new ComplexParser(new OptimizingFactory(new CoreFactory()));
+ * Simplified formula = (Simplified) parser.parse("(2 * 3) + A1");
+ * formula.render(); // "(2 * 3) + A1"
+ * formula.simplified().render(); // "6 + A1"
+ * }</pre>
+ */
+public class OptimizingFactory implements ExpressionFactory {
+    private static final Set<Class<?>> FOLDABLE = Set.of(
+            Plus.class, Minus.class, Times.class, Divide.class, Less.class, Equal.class,
+            Mean.class, Median.class, Sum.class, ExpressionList.class, Identity.class);
+
+    private final ExpressionFactory factory;
+    private final Interner interner = new Interner();
+
+    /**
+     * Construct a factory simplifying the expressions of the given factory.
+     *
+     * @param factory The factory used to construct every expression.
+     */
+    public OptimizingFactory(ExpressionFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Expression createReference(String identifier) {
+        return interner.intern(factory.createReference(identifier));
+    }
+
+    @Override
+    public Expression createRange(String from, String to) throws InvalidExpression {
+        return interner.intern(factory.createRange(from, to));
+    }
+
+    @Override
+    public Expression createConstant(long value) {
+        return interner.intern(factory.createConstant(value));
+    }
+
+    @Override
+    public Expression createEmpty() {
+        return factory.createEmpty();
+    }
+
+    @Override
+    public Expression createOperator(String name, Object[] args) throws InvalidExpression {
+        // arguments already simplified are written as their original formula and evaluated as their simplification
+        Object[] written = args.clone();
+        Object[] evaluated = args.clone();
+        boolean simplified = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Simplified argument) {
+                written[i] = argument.original();
+                evaluated[i] = argument.simplified();
+                simplified = true;
+            }
+        }
+        Expression original = factory.createOperator(name, written);
+        Expression created = simplified ? factory.createOperator(name, evaluated) : original;
+        if (!(created instanceof Operation operation) || !FOLDABLE.contains(operation.getClass())) {
+            return simplified ? new Simplified(original, created) : original;
+        }
+        original = interner.intern(original);
+        Expression result = simplify(name, operation);
+        return result == original ? original : new Simplified(original, result);
+    }
+
+    /**
+     * The simplest expression evaluating to the same value as an operation,
+     * constructed from the simplified arguments of the operation.
+     */
+    private Expression simplify(String name, Operation operation) throws InvalidExpression {
+        List<Expression> arguments = simplify(operation);
+        if (arguments.stream().allMatch(OptimizingFactory::isConstant)) {
+            Expression folded = fold(name, arguments);
+            if (folded != null) {
+                return folded;
+            }
+        }
+        if (!arguments.equals(operation.getExpressions())) {
+            return interner.intern(factory.createOperator(name, arguments.toArray()));
+        }
+        return interner.intern(operation);
+    }
+
+    /**
+     * The arguments of an operation with nested additions and multiplications flattened,
+     * redundant parentheses removed and constant terms combined.
+     */
+    private List<Expression> simplify(Operation operation) throws InvalidExpression {
+        boolean associative = operation.getClass() == Plus.class || operation.getClass() == Times.class;
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : operation.getExpressions()) {
+            // within an operation, (x) and x have the same numeric value
+            if (argument.getClass() == Identity.class) {
+                List<Expression> inner = ((Operation) argument).getExpressions();
+                if (inner.size() == 1 && (isConstant(inner.get(0)) || inner.get(0).getClass() == Reference.class
+                        || (associative && inner.get(0).getClass() == operation.getClass()))) {
+                    argument = inner.get(0);
+                }
+            }
+            if (associative && argument.getClass() == operation.getClass()) {
+                arguments.addAll(((Operation) argument).getExpressions());
+            } else {
+                arguments.add(argument);
+            }
+        }
+        if (!associative) {
+            return arguments;
+        }
+
+        List<Expression> constants = arguments.stream().filter(OptimizingFactory::isConstant).toList();
+        if (constants.size() < 2 || constants.size() == arguments.size()) {
+            return arguments;
+        }
+        // addition and multiplication of longs are commutative and associative, even when they overflow
+        Expression combined = fold(operation.getOperator(), constants);
+        if (combined == null) {
+            return arguments;
+        }
+        // the combined constant takes the place of the first constant
+        List<Expression> result = new ArrayList<>();
+        for (Expression argument : arguments) {
+            if (!isConstant(argument)) {
+                result.add(argument);
+            } else if (combined != null) {
+                result.add(combined);
+                combined = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The constant an operation over constant arguments evaluates to,
+     * or null if evaluating the operation fails, e.g. due to division by zero,
+     * in which case it is left to fail when the formula is evaluated.
+     */
+    private Expression fold(String name, List<Expression> arguments) throws InvalidExpression {
+        try {
+            Expression value = factory.createOperator(name, arguments.toArray()).value(Map.of());
+            return isConstant(value) ? createConstant(((Constant) value).getValue()) : null;
+        } catch (TypeError | ArithmeticException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isConstant(Expression expression) {
+        return expression.getClass() == Constant.class;
+    }
+}
@@ -0,0 +1,126 @@
+package sheep.expression;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A formula as it was written, paired with a simplified formula evaluating to the same value.
+ * <p>
+ * The simplified formula is used to evaluate the expression,
+ * while the written formula is used to render it,
+ * so simplifying a formula never changes what the user sees when editing or saving the formula.
+ * Both formulas depend upon the same cells.
+ * <pre>
+ * {@code
+ * Parser parser = new ComplexParser(new OptimizingFactory(new CoreFactory()));
+ * Simplified mean = (Simplified) parser.parse("MEAN(1, 2, 3)");
+ * mean.render(); // "MEAN(1, 2, 3)"
+ * mean.simplified(); // Constant 2
+ * }</pre>
+ *
+ * @see OptimizingFactory
+ */
+public final class Simplified extends Expression {
+    private final Expression original;
+    private final Expression simplified;
+
+    /**
+     * Pair a formula with its simplified equivalent.
+     *
+     * @param original   The formula as it was written.
+     * @param simplified A formula evaluating to the same value as the original,
+     *                   which depends upon the same cells.
+     * @requires neither formula is itself simplified
+     */
+    public Simplified(Expression original, Expression simplified) {
+        this.original = original;
+        this.simplified = simplified;
+    }
+
+    /**
+     * The formula as it was written, used to render this expression.
+     *
+     * @return The original formula.
+     */
+    public Expression original() {
+        return original;
+    }
+
+    /**
+     * The simplified formula, used to evaluate this expression.
+     *
+     * @return The simplified formula.
+     */
+    public Expression simplified() {
+        return simplified;
+    }
+
+    @Override
+    public Set<String> dependencies() {
+        return simplified.dependencies();
+    }
+
+    @Override
+    public long[] references() {
+        return simplified.references();
+    }
+
+    @Override
+    public long[] ranges() {
+        return simplified.ranges();
+    }
+
+    @Override
+    public long value() throws TypeError {
+        return simplified.value();
+    }
+
+    @Override
+    public Expression value(Map<String, Expression> state) throws TypeError {
+        return simplified.value(state);
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        return simplified.value(context);
+    }
+
+    /**
+     * Render the formula as it was written.
+     *
+     * @return The rendering of the original formula.
+     */
+    @Override
+    public String render() {
+        return original.render();
+    }
+
+    @Override
+    public String toString() {
+        return original.toString();
+    }
+
+    /**
+     * Two simplified expressions are equal if they were written as equal formulas,
+     * as the simplified formula is determined by the written one.
+     *
+     * @param object Another object to compare against.
+     * @return If the given object is equal to this object.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+        return original.equals(((Simplified) object).original);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(original);
+    }
+}
@@ -2,6 +2,10 @@ package sheep.expression;
 
 /**
  * Thrown if an expression cannot be resolved into a numeric value.
+ * <p>
+ * Type errors are thrown routinely while evaluating a sheet, e.g. for every formula using an empty cell,
+ * so a type error without a message or cause does not record a stack trace,
+ * which would otherwise dominate the cost of throwing it.
  *
  * @hint Refer to lecture example of extending exceptions.
  * @ass1
@@ -11,7 +15,17 @@ public class TypeError extends Exception {
      * Construct a new exception without any additional details.
      */
     public TypeError() {
-        super();
+        super(null, null, false, false);
+    }
+
+    /**
+     * Construct a new exception, choosing whether it records a stack trace.
+     *
+     * @param message            The description of the exception, or null.
+     * @param writableStackTrace Whether the stack trace of the exception is recorded.
+     */
+    protected TypeError(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
     }
 
     /**
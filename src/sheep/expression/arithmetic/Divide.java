@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * A division operation.
@@ -32,10 +34,26 @@ public class Divide extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
-        long result = arguments[0];
-        for (int i = 1; i < arguments.length; i++) {
-            result /= arguments[i];
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        long result = values[from];
+        for (int i = from + 1; i < to; i++) {
+            result /= values[i];
         }
         return result;
     }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        if (arguments.length != 2) {
+            // every argument must be evaluated before dividing, a later argument may not be numeric
+            return super.value(context);
+        }
+        long dividend = arguments[0].value(context);
+        long divisor = arguments[1].value(context);
+        return dividend / divisor;
+    }
 }
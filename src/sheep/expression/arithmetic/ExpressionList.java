@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * A List expression.
@@ -27,6 +29,19 @@ public class ExpressionList extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
-        return arguments[arguments.length - 1];
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        return values[to - 1];
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        for (int i = 0; i < arguments.length - 1; i++) {
+            arguments[i].value(context);
+        }
+        return arguments[arguments.length - 1].value(context);
     }
 }
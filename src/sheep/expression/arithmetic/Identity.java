@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * The identity function expression.
@@ -26,6 +28,20 @@ public class Identity extends Function {
      */
     @Override
     protected long perform(long[] arguments) {
-        return arguments[0];
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        return values[from];
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        long result = arguments[0].value(context);
+        for (int i = 1; i < arguments.length; i++) {
+            arguments[i].value(context);
+        }
+        return result;
     }
 }
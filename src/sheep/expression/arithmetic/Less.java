@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * A less than operation.
@@ -35,11 +37,31 @@ public class Less extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
-        for (int i = 1; i < arguments.length; i++) {
-            if (arguments[i - 1] >= arguments[i]) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            if (values[i - 1] >= values[i]) {
                 return 0;
             }
         }
         return 1;
     }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        long result = 1;
+        long previous = 0;
+        for (int i = 0; i < arguments.length; i++) {
+            // every argument is evaluated, even once the result is known
+            long next = arguments[i].value(context);
+            if (i > 0 && previous >= next) {
+                result = 0;
+            }
+            previous = next;
+        }
+        return result;
+    }
 }
@@ -1,6 +1,9 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Range;
 
 public class Mean extends Function {
     public Mean(Expression[] arguments) {
@@ -9,15 +12,41 @@ public class Mean extends Function {
 
     @Override
     protected long perform(long[] arguments) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        if (to == from) {
+            throw new IllegalArgumentException("No arguments provided");
+        }
+
+        return Reductions.sum(values, from, to) / (to - from);
+    }
+
+    @Override
+    public boolean acceptsRanges() {
+        return true;
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
         if (arguments.length == 0) {
             throw new IllegalArgumentException("No arguments provided");
         }
 
         long sum = 0;
-        for (long arg : arguments) {
-            sum += arg;
+        long count = 0;
+        for (Expression argument : arguments) {
+            if (argument instanceof Range range) {
+                sum += range.sum(context);
+                count += range.size();
+            } else {
+                sum += argument.value(context);
+                count++;
+            }
         }
 
-        return sum / arguments.length;
+        return sum / count;
     }
 }
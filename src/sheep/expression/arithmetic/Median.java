@@ -1,25 +1,153 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Range;
 
 import java.util.Arrays;
 
+/**
+ * The median of its arguments, or the mean of the two middle arguments if there are an even number of them.
+ * <p>
+ * The median is found by selection rather than by sorting every argument,
+ * which takes linear time in the number of arguments.
+ * A median over a single range is left to the evaluation context, see {@link EvalContext#median(Range)}.
+ */
 public class Median extends Function {
+    // beyond this many partitions without halving the run, selection falls back to sorting
+    private static final int DEPTH_FACTOR = 2;
+    // runs this short are sorted rather than partitioned
+    private static final int SORT_THRESHOLD = 16;
+
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[64]);
+
     public Median(Expression[] arguments) {
         super("MEDIAN", arguments);
     }
 
+    @Override
+    public boolean acceptsRanges() {
+        return true;
+    }
+
     @Override
     protected long perform(long[] arguments) {
-        if (arguments.length == 0) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    /**
+     * The median of a range of numbers held within a larger array.
+     * The numbers are copied into a scratch buffer, the given array is left untouched.
+     *
+     * @param values An array holding the numbers to find the median of.
+     * @param from   The index of the first number, inclusive.
+     * @param to     The index of the last number, exclusive.
+     * @return The median of the numbers.
+     */
+    @Override
+    public long perform(long[] values, int from, int to) {
+        if (to == from) {
             throw new IllegalArgumentException("No arguments provided");
         }
-        Arrays.sort(arguments);
+        long[] scratch = SCRATCH.get();
+        if (scratch.length < to - from) {
+            scratch = new long[Math.max(to - from, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        System.arraycopy(values, from, scratch, 0, to - from);
+        return median(scratch, 0, to - from);
+    }
+
+    /**
+     * The median of a range of numbers within an array, reordering the numbers in place.
+     *
+     * @param values An array holding the numbers to find the median of, which is reordered.
+     * @param from   The index of the first number, inclusive.
+     * @param to     The index of the last number, exclusive.
+     * @return The median of the numbers.
+     * @requires from &lt; to
+     */
+    public static long median(long[] values, int from, int to) {
+        int middle = from + (to - from) / 2;
+        long upper = select(values, from, to, middle);
+        if ((to - from) % 2 != 0) {
+            return upper;
+        }
+        // selection leaves every number before the middle no greater than it, the lower middle is the largest
+        long lower = values[from];
+        for (int i = from + 1; i < middle; i++) {
+            lower = Math.max(lower, values[i]);
+        }
+        return (lower + upper) / 2;
+    }
 
-        if (arguments.length % 2 == 0) {
-            return (arguments[arguments.length / 2 - 1] + arguments[arguments.length / 2]) / 2;
-        } else {
-            return arguments[arguments.length / 2];
+    /**
+     * The median of the numbers within a single range, with the range as its only argument
+     * answered by the context without necessarily reading every cell.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return The median of the arguments.
+     * @throws TypeError If any argument does not have a numeric value.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        if (arguments.length == 1 && arguments[0] instanceof Range range) {
+            return context.median(range);
         }
+        return super.value(context);
+    }
+
+    /**
+     * Reorder a range of an array so that the number at an index is the one that would be there if it were sorted,
+     * with no greater numbers before it and no smaller numbers after it (introselect).
+     * <p>
+     * Partitions around the median of three numbers, falling back to sorting the remaining run
+     * if partitioning repeatedly fails to shrink it, so the worst case is O(n log n) rather than quadratic.
+     *
+     * @return The number at the index once the range is reordered.
+     */
+    private static long select(long[] values, int from, int to, int index) {
+        int depth = DEPTH_FACTOR * (32 - Integer.numberOfLeadingZeros(to - from));
+        int low = from;
+        int high = to - 1;
+        while (high - low >= SORT_THRESHOLD) {
+            if (depth-- == 0) {
+                break;
+            }
+            long pivot = medianOfThree(values[low], values[low + (high - low) / 2], values[high]);
+            // three-way partition: [low, lt) < pivot, [lt, gt] == pivot, (gt, high] > pivot
+            int lt = low;
+            int gt = high;
+            int i = low;
+            while (i <= gt) {
+                if (values[i] < pivot) {
+                    swap(values, lt++, i++);
+                } else if (values[i] > pivot) {
+                    swap(values, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (index < lt) {
+                high = lt - 1;
+            } else if (index > gt) {
+                low = gt + 1;
+            } else {
+                return values[index];
+            }
+        }
+        Arrays.sort(values, low, high + 1);
+        return values[index];
+    }
+
+    private static long medianOfThree(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    private static void swap(long[] values, int i, int j) {
+        long value = values[i];
+        values[i] = values[j];
+        values[j] = value;
     }
 }
@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * A minus operation.
@@ -32,9 +34,23 @@ public class Minus extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
-        long result = arguments[0];
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        long result = values[from];
+        for (int i = from + 1; i < to; i++) {
+            result -= values[i];
+        }
+        return result;
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        long result = arguments[0].value(context);
         for (int i = 1; i < arguments.length; i++) {
-            result -= arguments[i];
+            result -= arguments[i].value(context);
         }
         return result;
     }
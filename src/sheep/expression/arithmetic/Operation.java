@@ -1,9 +1,11 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
 import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Range;
 
 import java.util.*;
 
@@ -15,10 +17,82 @@ import java.util.*;
 public abstract class Operation extends Expression {
     protected final String operator;
     protected final Expression[] arguments;
+    // operations are immutable, so the structural hash is computed at most once
+    private int hash = 0;
+    // computed on first use, as the dependencies of a range are only a view
+    private Set<String> dependencies = null;
+    private final long[] references;
+    private final long[] ranges;
+    private final boolean hasRanges;
 
     protected Operation(String operator, Expression[] arguments) {
         this.operator = operator;
         this.arguments = arguments;
+        this.references = collectReferences(arguments);
+        this.ranges = collectRanges(arguments);
+        this.hasRanges = Arrays.stream(arguments).anyMatch(argument -> argument instanceof Range);
+    }
+
+    private static Set<String> collectDependencies(Expression[] arguments) {
+        if (arguments.length == 1) {
+            return Set.copyOf(arguments[0].dependencies());
+        }
+        Set<String> dependencies = new HashSet<>();
+        for (Expression expression : arguments) {
+            dependencies.addAll(expression.dependencies());
+        }
+        return Set.copyOf(dependencies);
+    }
+
+    /**
+     * Merge the sorted references of every argument into one sorted array without duplicates.
+     */
+    private static long[] collectReferences(Expression[] arguments) {
+        long[] merged = NO_REFERENCES;
+        for (Expression expression : arguments) {
+            long[] other = expression.references();
+            if (other.length == 0) {
+                continue;
+            }
+            if (merged.length == 0) {
+                merged = other;
+                continue;
+            }
+            long[] result = new long[merged.length + other.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < merged.length || j < other.length) {
+                long next;
+                if (j == other.length || (i < merged.length && merged[i] <= other[j])) {
+                    next = merged[i++];
+                } else {
+                    next = other[j++];
+                }
+                if (size == 0 || result[size - 1] != next) {
+                    result[size++] = next;
+                }
+            }
+            merged = size == result.length ? result : Arrays.copyOf(result, size);
+        }
+        return merged;
+    }
+
+    private static long[] collectRanges(Expression[] arguments) {
+        long[] ranges = NO_REFERENCES;
+        for (Expression expression : arguments) {
+            long[] other = expression.ranges();
+            if (other.length > 0) {
+                ranges = ranges.length == 0 ? other : concatenate(ranges, other);
+            }
+        }
+        return ranges;
+    }
+
+    private static long[] concatenate(long[] first, long[] second) {
+        long[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
     }
 
     /**
@@ -120,6 +194,17 @@ public abstract class Operation extends Expression {
         return new Median(arguments);
     }
 
+    /**
+     * Construct a new sum operation.
+     *
+     * @param arguments A sequence of sub-expressions to perform the operation upon.
+     * @return A sum expression.
+     * @requires arguments.length &gt; 0
+     */
+    public static Operation sum(Expression[] arguments) {
+        return new Sum(arguments);
+    }
+
     /**
      * Construct a new identity operation.
      *
@@ -148,6 +233,7 @@ public abstract class Operation extends Expression {
             case "=" -> equal(arguments);
             case "MEAN" -> mean(arguments);
             case "MEDIAN" -> median(arguments);
+            case "SUM" -> sum(arguments);
             case "," -> list(arguments);
             case "" -> identity(arguments);
             default -> throw new RuntimeException();
@@ -194,15 +280,69 @@ public abstract class Operation extends Expression {
      * plus.dependencies() // {"A1", "A2", "B1"}
      * }</pre>
      *
-     * @return A set containing the union of all sub-expression dependencies.
+     * @return An immutable set containing the union of all sub-expression dependencies.
      */
     @Override
     public Set<String> dependencies() {
-        Set<String> dependencies = new HashSet<>();
-        for (Expression expression : arguments) {
-            dependencies.addAll(expression.dependencies());
+        Set<String> result = dependencies;
+        if (result == null) {
+            result = collectDependencies(arguments);
+            dependencies = result;
         }
-        return dependencies;
+        return result;
+    }
+
+    /**
+     * The cells referenced by any sub-expression, merged when the operation is constructed.
+     *
+     * @return The sorted, distinct, packed references of all sub-expressions.
+     */
+    @Override
+    public long[] references() {
+        return references;
+    }
+
+    /**
+     * The ranges used by any sub-expression.
+     *
+     * @return The packed corners of every range within the sub-expressions.
+     */
+    @Override
+    public long[] ranges() {
+        return ranges;
+    }
+
+    /**
+     * Whether the operation accepts ranges of cells as arguments, e.g. {@code SUM(A1:A10)}.
+     * <p>
+     * An operation that accepts ranges performs the operation as if the cells of every range
+     * were listed as separate arguments.
+     * Other operations treat a range as any other non-numeric argument.
+     *
+     * @return false by default, subclasses that accept ranges return true.
+     */
+    public boolean acceptsRanges() {
+        return false;
+    }
+
+    /**
+     * Whether evaluating this operation expands ranges into the cells they cover.
+     *
+     * @return true if the operation accepts ranges and has a range as an argument.
+     */
+    protected final boolean spreads() {
+        return hasRanges && acceptsRanges();
+    }
+
+    /**
+     * The number of values the arguments of this operation expand to.
+     */
+    private int spreadSize() {
+        int size = 0;
+        for (Expression argument : arguments) {
+            size += argument instanceof Range range ? range.size() : 1;
+        }
+        return size;
     }
 
     @Override
@@ -210,6 +350,54 @@ public abstract class Operation extends Expression {
         return this.toString();
     }
 
+    /**
+     * Determine if two operations are structurally equal.
+     * <p>
+     * Two operations are equal if;
+     * <ul>
+     *     <li>they are instances of the same class,</li>
+     *     <li>they have the same operator, and</li>
+     *     <li>their arguments are equal, in order.</li>
+     * </ul>
+     * <pre>
+     * {@code
+     * Operation first = Operation.plus(new Expression[]{new Reference("A1"), new Constant(1)});
+     * Operation second = Operation.plus(new Expression[]{new Reference("A1"), new Constant(1)});
+     * first.equals(second); // true
+     * }</pre>
+     *
+     * @param object Another object to compare against.
+     * @return If the given object is equal to this object.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+        Operation operation = (Operation) object;
+        return hashCode() == operation.hashCode()
+                && operator.equals(operation.operator)
+                && Arrays.equals(arguments, operation.arguments);
+    }
+
+    /**
+     * A hashcode method that respects the {@link Operation#equals(Object)} method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = 31 * (31 * getClass().hashCode() + operator.hashCode()) + Arrays.hashCode(arguments);
+            hash = result;
+        }
+        return result;
+    }
+
     /**
      * The result of evaluating this expression.
      * <p>
@@ -218,6 +406,7 @@ public abstract class Operation extends Expression {
      * <p>
      * During evaluation the operation should evaluate each sub-expression and convert the resulting values to numeric
      * values to perform the operation.
+     * Operations that {@link #acceptsRanges() accept ranges} expand each range into the values of its cells.
      *
      * @param state A mapping of references to the expression they hold.
      * @return A constant expression of the result.
@@ -225,11 +414,23 @@ public abstract class Operation extends Expression {
      */
     @Override
     public Expression value(Map<String, Expression> state) throws TypeError {
+        if (spreads()) {
+            long[] values = new long[spreadSize()];
+            int index = 0;
+            for (Expression argument : arguments) {
+                if (argument instanceof Range range) {
+                    index = range.fill(state, values, index);
+                } else {
+                    values[index++] = argument.value(state).value();
+                }
+            }
+            return Constant.of(perform(values));
+        }
         long[] values = new long[arguments.length];
         for (int i = 0; i < arguments.length; i++) {
             values[i] = arguments[i].value(state).value();
         }
-        return new Constant(perform(values));
+        return Constant.of(perform(values));
     }
 
     /**
@@ -243,6 +444,39 @@ public abstract class Operation extends Expression {
         throw new TypeError();
     }
 
+    /**
+     * The numeric result of evaluating this expression within a context.
+     * <p>
+     * Each sub-expression is evaluated to a number within the context and the operation is performed upon them,
+     * giving the value of the constant that {@link #value(Map)} would return.
+     * Operations that {@link #acceptsRanges() accept ranges} expand each range into the values of its cells.
+     * Subclasses may override this method to perform the operation without collecting the numbers into an array.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return The result of performing the operation.
+     * @throws TypeError If any of the sub-expressions cannot be converted to a numeric value.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        if (spreads()) {
+            long[] values = new long[spreadSize()];
+            int index = 0;
+            for (Expression argument : arguments) {
+                if (argument instanceof Range range) {
+                    index = range.fill(context, values, index);
+                } else {
+                    values[index++] = argument.value(context);
+                }
+            }
+            return perform(values);
+        }
+        long[] values = new long[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            values[i] = arguments[i].value(context);
+        }
+        return perform(values);
+    }
+
     /**
      * Perform the operation over a list of numbers.
      * <p>
@@ -252,4 +486,23 @@ public abstract class Operation extends Expression {
      * @return The result of performing the arithmetic operation.
      */
     protected abstract long perform(long[] arguments);
+
+    /**
+     * Perform the operation over a range of numbers held within a larger array.
+     * <p>
+     * This allows the operation to be applied to arguments that have been evaluated
+     * onto a shared stack without copying them into an array of their own.
+     * The numbers within the range may be modified.
+     * By default the range is copied and passed to {@link #perform(long[])},
+     * subclasses may override this method to avoid the copy.
+     *
+     * @param values An array holding the numbers to perform the operation upon.
+     * @param from   The index of the first number, inclusive.
+     * @param to     The index of the last number, exclusive.
+     * @return The result of performing the operation.
+     * @requires 0 &lt;= from &lt;= to &lt;= values.length
+     */
+    public long perform(long[] values, int from, int to) {
+        return perform(Arrays.copyOfRange(values, from, to));
+    }
 }
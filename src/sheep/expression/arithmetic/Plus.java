@@ -1,6 +1,9 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Range;
 
 /**
  * A plus operation.
@@ -32,9 +35,29 @@ public class Plus extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        return Reductions.sum(values, from, to);
+    }
+
+    /**
+     * Plus accepts ranges, adding every cell within them, e.g. {@code A1:A10 + 1}.
+     *
+     * @return true
+     */
+    @Override
+    public boolean acceptsRanges() {
+        return true;
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
         long result = 0;
-        for (long arg : arguments) {
-            result += arg;
+        for (Expression argument : arguments) {
+            result += argument instanceof Range range ? range.sum(context) : argument.value(context);
         }
         return result;
     }
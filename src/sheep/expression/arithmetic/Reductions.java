@@ -0,0 +1,70 @@
+package sheep.expression.arithmetic;
+
+/**
+ * Reductions of runs of numbers shared by the operations that accept many arguments.
+ * <p>
+ * A plain summing loop is already compiled into vector instructions by the JIT, so it is left as is.
+ * Multiplication is not, and each step of a plain loop waits on the latency of the previous multiply,
+ * so long runs, such as the cells of a range, are multiplied four numbers at a time into independent accumulators.
+ * Multiplication of longs wraps on overflow and is associative and commutative,
+ * so the result is exactly that of the plain loop.
+ * <p>
+ * The loops were chosen by measuring them with {@code ReductionsBenchmark}, found alongside the tests:
+ * unrolling made sums slower at every length,
+ * and made products faster from about {@link #UNROLL_THRESHOLD} numbers,
+ * roughly halving the time per number for a few thousand numbers.
+ */
+final class Reductions {
+    /**
+     * Runs shorter than this are multiplied with a plain loop, which is as fast for them.
+     */
+    static final int UNROLL_THRESHOLD = 64;
+
+    private Reductions() {
+    }
+
+    /**
+     * The sum of a run of numbers, wrapping on overflow.
+     *
+     * @param values An array holding the numbers.
+     * @param from   The index of the first number, inclusive.
+     * @param to     The index of the last number, exclusive.
+     * @return The sum of the numbers, 0 if there are none.
+     */
+    static long sum(long[] values, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result += values[i];
+        }
+        return result;
+    }
+
+    /**
+     * The product of a run of numbers, wrapping on overflow.
+     *
+     * @param values An array holding the numbers.
+     * @param from   The index of the first number, inclusive.
+     * @param to     The index of the last number, exclusive.
+     * @return The product of the numbers, 1 if there are none.
+     */
+    static long product(long[] values, int from, int to) {
+        int i = from;
+        long result = 1;
+        if (to - from >= UNROLL_THRESHOLD) {
+            long second = 1;
+            long third = 1;
+            long fourth = 1;
+            for (; i + 3 < to; i += 4) {
+                result *= values[i];
+                second *= values[i + 1];
+                third *= values[i + 2];
+                fourth *= values[i + 3];
+            }
+            result *= second * third * fourth;
+        }
+        for (; i < to; i++) {
+            result *= values[i];
+        }
+        return result;
+    }
+}
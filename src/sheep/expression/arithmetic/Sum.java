@@ -0,0 +1,50 @@
+package sheep.expression.arithmetic;
+
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Range;
+
+/**
+ * A sum function, adding every argument and every cell of any range given as an argument.
+ * <pre>
+ * {@code
+ * Operation sum = Operation.sum(new Expression[]{new Constant(12), new Constant(2), new Constant(5)});
+ * sum.toString(); // "SUM(12, 2, 5)"
+ * }</pre>
+ */
+public class Sum extends Function {
+    /**
+     * Construct a new sum expression.
+     *
+     * @param arguments A sequence of sub-expressions to perform the operation upon.
+     * @requires arguments.length &gt; 0
+     */
+    public Sum(Expression[] arguments) {
+        super("SUM", arguments);
+    }
+
+    @Override
+    public boolean acceptsRanges() {
+        return true;
+    }
+
+    @Override
+    protected long perform(long[] arguments) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        return Reductions.sum(values, from, to);
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        long result = 0;
+        for (Expression argument : arguments) {
+            result += argument instanceof Range range ? range.sum(context) : argument.value(context);
+        }
+        return result;
+    }
+}
@@ -1,6 +1,8 @@
 package sheep.expression.arithmetic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
+import sheep.expression.TypeError;
 
 /**
  * A times operation.
@@ -32,9 +34,19 @@ public class Times extends Arithmetic {
      */
     @Override
     protected long perform(long[] arguments) {
+        return perform(arguments, 0, arguments.length);
+    }
+
+    @Override
+    public long perform(long[] values, int from, int to) {
+        return Reductions.product(values, from, to);
+    }
+
+    @Override
+    public long value(EvalContext context) throws TypeError {
         long result = 1;
-        for (long arg : arguments) {
-            result *= arg;
+        for (Expression argument : arguments) {
+            result *= argument.value(context);
         }
         return result;
     }
@@ -1,8 +1,8 @@
 package sheep.expression.basic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -12,6 +12,17 @@ import java.util.Set;
  * @ass1
  */
 public class Constant extends Expression {
+    // the numbers most often found in sheets, e.g. counters, small literals and the results of comparisons
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final Constant[] CACHE = new Constant[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Constant(CACHE_LOW + i);
+        }
+    }
+
     private final long number;
 
     /**
@@ -23,6 +34,27 @@ public class Constant extends Expression {
         this.number = number;
     }
 
+    /**
+     * A constant representing the given number.
+     * <p>
+     * Constants are immutable, so small numbers are served from a shared cache
+     * rather than constructing a new constant each time.
+     * <pre>
+     * {@code
+     * Constant.of(4) == Constant.of(4); // true
+     * Constant.of(4).equals(new Constant(4)); // true
+     * }</pre>
+     *
+     * @param number The number to represent as an expression.
+     * @return A constant storing the number.
+     */
+    public static Constant of(long number) {
+        if (number >= CACHE_LOW && number <= CACHE_HIGH) {
+            return CACHE[(int) number - CACHE_LOW];
+        }
+        return new Constant(number);
+    }
+
     /**
      * Get the numeric value stored within the constant expression.
      *
@@ -94,11 +126,21 @@ public class Constant extends Expression {
      * Dependencies of the constant expression.
      * Constant expressions have no dependencies.
      *
-     * @return An empty set to represent no dependencies.
+     * @return An empty, immutable set to represent no dependencies.
      */
     @Override
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
+    }
+
+    /**
+     * Constant expressions do not reference any cells.
+     *
+     * @return An empty array.
+     */
+    @Override
+    public long[] references() {
+        return NO_REFERENCES;
     }
 
     /**
@@ -131,6 +173,17 @@ public class Constant extends Expression {
         return number;
     }
 
+    /**
+     * The numeric value of a constant is its number, regardless of the context.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return The number stored by this constant.
+     */
+    @Override
+    public long value(EvalContext context) {
+        return number;
+    }
+
     /**
      * The string representation of an expression when rendered within a cell.
      * For constants, this is the number as a string.
@@ -0,0 +1,118 @@
+package sheep.expression.basic;
+
+import sheep.expression.CellError;
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The value of a cell whose formula could not be evaluated, e.g. #TYPE or #DIV0.
+ * <p>
+ * A sheet that holds errors as values stores an error in the cell instead of rejecting the update,
+ * and an error is passed on to every cell that uses it:
+ * reading the numeric value of an error throws a {@link CellError} carrying the error.
+ * There is a single instance of each error.
+ */
+public class ErrorValue extends Expression {
+    /**
+     * The error of a formula using a value that is not a number, such as an empty cell.
+     */
+    public static final ErrorValue TYPE = new ErrorValue("#TYPE");
+
+    /**
+     * The error of a formula dividing by zero.
+     */
+    public static final ErrorValue DIV0 = new ErrorValue("#DIV0");
+
+    private final String name;
+    private final CellError raised;
+
+    private ErrorValue(String name) {
+        this.name = name;
+        this.raised = new CellError(this);
+    }
+
+    /**
+     * Dependencies of an error.
+     * Errors have no dependencies.
+     *
+     * @return An empty, immutable set to represent no dependencies.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return Set.of();
+    }
+
+    /**
+     * Errors do not reference any cells.
+     *
+     * @return An empty array.
+     */
+    @Override
+    public long[] references() {
+        return NO_REFERENCES;
+    }
+
+    /**
+     * The result of evaluating this expression.
+     * <p>
+     * An error cannot be further evaluated, therefore this method will return itself.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return Itself.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) {
+        return this;
+    }
+
+    /**
+     * An error does not have a numeric value.
+     *
+     * @return Nothing will be returned as a {@link CellError} is always thrown.
+     * @throws TypeError A {@link CellError} carrying this error is always thrown.
+     */
+    @Override
+    public long value() throws TypeError {
+        throw raised;
+    }
+
+    /**
+     * An error does not have a numeric value.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return Nothing will be returned as a {@link CellError} is always thrown.
+     * @throws TypeError A {@link CellError} carrying this error is always thrown.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        throw raised;
+    }
+
+    /**
+     * String representation of the error.
+     * <pre>
+     * {@code
+     * ErrorValue.DIV0.toString(); // "ERROR(#DIV0)"
+     * }</pre>
+     *
+     * @return String representation of the expression.
+     */
+    @Override
+    public String toString() {
+        return "ERROR(" + name + ")";
+    }
+
+    /**
+     * The string representation of the error when rendered within a cell, e.g. #DIV0.
+     *
+     * @return The name of the error.
+     */
+    @Override
+    public String render() {
+        return name;
+    }
+}
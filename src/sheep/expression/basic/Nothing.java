@@ -1,9 +1,9 @@
 package sheep.expression.basic;
 
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -12,15 +12,39 @@ import java.util.Set;
  * @ass1
  */
 public class Nothing extends Expression {
+    private static final Nothing INSTANCE = new Nothing();
+
+    /**
+     * The shared empty expression.
+     * <p>
+     * Every empty expression behaves identically,
+     * so a single instance can be used wherever an empty expression is needed.
+     *
+     * @return The shared instance of {@link Nothing}.
+     */
+    public static Nothing instance() {
+        return INSTANCE;
+    }
+
     /**
      * Dependencies of the empty expression.
      * Empty expressions have no dependencies.
      *
-     * @return An empty set to represent no dependencies.
+     * @return An empty, immutable set to represent no dependencies.
      */
     @Override
     public Set<String> dependencies() {
-        return new HashSet<>();
+        return Set.of();
+    }
+
+    /**
+     * Empty expressions do not reference any cells.
+     *
+     * @return An empty array.
+     */
+    @Override
+    public long[] references() {
+        return NO_REFERENCES;
     }
 
     /**
@@ -49,6 +73,41 @@ public class Nothing extends Expression {
         throw new TypeError();
     }
 
+    /**
+     * Nothing never has a numeric value.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return Nothing will be returned as a {@link TypeError} is always thrown.
+     * @throws TypeError Will always be thrown by {@link Nothing}.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        throw new TypeError();
+    }
+
+    /**
+     * Determine if two expressions are both empty.
+     * <p>
+     * Every instance of Nothing is equal to every other instance of Nothing.
+     *
+     * @param object Another object to compare against.
+     * @return If the given object is also an empty expression.
+     */
+    @Override
+    public boolean equals(Object object) {
+        return object != null && getClass() == object.getClass();
+    }
+
+    /**
+     * A hashcode method that respects the {@link Nothing#equals(Object)} method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
+
     /**
      * The string representation of an expression when rendered within a cell.
      * For empty expressions, this is the empty string.
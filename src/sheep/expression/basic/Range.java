@@ -0,0 +1,321 @@
+package sheep.expression.basic;
+
+import sheep.core.ReferenceCodec;
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A rectangular range of cells, e.g. A1:B500.
+ * <p>
+ * A range is a single expression no matter how many cells it covers.
+ * Operations that accept ranges, such as {@code SUM}, {@code MEAN}, {@code MEDIAN} and {@code +},
+ * treat a range as if every cell within it had been listed as a separate argument,
+ * in row-major order, without constructing a reference for each cell:
+ * the cells are read straight from the slots of the evaluation context.
+ * <p>
+ * A range on its own does not have a numeric value.
+ */
+public class Range extends Expression {
+    /**
+     * The greatest number of cells a range may cover.
+     */
+    public static final long MAX_CELLS = 1 << 20;
+
+    private final int top;
+    private final int left;
+    private final int bottom;
+    private final int right;
+    private final long[] ranges;
+
+    /**
+     * Construct a range between two corner cells, given in either order.
+     *
+     * @param from A corner of the range, as packed by {@link ReferenceCodec}.
+     * @param to   The opposite corner of the range, as packed by {@link ReferenceCodec}.
+     * @requires from and to are valid packed references
+     * @requires the range covers no more than {@link #MAX_CELLS} cells
+     */
+    public Range(long from, long to) {
+        this.top = Math.min(ReferenceCodec.row(from), ReferenceCodec.row(to));
+        this.bottom = Math.max(ReferenceCodec.row(from), ReferenceCodec.row(to));
+        this.left = Math.min(ReferenceCodec.column(from), ReferenceCodec.column(to));
+        this.right = Math.max(ReferenceCodec.column(from), ReferenceCodec.column(to));
+        this.ranges = new long[]{ReferenceCodec.pack(top, left), ReferenceCodec.pack(bottom, right)};
+    }
+
+    /**
+     * The number of cells covered by a range between two corner cells.
+     *
+     * @param from A corner of the range, as packed by {@link ReferenceCodec}.
+     * @param to   The opposite corner of the range, as packed by {@link ReferenceCodec}.
+     * @return The number of cells within the range.
+     */
+    public static long cells(long from, long to) {
+        long rows = Math.abs((long) ReferenceCodec.row(from) - ReferenceCodec.row(to)) + 1;
+        long columns = Math.abs((long) ReferenceCodec.column(from) - ReferenceCodec.column(to)) + 1;
+        return rows * columns;
+    }
+
+    /**
+     * The number of cells covered by this range.
+     *
+     * @return The number of cells within the range.
+     */
+    public int size() {
+        return (bottom - top + 1) * (right - left + 1);
+    }
+
+    /**
+     * The sum of the numeric values of every cell within the range, as given by {@link EvalContext#sum(Range)}.
+     *
+     * @param context The context to read the cells from.
+     * @return The sum of the cells, wrapping on overflow as {@code +} does.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    public long sum(EvalContext context) throws TypeError {
+        return context.sum(this);
+    }
+
+    /**
+     * The sum of the numeric values of every cell within the range, reading each cell in turn.
+     *
+     * @param context The context to read the cells from.
+     * @return The sum of the cells, wrapping on overflow as {@code +} does.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    public long sumCells(EvalContext context) throws TypeError {
+        long sum = 0;
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                sum += valueAt(context, row, column);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Write the numeric value of every cell within the range into an array, in row-major order.
+     *
+     * @param context The context to read the cells from.
+     * @param values  The array to write into.
+     * @param index   The index to write the first cell to.
+     * @return The index after the last cell written.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     * @requires index + size() &lt;= values.length
+     */
+    public int fill(EvalContext context, long[] values, int index) throws TypeError {
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                values[index++] = valueAt(context, row, column);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Write the numeric value of every cell within the range into an array, in row-major order,
+     * resolving each cell by name as {@link Reference#value(Map)} would.
+     *
+     * @param state  A mapping of references to the expression they hold.
+     * @param values The array to write into.
+     * @param index  The index to write the first cell to.
+     * @return The index after the last cell written.
+     * @throws TypeError If any cell within the range is not in the state or does not have a numeric value.
+     * @requires index + size() &lt;= values.length
+     */
+    public int fill(Map<String, Expression> state, long[] values, int index) throws TypeError {
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                Expression cell = state.get(ReferenceCodec.encode(row, column));
+                if (cell == null) {
+                    throw new TypeError();
+                }
+                values[index++] = cell.value(state).value();
+            }
+        }
+        return index;
+    }
+
+    private static long valueAt(EvalContext context, int row, int column) throws TypeError {
+        int slot = context.slotAt(ReferenceCodec.pack(row, column));
+        if (slot >= 0) {
+            return context.valueAt(slot);
+        }
+        // not a cell of the context, resolved by name as a reference would be
+        return new Reference(ReferenceCodec.encode(row, column)).value(context);
+    }
+
+    /**
+     * Dependencies of the range, the identifier of every cell within it.
+     * <p>
+     * The set is an immutable view computed from the corners of the range,
+     * the identifiers are only constructed while iterating it.
+     *
+     * @return An immutable set of the identifiers of the cells within the range.
+     */
+    @Override
+    public Set<String> dependencies() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object object) {
+                if (!(object instanceof String identifier)) {
+                    return false;
+                }
+                long reference = ReferenceCodec.decodeCanonical(identifier);
+                if (reference == ReferenceCodec.NOT_A_REFERENCE) {
+                    return false;
+                }
+                int row = ReferenceCodec.row(reference);
+                int column = ReferenceCodec.column(reference);
+                return row >= top && row <= bottom && column >= left && column <= right;
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size();
+                    }
+
+                    @Override
+                    public String next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        int width = right - left + 1;
+                        String identifier = ReferenceCodec.encode(top + index / width, left + index % width);
+                        index++;
+                        return identifier;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Range.this.size();
+            }
+        };
+    }
+
+    /**
+     * Cells within a range are not referenced individually, see {@link #ranges()}.
+     *
+     * @return An empty array.
+     */
+    @Override
+    public long[] references() {
+        return NO_REFERENCES;
+    }
+
+    /**
+     * The corners of this range.
+     *
+     * @return The packed top left and bottom right cells of the range.
+     */
+    @Override
+    public long[] ranges() {
+        return ranges;
+    }
+
+    /**
+     * The result of evaluating a range on its own.
+     * <p>
+     * A range can only be evaluated as an argument to an operation that accepts ranges,
+     * on its own it cannot be further evaluated and returns itself.
+     *
+     * @param state A mapping of references to the expression they hold.
+     * @return Itself.
+     */
+    @Override
+    public Expression value(Map<String, Expression> state) {
+        return this;
+    }
+
+    /**
+     * A range does not have a single numeric value.
+     *
+     * @return Nothing will be returned as a {@link TypeError} is always thrown.
+     * @throws TypeError Will always be thrown by {@link Range}.
+     */
+    @Override
+    public long value() throws TypeError {
+        throw new TypeError();
+    }
+
+    /**
+     * A range does not have a single numeric value.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return Nothing will be returned as a {@link TypeError} is always thrown.
+     * @throws TypeError Will always be thrown by {@link Range}.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        throw new TypeError();
+    }
+
+    /**
+     * Two ranges are equal if they cover the same cells.
+     *
+     * @param object Another object to compare against.
+     * @return If the given object is a range covering the same cells.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (object == null || getClass() != object.getClass()) {
+            return false;
+        }
+        Range range = (Range) object;
+        return top == range.top && left == range.left && bottom == range.bottom && right == range.right;
+    }
+
+    /**
+     * A hashcode method that respects the {@link Range#equals(Object)} method.
+     *
+     * @return An appropriate hashcode value for this instance.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(top, left, bottom, right);
+    }
+
+    /**
+     * String representation of the range.
+     * <pre>
+     * {@code
+     * Range range = new Range(ReferenceCodec.pack(1, 0), ReferenceCodec.pack(500, 1));
+     * range.toString(); // "RANGE(A1:B500)"
+     * }</pre>
+     *
+     * @return String representation of the expression.
+     */
+    @Override
+    public String toString() {
+        return "RANGE(" + render() + ")";
+    }
+
+    /**
+     * The string representation of the range when rendered within a cell,
+     * its top left and bottom right cells separated by a colon, e.g. A1:B500.
+     *
+     * @return the string representation of the expression.
+     */
+    @Override
+    public String render() {
+        return ReferenceCodec.encode(top, left) + ":" + ReferenceCodec.encode(bottom, right);
+    }
+}
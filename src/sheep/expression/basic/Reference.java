@@ -1,5 +1,7 @@
 package sheep.expression.basic;
 
+import sheep.core.ReferenceCodec;
+import sheep.expression.EvalContext;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 
@@ -12,6 +14,8 @@ import java.util.*;
  */
 public class Reference extends Expression {
     private final String identifier;
+    private final Set<String> dependencies;
+    private final long[] references;
 
     /**
      * Construct a new reference to an identifier.
@@ -22,6 +26,9 @@ public class Reference extends Expression {
      */
     public Reference(String identifier) {
         this.identifier = identifier;
+        this.dependencies = Set.of(identifier);
+        long reference = ReferenceCodec.decodeCanonical(identifier);
+        this.references = reference == ReferenceCodec.NOT_A_REFERENCE ? NO_REFERENCES : new long[]{reference};
     }
 
     /**
@@ -90,13 +97,21 @@ public class Reference extends Expression {
      * Dependencies of the reference expression.
      * The dependencies of a reference are its identifier.
      *
-     * @return A set containing the references' identifier.
+     * @return An immutable set containing the references' identifier.
      */
     @Override
     public Set<String> dependencies() {
-        List<String> deps = new ArrayList<>();
-        deps.add(identifier);
-        return new HashSet<>(deps);
+        return dependencies;
+    }
+
+    /**
+     * The cell named by the identifier of this reference, if it names a cell.
+     *
+     * @return The packed location of the referenced cell, or an empty array for built-ins.
+     */
+    @Override
+    public long[] references() {
+        return references;
     }
 
     /**
@@ -131,6 +146,31 @@ public class Reference extends Expression {
         throw new TypeError();
     }
 
+    /**
+     * The numeric value of the expression this reference refers to.
+     * <p>
+     * References to cells are resolved to the slot of the cell within the context from their packed reference,
+     * any other identifier is evaluated as per {@link #value(Map)}.
+     *
+     * @param context The context to evaluate the expression within.
+     * @return The numeric value of the referenced expression.
+     * @throws TypeError If the identifier is not in the context
+     *                   or the referenced expression does not have a numeric value.
+     */
+    @Override
+    public long value(EvalContext context) throws TypeError {
+        // a cell reference was packed when the reference was constructed, it need not be decoded again
+        int slot = references.length > 0 ? context.slotAt(references[0]) : context.slot(identifier);
+        if (slot >= 0) {
+            return context.valueAt(slot);
+        }
+        Map<String, Expression> state = context.state();
+        if (state.containsKey(identifier)) {
+            return state.get(identifier).value(context);
+        }
+        throw new TypeError();
+    }
+
     /**
      * The string representation of an expression when rendered within a cell.
      * For references, this is the referenced identifier.
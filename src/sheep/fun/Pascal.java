@@ -1,5 +1,6 @@
 package sheep.fun;
 
+import sheep.core.ReferenceCodec;
 import sheep.core.SheetUpdate;
 import sheep.core.UpdateResponse;
 
@@ -27,8 +28,8 @@ public class Pascal implements Fun {
                 } else if (x > y) {
                     response = sheet.update(row, column, "1");
                 } else {
-                    String leftColumn = Character.toString(column - 1 + 65);
-                    String rightColumn = Character.toString(column + 65);
+                    String leftColumn = ReferenceCodec.columnName(column - 1);
+                    String rightColumn = ReferenceCodec.columnName(column);
                     response = sheet.update(row, column,
                             "" + leftColumn + (row - 1) + " + "
                                     + rightColumn + (row - 1));
@@ -0,0 +1,105 @@
+package sheep.parsing;
+
+import sheep.expression.Expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parser that remembers the expressions another parser produced for recently parsed inputs.
+ * <p>
+ * Expressions are immutable, so an input that was parsed before is answered with the very same expression
+ * rather than being parsed again, e.g. when many cells of a loaded sheet hold the same formula.
+ * At most a fixed number of inputs are remembered, the least recently used being forgotten first.
+ * Inputs that fail to parse are not remembered.
+ * The number of inputs answered from and missing from the cache are counted.
+ * A caching parser may be used by several threads at once if the underlying parser may be.
+ * <pre>
+ * {@code
+ * CachingParser parser = new CachingParser(new PrattParser(new CoreFactory()), 1024);
+ * parser.parse("A1 + 1") == parser.parse("A1 + 1"); // true
+ * parser.hits(); // 1
+ * parser.misses(); // 1
+ * }</pre>
+ */
+public class CachingParser implements Parser {
+    private final Parser parser;
+    private final Map<String, Expression> cache;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Construct a parser caching the expressions parsed by the given parser.
+     *
+     * @param parser   The parser used to parse inputs that are not cached.
+     * @param capacity The greatest number of inputs to remember.
+     * @requires capacity &gt; 0
+     */
+    public CachingParser(Parser parser, int capacity) {
+        this.parser = parser;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Attempt to parse a string expression into an expression,
+     * returning the expression previously parsed from the same string if it is cached.
+     *
+     * @param input A string to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the string input is not recognisable as an expression.
+     */
+    @Override
+    public Expression parse(String input) throws ParseException {
+        synchronized (cache) {
+            Expression cached = cache.get(input);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Expression expression = parser.parse(input);
+        synchronized (cache) {
+            cache.put(input, expression);
+        }
+        return expression;
+    }
+
+    /**
+     * The number of parsed inputs that were answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long hits() {
+        synchronized (cache) {
+            return hits;
+        }
+    }
+
+    /**
+     * The number of parsed inputs that were not cached and so were parsed by the underlying parser.
+     *
+     * @return The number of cache misses.
+     */
+    public long misses() {
+        synchronized (cache) {
+            return misses;
+        }
+    }
+
+    /**
+     * The number of inputs currently remembered.
+     *
+     * @return The number of cached expressions.
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
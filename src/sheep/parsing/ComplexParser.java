@@ -64,6 +64,10 @@ public class ComplexParser implements Parser {
                 return factory.createConstant(Long.parseLong(token.name()));
             }
             if (token.type().equals(ComplexScanner.TokenType.REFERENCE)) {
+                int colon = token.name().indexOf(':');
+                if (colon >= 0) {
+                    return factory.createRange(token.name().substring(0, colon), token.name().substring(colon + 1));
+                }
                 return factory.createReference(token.name());
             }
         } else if (tokens.size() % 2 == 1) {
@@ -135,6 +139,7 @@ public class ComplexParser implements Parser {
      * parser.parse("(2+3)-(2+3)"); // Minus(Plus(Constant(2), Constant(3)), Plus(Constant(2), Constant(3)))
      * parser.parse("(hello)"); // Identity(Reference("hello"))
      * parser.parse("(() + ())"); // Identity(Plus(Identity(Nothing()), Identity(Nothing())))
+     * parser.parse("SUM(A1:B3)"); // Sum(Range(A1:B3))
      * }</pre>
      *
      * @param input A string to attempt to parse.
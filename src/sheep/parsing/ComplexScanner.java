@@ -3,6 +3,7 @@ package sheep.parsing;
 import sheep.expression.Expression;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -23,6 +24,73 @@ public class ComplexScanner {
             ',', '=', '<', '+', '-', '*', '/'
     );
 
+    // classes of characters, looked up in a table rather than searching the list of operators
+    private static final byte OPERAND_CHAR = 0;
+    private static final byte OPERATOR_CHAR = 1;
+    private static final byte OPEN_CHAR = 2;
+    private static final byte CLOSE_CHAR = 3;
+    private static final byte SPACE_CHAR = 4;
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        for (char operator : OPERATORS) {
+            CLASSES[operator] = OPERATOR_CHAR;
+        }
+        CLASSES['('] = OPEN_CHAR;
+        CLASSES[')'] = CLOSE_CHAR;
+        for (char character = 0; character < CLASSES.length; character++) {
+            if (Character.isWhitespace(character)) {
+                CLASSES[character] = SPACE_CHAR;
+            }
+        }
+    }
+
+    private static byte classOf(char character) {
+        if (character < CLASSES.length) {
+            return CLASSES[character];
+        }
+        return Character.isWhitespace(character) ? SPACE_CHAR : OPERAND_CHAR;
+    }
+
+    /**
+     * The negated value of the numeral between two offsets of the input, as parsed by {@link Long#parseLong(String)}
+     * but without allocating or throwing, accumulated negatively so that {@link Long#MIN_VALUE} can be represented.
+     *
+     * @return The negated value, or 1 if the characters are not a numeral within the range of a long.
+     */
+    private static long negatedNumeral(CharSequence input, int start, int end) {
+        if (start == end) {
+            return 1;
+        }
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(input.charAt(i), 10);
+            if (digit < 0 || result < Long.MIN_VALUE / 10) {
+                return 1;
+            }
+            result *= 10;
+            if (result < Long.MIN_VALUE + digit) {
+                return 1;
+            }
+            result -= digit;
+        }
+        return result;
+    }
+
+    /**
+     * Scan an input into a flat sequence of tokens, see {@link Tokens}.
+     * <p>
+     * Unlike {@link #tokenize(String)} the whole input is scanned in one pass, including within parentheses,
+     * and no strings or token objects are created.
+     * Parentheses are not checked to match, that is left to the parser.
+     *
+     * @param input The input to scan.
+     * @return The tokens of the input.
+     */
+    public static Tokens scan(CharSequence input) {
+        return new Tokens().scan(input);
+    }
+
     /**
      * Tokenize a string into a list of operator, reference, constant, and function tokens.
      * Only the "bottom" layer of the string is tokenized,
@@ -36,7 +104,8 @@ public class ComplexScanner {
         TokenBuilder tokenBuilder = new TokenBuilder();
         int level = 0;
 
-        for (var c : input.toCharArray()) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
             if (c == '(') {
                 level++;
             }
@@ -57,7 +126,7 @@ public class ComplexScanner {
             }
 
             // If we're an operator unenclosed in parentheses
-            if ((level == 0) && OPERATORS.contains(c)) {
+            if ((level == 0) && classOf(c) == OPERATOR_CHAR) {
                 tokenBuilder.finishToken();
                 tokenBuilder.append(c);
                 tokenBuilder.finishToken();
@@ -115,6 +184,234 @@ public class ComplexScanner {
         }
     }
 
+    /**
+     * A flat sequence of tokens scanned from an input, held as offsets into the input rather than as strings.
+     * <p>
+     * Every token has a type, and the offsets of its first character and the character after its last.
+     * The tokens are kept in a primitive buffer that is reused when the same instance scans another input,
+     * so scanning does not allocate once the buffer is large enough.
+     * The text of a token is only copied into a string when asked for.
+     * <p>
+     * A minus sign followed by a numeral, where an operand is expected,
+     * i.e. at the start of the input or after an operator or opening parenthesis,
+     * is scanned as a single negative {@link #NUMBER}, with or without whitespace between them,
+     * so {@code -5} and {@code - 5} are the same number.
+     * <pre>
+     * {@code
+     * Tokens tokens = ComplexScanner.scan("SUM(A1:B2, -4)");
+     * tokens.count(); // 6
+     * tokens.type(0); // Tokens.WORD
+     * tokens.text(0); // "SUM"
+     * tokens.type(4); // Tokens.NUMBER
+     * tokens.number(4); // -4
+     * }</pre>
+     */
+    public static final class Tokens {
+        /**
+         * A run of characters that are not whitespace, operators or parentheses, and not a numeral,
+         * e.g. a reference, range or function name.
+         */
+        public static final int WORD = 0;
+
+        /**
+         * A numeral within the range of a long, optionally preceded by a minus sign.
+         */
+        public static final int NUMBER = 1;
+
+        /**
+         * A single operator character, one of {@link #OPERATORS}.
+         */
+        public static final int OPERATOR = 2;
+
+        /**
+         * An opening parenthesis.
+         */
+        public static final int OPEN = 3;
+
+        /**
+         * A closing parenthesis.
+         */
+        public static final int CLOSE = 4;
+
+        private static final int FIELDS = 3;
+
+        private CharSequence input = "";
+        // type, start and end of each token in turn
+        private int[] offsets = new int[FIELDS * 16];
+        private long[] numbers = new long[16];
+        private int count = 0;
+
+        /**
+         * Construct an empty sequence of tokens.
+         */
+        public Tokens() {
+        }
+
+        /**
+         * Replace the tokens held with the tokens of an input, reusing the buffer of this instance.
+         *
+         * @param input The input to scan.
+         * @return This instance.
+         */
+        public Tokens scan(CharSequence input) {
+            this.input = input;
+            count = 0;
+            int length = input.length();
+            int position = 0;
+            while (position < length) {
+                char character = input.charAt(position);
+                byte kind = classOf(character);
+                if (kind == SPACE_CHAR) {
+                    position++;
+                } else if (kind == OPEN_CHAR) {
+                    add(OPEN, position, ++position, 0);
+                } else if (kind == CLOSE_CHAR) {
+                    add(CLOSE, position, ++position, 0);
+                } else if (kind == OPERATOR_CHAR) {
+                    if (character == '-' && expectsOperand()) {
+                        // a negated numeral is a negative number whether or not it is spaced from its sign
+                        int digits = position + 1;
+                        while (digits < length && classOf(input.charAt(digits)) == SPACE_CHAR) {
+                            digits++;
+                        }
+                        int end = wordEnd(digits);
+                        long negated = negatedNumeral(input, digits, end);
+                        if (negated <= 0) {
+                            add(NUMBER, position, end, negated);
+                            position = end;
+                            continue;
+                        }
+                    }
+                    add(OPERATOR, position, ++position, 0);
+                } else {
+                    int end = wordEnd(position);
+                    long negated = negatedNumeral(input, position, end);
+                    if (negated <= 0 && negated != Long.MIN_VALUE) {
+                        add(NUMBER, position, end, -negated);
+                    } else {
+                        add(WORD, position, end, 0);
+                    }
+                    position = end;
+                }
+            }
+            return this;
+        }
+
+        private boolean expectsOperand() {
+            return count == 0 || type(count - 1) == OPERATOR || type(count - 1) == OPEN;
+        }
+
+        private int wordEnd(int position) {
+            while (position < input.length() && classOf(input.charAt(position)) == OPERAND_CHAR) {
+                position++;
+            }
+            return position;
+        }
+
+        private void add(int type, int start, int end, long number) {
+            if (count == numbers.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                numbers = Arrays.copyOf(numbers, numbers.length * 2);
+            }
+            offsets[FIELDS * count] = type;
+            offsets[FIELDS * count + 1] = start;
+            offsets[FIELDS * count + 2] = end;
+            numbers[count] = number;
+            count++;
+        }
+
+        /**
+         * The number of tokens scanned.
+         *
+         * @return The number of tokens.
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * The type of a token, one of {@link #WORD}, {@link #NUMBER}, {@link #OPERATOR}, {@link #OPEN} or {@link #CLOSE}.
+         *
+         * @param index The index of the token.
+         * @return The type of the token.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public int type(int index) {
+            return offsets[FIELDS * index];
+        }
+
+        /**
+         * The offset of the first character of a token within the input.
+         *
+         * @param index The index of the token.
+         * @return The offset at which the token starts.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public int start(int index) {
+            return offsets[FIELDS * index + 1];
+        }
+
+        /**
+         * The offset after the last character of a token within the input.
+         *
+         * @param index The index of the token.
+         * @return The offset at which the token ends.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public int end(int index) {
+            return offsets[FIELDS * index + 2];
+        }
+
+        /**
+         * The character of a single character token, such as an operator or parenthesis.
+         *
+         * @param index The index of the token.
+         * @return The first character of the token.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public char character(int index) {
+            return input.charAt(start(index));
+        }
+
+        /**
+         * The value of a {@link #NUMBER} token.
+         *
+         * @param index The index of the token.
+         * @return The number the token spells.
+         * @requires type(index) == NUMBER
+         */
+        public long number(int index) {
+            return numbers[index];
+        }
+
+        /**
+         * The text of a token, copied out of the input.
+         *
+         * @param index The index of the token.
+         * @return The characters of the token.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public String text(int index) {
+            return input.subSequence(start(index), end(index)).toString();
+        }
+
+        /**
+         * The token at an index as a {@link Token}, for callers that want the tokens as objects.
+         * Parentheses do not have an equivalent {@link TokenType}, they are reported as operators.
+         *
+         * @param index The index of the token.
+         * @return A token with the type and text of the token.
+         * @requires 0 &lt;= index &lt; count()
+         */
+        public Token token(int index) {
+            return switch (type(index)) {
+                case NUMBER -> new Token(TokenType.CONST, text(index));
+                case WORD -> new Token(TokenType.REFERENCE, text(index));
+                default -> new Token(TokenType.OP, text(index));
+            };
+        }
+    }
+
     /**
      * A class that helps build a list of Tokens while ignoring whitespace and empty tokens.
      */
@@ -157,20 +454,19 @@ public class ComplexScanner {
          */
         private static Token toToken(String input) {
             input = input.trim();
-            if (OPERATORS.contains(input.charAt(0))) {
+            if (classOf(input.charAt(0)) == OPERATOR_CHAR) {
                 return new Token(TokenType.OP, input);
             }
 
-            if (input.contains("(")) {
-                String[] parts = input.split("\\(", 2);
-                return new Token(TokenType.FUNC, parts[0], parts[1]);
+            int open = input.indexOf('(');
+            if (open >= 0) {
+                return new Token(TokenType.FUNC, input.substring(0, open), input.substring(open + 1));
             }
-            try {
-                Long.parseLong(input);
+            long negated = negatedNumeral(input, 0, input.length());
+            if (negated <= 0 && negated != Long.MIN_VALUE) {
                 return new Token(TokenType.CONST, input);
-            } catch (NumberFormatException nfe) {
-                return new Token(TokenType.REFERENCE, input);
             }
+            return new Token(TokenType.REFERENCE, input);
         }
 
         /**
@@ -0,0 +1,192 @@
+package sheep.parsing;
+
+import sheep.expression.Expression;
+import sheep.expression.ExpressionFactory;
+import sheep.expression.InvalidExpression;
+import sheep.parsing.ComplexScanner.Tokens;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parser of Basic, Arithmetic, and broader functional components in a single left to right pass.
+ * <p>
+ * The input is scanned once into offset based {@link Tokens},
+ * and operators are parsed from them by precedence climbing (a Pratt parser).
+ * Operators bind according to their order in {@link ComplexScanner#OPERATORS},
+ * from "," binding the loosest to "/" binding the tightest,
+ * and consecutive uses of the same operator form a single operation over all of their operands,
+ * e.g. {@code 1 + 2 + 3 * 4} is {@code +(1, 2, *(3, 4))}.
+ * Parenthesised expressions are constructed with the name preceding the parentheses, or "" if there is none,
+ * and the comma separated expressions within them as arguments.
+ * Any operand that is missing, e.g. either side of {@code () + ()}, is the empty expression.
+ * A minus sign before a number is part of the number, whether or not whitespace separates them,
+ * before any other operand it is a minus operation with an empty first operand.
+ * <p>
+ * Parsing takes time linear in the length of the input,
+ * unlike re-tokenizing every operand of every operator.
+ * <p>
+ * This is not a drop-in replacement for {@link ComplexParser}, which groups operators differently,
+ * e.g. it parses {@code 10 - 2 + 3} as {@code -(10, +(2, 3))},
+ * and which joins operands separated only by whitespace, e.g. {@code 1 2} is {@code 12}.
+ * Saved sheets would evaluate to different values if loaded with this parser,
+ * so the application still parses with {@link ComplexParser}.
+ * A parser holds no state between calls and may be used by several threads at once.
+ * <pre>
+ * {@code
+ * ExpressionFactory factory = new CoreFactory();
+ * Parser parser = new PrattParser(factory);
+ * parser.parse("  42  "); // Constant(42)
+ * parser.parse("4 + 5 + 7 * 12 + 3"); // Plus(Constant(4), Constant(5), Times(Constant(7), Constant(12)), Constant(3))
+ * parser.parse("(hello)"); // Identity(Reference("hello"))
+ * parser.parse("SUM(A1:B3, 2)"); // Sum(Range(A1:B3), Constant(2))
+ * }</pre>
+ */
+public class PrattParser implements Parser {
+    private static final char COMMA = ',';
+    // scanned tokens are held in a buffer reused by every parse on the same thread
+    private static final ThreadLocal<Tokens> TOKENS = ThreadLocal.withInitial(Tokens::new);
+
+    private final ExpressionFactory factory;
+
+    /**
+     * Construct a new parser.
+     * Parsed expressions are constructed using the expression factory.
+     *
+     * @param factory Factory used to construct parsed expressions.
+     */
+    public PrattParser(ExpressionFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Attempt to parse a string expression into an expression.
+     *
+     * @param input A string to attempt to parse.
+     * @return The result of parsing the expression.
+     * @throws ParseException If the string input is not recognisable as an expression,
+     *                        e.g. due to unmatched parentheses or two operands without an operator between them.
+     */
+    @Override
+    public Expression parse(String input) throws ParseException {
+        try {
+            Parse parse = new Parse(input, TOKENS.get().scan(input));
+            Expression expression = parse.expression(0);
+            if (parse.index < parse.tokens.count()) {
+                throw new ParseException(parse.tokens.type(parse.index) == Tokens.CLOSE
+                        ? "Unmatched \")\" in \"" + input + "\""
+                        : "Missing operator in \"" + input + "\"");
+            }
+            return expression;
+        } catch (InvalidExpression e) {
+            throw new ParseException(e);
+        }
+    }
+
+    /**
+     * The binding power of an operator, higher binding tighter.
+     */
+    private static int precedence(char operator) {
+        return ComplexScanner.OPERATORS.indexOf(operator) + 1;
+    }
+
+    /**
+     * The state of parsing a single input.
+     */
+    private final class Parse {
+        private final String input;
+        private final Tokens tokens;
+        private int index = 0;
+
+        private Parse(String input, Tokens tokens) {
+            this.input = input;
+            this.tokens = tokens;
+        }
+
+        /**
+         * The type of the next token, without consuming it, or -1 at the end of the input.
+         */
+        private int peek() {
+            return index < tokens.count() ? tokens.type(index) : -1;
+        }
+
+        /**
+         * Whether the next token is the given operator.
+         */
+        private boolean peekOperator(char operator) {
+            return peek() == Tokens.OPERATOR && tokens.character(index) == operator;
+        }
+
+        /**
+         * Parse operations binding at least as tightly as the given precedence.
+         */
+        private Expression expression(int minimum) throws ParseException, InvalidExpression {
+            Expression left = operand();
+            while (peek() == Tokens.OPERATOR) {
+                char operator = tokens.character(index);
+                int precedence = precedence(operator);
+                if (precedence < minimum) {
+                    break;
+                }
+                List<Expression> operands = new ArrayList<>();
+                operands.add(left);
+                while (peekOperator(operator)) {
+                    index++;
+                    operands.add(expression(precedence + 1));
+                }
+                left = factory.createOperator(String.valueOf(operator), operands.toArray());
+            }
+            return left;
+        }
+
+        /**
+         * Parse a constant, reference, range, parenthesised expression, or negation.
+         * An operand that is missing is the empty expression.
+         */
+        private Expression operand() throws ParseException, InvalidExpression {
+            switch (peek()) {
+                case Tokens.NUMBER:
+                    return factory.createConstant(tokens.number(index++));
+                case Tokens.OPEN:
+                    index++;
+                    return group("");
+                case Tokens.WORD:
+                    String word = tokens.text(index++);
+                    if (peek() == Tokens.OPEN) {
+                        index++;
+                        return group(word);
+                    }
+                    int colon = word.indexOf(':');
+                    if (colon >= 0) {
+                        return factory.createRange(word.substring(0, colon), word.substring(colon + 1));
+                    }
+                    return factory.createReference(word);
+                default:
+                    if (peekOperator('-')) {
+                        index++;
+                        return factory.createOperator("-", new Expression[]{factory.createEmpty(), operand()});
+                    }
+                    return factory.createEmpty();
+            }
+        }
+
+        /**
+         * Parse the comma separated arguments of a parenthesised expression up to its closing parenthesis.
+         */
+        private Expression group(String name) throws ParseException, InvalidExpression {
+            List<Expression> arguments = new ArrayList<>();
+            arguments.add(expression(precedence(COMMA) + 1));
+            while (peekOperator(COMMA)) {
+                index++;
+                arguments.add(expression(precedence(COMMA) + 1));
+            }
+            if (peek() != Tokens.CLOSE) {
+                throw new ParseException(index < tokens.count()
+                        ? "Missing operator in \"" + input + "\""
+                        : "Unmatched \"(\" in \"" + input + "\"");
+            }
+            index++;
+            return factory.createOperator(name, arguments.toArray());
+        }
+    }
+}
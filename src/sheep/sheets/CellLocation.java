@@ -1,6 +1,8 @@
 package sheep.sheets;
 
 
+import sheep.core.ReferenceCodec;
+
 import java.util.Objects;
 import java.util.Optional;
 
@@ -8,8 +10,9 @@ import java.util.Optional;
  * A location of a cell within a grid.
  * This class represents a location via a row, column coordinate system.
  * <p>
- * Notably columns are represented as character, e.g. in cell A1,
- * the column is 0 and the row is 1.
+ * Notably columns are represented as letters, e.g. in cell A1,
+ * the column is 0 and the row is 1, and in cell AB3 the column is 27 and the row is 3.
+ * See {@link ReferenceCodec} for how columns are named.
  * @ass1
  */
 public class CellLocation {
@@ -49,7 +52,7 @@ public class CellLocation {
      * @param row    A number representing the row number.
      * @param column A number representing the column (see description of method).
      * @requires row and column are greater than or equal to zero.
-     * @requires column is less than 26.
+     * @requires column is less than {@link ReferenceCodec#MAX_COLUMNS}.
      */
     public CellLocation(int row, int column) {
         this.row = row;
@@ -59,12 +62,13 @@ public class CellLocation {
     /**
      * Attempt to parse a string as a reference to a cell location.
      * If the string is not a reference to a cell location, returns {@link Optional#empty()}.
-     * The format of the reference is a single uppercase character followed by
-     * an integer without spaces and without extraneous characters after the integer or before the character.
+     * The format of the reference is one to three uppercase characters followed by
+     * an integer without spaces and without extraneous characters after the integer or before the characters.
      *
      * <pre>
      * {@code
      * CellLocation.maybeReference("A2") // Optional.of(new CellLocation(2, 'A'))
+     * CellLocation.maybeReference("AB2") // Optional.of(new CellLocation(2, 27))
      * CellLocation.maybeReference("2A") // Optional.empty()
      * CellLocation.maybeReference("A 2") // Optional.empty()
      * CellLocation.maybeReference(" A2 ") // Optional.empty()
@@ -76,19 +80,11 @@ public class CellLocation {
      * @requires ref != null
      */
     public static Optional<CellLocation> maybeReference(String ref) {
-        if (ref.length() < 2 || ref.charAt(0) < 'A' || ref.charAt(0) > 'Z') {
+        long reference = ReferenceCodec.decode(ref);
+        if (reference == ReferenceCodec.NOT_A_REFERENCE) {
             return Optional.empty();
         }
-        char column = ref.charAt(0);
-        StringBuilder rowString = new StringBuilder();
-        for (int i = 1; i < ref.length(); i++) {
-            if (!Character.isDigit(ref.charAt(i))) {
-                return Optional.empty();
-            }
-            rowString.append(ref.charAt(i));
-        }
-        int row = Integer.parseInt(rowString.toString());
-        return Optional.of(new CellLocation(row, column));
+        return Optional.of(new CellLocation(ReferenceCodec.row(reference), ReferenceCodec.column(reference)));
     }
 
     /**
@@ -138,11 +134,11 @@ public class CellLocation {
     /**
      * A string representation of a cell location.
      *
-     * @return A string representation of this cell location, e.g. A2 or C23.
+     * @return A string representation of this cell location, e.g. A2, C23 or AB7.
      */
     @Override
     public String toString() {
-        return Character.toString(getColumn() + 'A') + getRow();
+        return ReferenceCodec.encode(getRow(), getColumn());
     }
 }
 
@@ -0,0 +1,270 @@
+package sheep.sheets;
+
+import sheep.core.ReferenceCodec;
+import sheep.expression.Expression;
+
+/**
+ * Storage for the formulas, values and dependants of every cell within a {@link Sheet}.
+ * <p>
+ * Cells are addressed by slot rather than by {@link CellLocation},
+ * where the slot of a cell is {@code row * columns + column}.
+ * Addressing cells by slot means reads and writes do not need to allocate a location,
+ * and the dependants of a cell can be held as plain lists of slots.
+ * <p>
+ * Every cell initially holds the default expression as both its formula and value,
+ * and has no dependants.
+ * <p>
+ * A cell may instead hold a {@link FormulaTemplate} shared with other cells,
+ * in which case its formula is given by the template.
+ */
+abstract class CellStore {
+    protected final int rows;
+    protected final int columns;
+    protected final Expression defaultExpression;
+    private final ColumnAggregates aggregates;
+    private final RangeStatistics statistics;
+
+    /**
+     * Construct storage for a sheet of the given dimensions.
+     *
+     * @param defaultExpression The expression initially held in every cell.
+     * @param rows              Amount of rows for the sheet.
+     * @param columns           Amount of columns for the sheet.
+     * @requires rows &gt; 0 &amp;&amp; columns &gt; 0
+     * @requires rows * columns &lt;= Integer.MAX_VALUE
+     */
+    protected CellStore(Expression defaultExpression, int rows, int columns) {
+        this.defaultExpression = defaultExpression;
+        this.rows = rows;
+        this.columns = columns;
+        this.aggregates = new ColumnAggregates(this);
+        this.statistics = new RangeStatistics(this);
+    }
+
+    /**
+     * The number of rows in the sheet.
+     *
+     * @return The number of rows in the sheet.
+     */
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * The number of columns in the sheet.
+     *
+     * @return The number of columns in the sheet.
+     */
+    int getColumns() {
+        return columns;
+    }
+
+    /**
+     * The running sums of the values of the columns of the sheet.
+     * Implementations keep them up to date whenever the value of a cell is replaced.
+     *
+     * @return The column aggregates of this storage.
+     */
+    ColumnAggregates aggregates() {
+        return aggregates;
+    }
+
+    /**
+     * The ordered numbers within the ranges used by the sheet.
+     * Implementations keep them up to date whenever the value of a cell is replaced.
+     *
+     * @return The range statistics of this storage.
+     */
+    RangeStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * Adjust the {@link #aggregates()} and {@link #statistics()} for a cell whose value is about to be replaced.
+     * Implementations must call this from {@link #setValue(int, Expression)}.
+     *
+     * @param slot     The slot of the cell.
+     * @param previous The value the cell held.
+     * @param value    The value the cell will hold.
+     */
+    protected final void replacingValue(int slot, Expression previous, Expression value) {
+        aggregates.replace(slot, previous, value);
+        statistics.replace(slot, previous, value);
+    }
+
+    /**
+     * The slot of the cell at the given row and column.
+     *
+     * @param row    A row within the sheet.
+     * @param column A column within the sheet.
+     * @return The slot of the cell.
+     */
+    int slot(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * The slot of the cell at the given location.
+     *
+     * @param location A cell location within the sheet.
+     * @return The slot of the cell.
+     */
+    int slot(CellLocation location) {
+        return slot(location.getRow(), location.getColumn());
+    }
+
+    /**
+     * The slot of the cell named by an identifier, e.g. 2 for C0 in a sheet with three columns.
+     * <p>
+     * Identifiers that are not a reference to a cell within the sheet,
+     * such as built-ins, out of bounds cells or rows with leading zeros (A01), have no slot.
+     * Resolving an identifier does not allocate.
+     *
+     * @param identifier An identifier which may name a cell.
+     * @return The slot of the named cell, or -1 if the identifier does not name a cell.
+     */
+    int slot(String identifier) {
+        return slotAt(ReferenceCodec.decodeCanonical(identifier));
+    }
+
+    /**
+     * The slot of the cell at a packed reference, as given by {@link Expression#references()}.
+     *
+     * @param reference A reference packed by {@link ReferenceCodec}, or {@link ReferenceCodec#NOT_A_REFERENCE}.
+     * @return The slot of the referenced cell, or -1 if the cell is not within the sheet.
+     */
+    int slotAt(long reference) {
+        if (reference == ReferenceCodec.NOT_A_REFERENCE) {
+            return -1;
+        }
+        int row = ReferenceCodec.row(reference);
+        int column = ReferenceCodec.column(reference);
+        if (row >= rows || column >= columns) {
+            return -1;
+        }
+        return slot(row, column);
+    }
+
+    /**
+     * The location of the cell in the given slot.
+     *
+     * @param slot A slot within the sheet.
+     * @return The location of the cell.
+     */
+    CellLocation location(int slot) {
+        return new CellLocation(slot / columns, slot % columns);
+    }
+
+    /**
+     * The formula held in a cell, rebuilt from the template of the cell if it holds one.
+     *
+     * @param slot A slot within the sheet.
+     * @return The formula held in the cell.
+     */
+    Expression formula(int slot) {
+        FormulaTemplate template = template(slot);
+        if (template != null) {
+            return template.formula(slot / columns, slot % columns);
+        }
+        return storedFormula(slot);
+    }
+
+    /**
+     * The formula stored in a cell, ignoring any template held by the cell.
+     *
+     * @param slot A slot within the sheet.
+     * @return The formula stored in the cell.
+     */
+    abstract Expression storedFormula(int slot);
+
+    /**
+     * The value held in a cell.
+     *
+     * @param slot A slot within the sheet.
+     * @return The value held in the cell.
+     */
+    abstract Expression value(int slot);
+
+    /**
+     * Replace the formula held in a cell.
+     *
+     * @param slot    A slot within the sheet.
+     * @param formula The new formula of the cell.
+     */
+    abstract void setFormula(int slot, Expression formula);
+
+    /**
+     * Replace the value held in a cell, adjusting the {@link #aggregates()} and {@link #statistics()}.
+     *
+     * @param slot  A slot within the sheet.
+     * @param value The new value of the cell.
+     */
+    abstract void setValue(int slot, Expression value);
+
+    /**
+     * The compiled form of the formula held in a cell.
+     *
+     * @param slot A slot within the sheet.
+     * @return The compiled formula, or null if the formula has not been compiled.
+     */
+    abstract Program program(int slot);
+
+    /**
+     * Replace the compiled form of the formula held in a cell.
+     *
+     * @param slot    A slot within the sheet.
+     * @param program The compiled formula, or null if the formula has not been compiled.
+     */
+    abstract void setProgram(int slot, Program program);
+
+    /**
+     * The template held by a cell.
+     *
+     * @param slot A slot within the sheet.
+     * @return The template of the formula of the cell, or null if the cell holds its own formula.
+     */
+    abstract FormulaTemplate template(int slot);
+
+    /**
+     * Replace the template held by a cell.
+     * A cell holding a template stores the default expression as its formula and no compiled formula.
+     *
+     * @param slot     A slot within the sheet.
+     * @param template The template of the formula of the cell, or null if the cell holds its own formula.
+     */
+    abstract void setTemplate(int slot, FormulaTemplate template);
+
+    /**
+     * The number of cells which directly depend upon a cell.
+     *
+     * @param slot A slot within the sheet.
+     * @return The number of direct dependants of the cell.
+     */
+    abstract int dependantCount(int slot);
+
+    /**
+     * One of the cells which directly depend upon a cell.
+     *
+     * @param slot  A slot within the sheet.
+     * @param index The index of the dependant to retrieve.
+     * @return The slot of the dependant.
+     * @requires 0 &lt;= index &lt; dependantCount(slot)
+     */
+    abstract int dependant(int slot, int index);
+
+    /**
+     * Record that a cell directly depends upon another cell.
+     *
+     * @param slot      The slot of the cell depended upon.
+     * @param dependant The slot of the cell that depends upon it.
+     */
+    abstract void addDependant(int slot, int dependant);
+
+    /**
+     * Remove a record that a cell directly depends upon another cell.
+     *
+     * @param slot      The slot of the cell depended upon.
+     * @param dependant The slot of the cell that no longer depends upon it.
+     */
+    abstract void removeDependant(int slot, int dependant);
+}
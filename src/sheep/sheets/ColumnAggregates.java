@@ -0,0 +1,223 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.basic.Constant;
+
+/**
+ * Running sums of the committed values of the columns of a sheet used by ranges, kept in Fenwick trees.
+ * <p>
+ * Summing a run of a tracked column costs O(log n) rather than reading every cell,
+ * and changing the value of a cell adjusts the sums of its column in O(log n).
+ * Only cells holding a {@link Constant} contribute a number,
+ * the number of cells holding anything else is counted alongside the sums
+ * so that callers can tell when the sum of a range is not the whole story.
+ * <p>
+ * Columns are tracked while ranges over them are {@link #retain(int, int, int, int) retained},
+ * and only over the rows from the top of the highest of those ranges to the bottom of the lowest,
+ * so sheets without ranges pay nothing, and a short range down a tall column only keeps sums for its rows.
+ * Retaining a range reaching beyond the tracked rows of a column rebuilds its sums over the wider rows,
+ * and the sums of a column are discarded once every range over it has been released.
+ */
+class ColumnAggregates {
+    private final CellStore cells;
+    // per column, null while no range over the column is retained
+    private final Column[] columns;
+
+    /**
+     * The sums of the tracked rows of a column, and the number of retained ranges over the column.
+     */
+    private static final class Column {
+        private int uses = 0;
+        private int first;
+        private int last;
+        private long[] sums;
+        private int[] irregular;
+    }
+
+    /**
+     * Construct aggregates over the values held in a cell store, initially tracking no columns.
+     *
+     * @param cells The storage whose committed values are summed.
+     */
+    ColumnAggregates(CellStore cells) {
+        this.cells = cells;
+        this.columns = new Column[cells.getColumns()];
+    }
+
+    /**
+     * Whether the sums of a run of cells of a column are maintained.
+     *
+     * @param column A column within the sheet.
+     * @param top    The first row of the run.
+     * @param bottom The last row of the run, inclusive.
+     * @return true if every row of the run is tracked in the column.
+     */
+    boolean isTracked(int column, int top, int bottom) {
+        Column tracked = columns[column];
+        return tracked != null && tracked.first <= top && bottom <= tracked.last;
+    }
+
+    /**
+     * Record that a formula uses a range, maintaining the sums of its cells.
+     * Building the sums of rows of a column not yet tracked costs O(rows) for the rows tracked.
+     * A range may be retained several times, it must then be released as many times.
+     * The part of the range outside the sheet is ignored.
+     *
+     * @param top    The first row of the range.
+     * @param left   The first column of the range.
+     * @param bottom The last row of the range, inclusive.
+     * @param right  The last column of the range, inclusive.
+     */
+    void retain(int top, int left, int bottom, int right) {
+        bottom = Math.min(bottom, cells.getRows() - 1);
+        right = Math.min(right, cells.getColumns() - 1);
+        for (int column = left; column <= right && top <= bottom; column++) {
+            Column tracked = columns[column];
+            if (tracked == null) {
+                tracked = new Column();
+                build(column, tracked, top, bottom);
+                columns[column] = tracked;
+            } else if (top < tracked.first || bottom > tracked.last) {
+                build(column, tracked, Math.min(top, tracked.first), Math.max(bottom, tracked.last));
+            }
+            tracked.uses++;
+        }
+    }
+
+    /**
+     * Remove a record that a formula uses a range,
+     * discarding the sums of every column no longer used by any range.
+     *
+     * @param top    The first row of the range.
+     * @param left   The first column of the range.
+     * @param bottom The last row of the range, inclusive.
+     * @param right  The last column of the range, inclusive.
+     * @requires the range has been retained more times than it has been released
+     */
+    void release(int top, int left, int bottom, int right) {
+        bottom = Math.min(bottom, cells.getRows() - 1);
+        right = Math.min(right, cells.getColumns() - 1);
+        for (int column = left; column <= right && top <= bottom; column++) {
+            Column tracked = columns[column];
+            if (tracked != null && --tracked.uses == 0) {
+                columns[column] = null;
+            }
+        }
+    }
+
+    /**
+     * Build the sums of the rows of a column from the current values of its cells in O(rows).
+     */
+    private void build(int column, Column tracked, int first, int last) {
+        int rows = last - first + 1;
+        long[] columnSums = new long[rows + 1];
+        int[] columnIrregular = new int[rows + 1];
+        for (int row = 0; row < rows; row++) {
+            Expression value = cells.value(cells.slot(first + row, column));
+            if (isNumber(value)) {
+                columnSums[row + 1] = ((Constant) value).getValue();
+            } else {
+                columnIrregular[row + 1] = 1;
+            }
+        }
+        // build both trees in place in linear time
+        for (int index = 1; index <= rows; index++) {
+            int parent = index + (index & -index);
+            if (parent <= rows) {
+                columnSums[parent] += columnSums[index];
+                columnIrregular[parent] += columnIrregular[index];
+            }
+        }
+        tracked.first = first;
+        tracked.last = last;
+        tracked.irregular = columnIrregular;
+        tracked.sums = columnSums;
+    }
+
+    /**
+     * Adjust the sums for a cell whose committed value is replaced.
+     * Does nothing if the row of the cell is not tracked in its column.
+     *
+     * @param slot     The slot of the cell.
+     * @param previous The value the cell held.
+     * @param value    The value the cell now holds.
+     */
+    void replace(int slot, Expression previous, Expression value) {
+        int row = slot / cells.getColumns();
+        Column tracked = columns[slot % cells.getColumns()];
+        if (tracked == null || row < tracked.first || row > tracked.last) {
+            return;
+        }
+        long difference = number(value) - number(previous);
+        int irregularity = (isNumber(previous) ? 0 : 1) - (isNumber(value) ? 0 : 1);
+        for (int index = row - tracked.first + 1; index < tracked.sums.length; index += index & -index) {
+            tracked.sums[index] += difference;
+            tracked.irregular[index] -= irregularity;
+        }
+    }
+
+    /**
+     * The sum of the numbers held in a run of cells of a tracked column.
+     *
+     * @param column A tracked column.
+     * @param top    The first row of the run.
+     * @param bottom The last row of the run, inclusive.
+     * @return The sum of the numbers held by the cells, wrapping on overflow.
+     * @requires isTracked(column, top, bottom) &amp;&amp; top &lt;= bottom
+     */
+    long sum(int column, int top, int bottom) {
+        Column tracked = columns[column];
+        return prefix(tracked.sums, bottom - tracked.first + 1) - prefix(tracked.sums, top - tracked.first);
+    }
+
+    /**
+     * The number of cells in a run of a tracked column which do not hold a number.
+     *
+     * @param column A tracked column.
+     * @param top    The first row of the run.
+     * @param bottom The last row of the run, inclusive.
+     * @return The number of cells holding anything other than a constant.
+     * @requires isTracked(column, top, bottom) &amp;&amp; top &lt;= bottom
+     */
+    int irregular(int column, int top, int bottom) {
+        Column tracked = columns[column];
+        return prefix(tracked.irregular, bottom - tracked.first + 1)
+                - prefix(tracked.irregular, top - tracked.first);
+    }
+
+    private static long prefix(long[] tree, int length) {
+        long result = 0;
+        for (int index = length; index > 0; index -= index & -index) {
+            result += tree[index];
+        }
+        return result;
+    }
+
+    private static int prefix(int[] tree, int length) {
+        int result = 0;
+        for (int index = length; index > 0; index -= index & -index) {
+            result += tree[index];
+        }
+        return result;
+    }
+
+    /**
+     * Whether a value contributes a number to the sums.
+     *
+     * @param value The value of a cell.
+     * @return true if the value is a constant.
+     */
+    static boolean isNumber(Expression value) {
+        return value.getClass() == Constant.class;
+    }
+
+    /**
+     * The number a value contributes to the sums.
+     *
+     * @param value The value of a cell.
+     * @return The number held by a constant, or 0 for any other value.
+     */
+    static long number(Expression value) {
+        return isNumber(value) ? ((Constant) value).getValue() : 0;
+    }
+}
@@ -0,0 +1,121 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.Arrays;
+
+/**
+ * Cell storage backed by flat arrays indexed by slot.
+ * <p>
+ * Formulas, compiled formulas, templates and values are held in one array each,
+ * and the dependants of each cell are held in a primitive array of slots
+ * that is only allocated once the cell gains a dependant.
+ */
+class DenseCellStore extends CellStore {
+    private static final int[] NO_DEPENDANTS = new int[0];
+
+    private final Expression[] formulas;
+    private final Expression[] values;
+    private final Program[] programs;
+    private final FormulaTemplate[] templates;
+    private final int[][] dependants;
+    private final int[] dependantCounts;
+
+    /**
+     * Construct dense storage for a sheet of the given dimensions.
+     *
+     * @param defaultExpression The expression initially held in every cell.
+     * @param rows              Amount of rows for the sheet.
+     * @param columns           Amount of columns for the sheet.
+     * @requires rows &gt; 0 &amp;&amp; columns &gt; 0
+     * @requires rows * columns &lt;= Integer.MAX_VALUE
+     */
+    DenseCellStore(Expression defaultExpression, int rows, int columns) {
+        super(defaultExpression, rows, columns);
+        int cells = Math.multiplyExact(rows, columns);
+        formulas = new Expression[cells];
+        values = new Expression[cells];
+        programs = new Program[cells];
+        templates = new FormulaTemplate[cells];
+        dependants = new int[cells][];
+        dependantCounts = new int[cells];
+        Arrays.fill(formulas, defaultExpression);
+        Arrays.fill(values, defaultExpression);
+        Arrays.fill(dependants, NO_DEPENDANTS);
+    }
+
+    @Override
+    Expression storedFormula(int slot) {
+        return formulas[slot];
+    }
+
+    @Override
+    Expression value(int slot) {
+        return values[slot];
+    }
+
+    @Override
+    void setFormula(int slot, Expression formula) {
+        formulas[slot] = formula;
+    }
+
+    @Override
+    void setValue(int slot, Expression value) {
+        replacingValue(slot, values[slot], value);
+        values[slot] = value;
+    }
+
+    @Override
+    Program program(int slot) {
+        return programs[slot];
+    }
+
+    @Override
+    void setProgram(int slot, Program program) {
+        programs[slot] = program;
+    }
+
+    @Override
+    FormulaTemplate template(int slot) {
+        return templates[slot];
+    }
+
+    @Override
+    void setTemplate(int slot, FormulaTemplate template) {
+        templates[slot] = template;
+    }
+
+    @Override
+    int dependantCount(int slot) {
+        return dependantCounts[slot];
+    }
+
+    @Override
+    int dependant(int slot, int index) {
+        return dependants[slot][index];
+    }
+
+    @Override
+    void addDependant(int slot, int dependant) {
+        int count = dependantCounts[slot];
+        if (count == dependants[slot].length) {
+            dependants[slot] = Arrays.copyOf(dependants[slot], Math.max(4, count * 2));
+        }
+        dependants[slot][count] = dependant;
+        dependantCounts[slot] = count + 1;
+    }
+
+    @Override
+    void removeDependant(int slot, int dependant) {
+        int[] list = dependants[slot];
+        int count = dependantCounts[slot];
+        for (int i = 0; i < count; i++) {
+            if (list[i] == dependant) {
+                // order of dependants is irrelevant, fill the gap with the last one
+                list[i] = list[count - 1];
+                dependantCounts[slot] = count - 1;
+                return;
+            }
+        }
+    }
+}
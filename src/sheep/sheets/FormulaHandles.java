@@ -0,0 +1,215 @@
+package sheep.sheets;
+
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Divide;
+import sheep.expression.arithmetic.Equal;
+import sheep.expression.arithmetic.Less;
+import sheep.expression.arithmetic.Minus;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.arithmetic.Plus;
+import sheep.expression.arithmetic.Sum;
+import sheep.expression.arithmetic.Times;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+
+/**
+ * Generates a method handle that evaluates the instructions of a {@link Program}.
+ * <p>
+ * Every instruction becomes a small method handle taking the transaction and the slot the program is run for,
+ * and returning a number,
+ * and operations combine the handles of their arguments,
+ * so a whole formula becomes a single tree of method handles which the JIT can inline.
+ * Binary arithmetic is generated as direct arithmetic on two numbers,
+ * any other operation is performed on an array of its arguments.
+ * <p>
+ * Arguments are evaluated strictly from left to right, exactly as the instructions are interpreted,
+ * and every argument of an operation which can fail is evaluated before the operation is applied.
+ * Each invocation has its own array of registers:
+ * saving a register stores the value as it is computed and loading it reads the stored value,
+ * so a repeated subexpression is evaluated once per invocation however often it is used.
+ * <p>
+ * Cells are read at the slot the handle is invoked with plus the operand of the instruction,
+ * so the handle of a relative program serves every cell sharing it,
+ * and the handle of any other program is invoked with slot 0.
+ */
+final class FormulaHandles {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType FORMULA = MethodType.methodType(long.class, Transaction.class, int.class);
+    // the type of the handle of an instruction, which also takes the registers of the invocation
+    private static final MethodType STEP = FORMULA.appendParameterTypes(long[].class);
+    private static final MethodType BINARY = MethodType.methodType(long.class, long.class, long.class);
+
+    private static final MethodHandle CELL;
+    private static final MethodHandle OFFSET;
+    private static final MethodHandle FAIL;
+    private static final MethodHandle PERFORM;
+    private static final MethodHandle SAVE;
+    private static final MethodHandle LOAD;
+    private static final MethodHandle REGISTERS;
+    // operations which can be applied to more than two arguments by folding from the left,
+    // as applying them to the first arguments can never fail before the later arguments are evaluated
+    private static final Map<Class<?>, MethodHandle> FOLDS;
+    // operations which are only generated directly when applied to exactly two arguments,
+    // division by zero must not be raised before a later argument fails to evaluate
+    private static final Map<Class<?>, MethodHandle> PAIRS;
+
+    static {
+        try {
+            CELL = LOOKUP.findVirtual(Transaction.class, "valueAt", MethodType.methodType(long.class, int.class));
+            OFFSET = LOOKUP.findStatic(FormulaHandles.class, "offset",
+                    MethodType.methodType(int.class, int.class, int.class));
+            FAIL = LOOKUP.findStatic(FormulaHandles.class, "fail",
+                    MethodType.methodType(long.class, Transaction.class));
+            PERFORM = LOOKUP.findVirtual(Operation.class, "perform",
+                    MethodType.methodType(long.class, long[].class, int.class, int.class));
+            SAVE = LOOKUP.findStatic(FormulaHandles.class, "save",
+                    MethodType.methodType(long.class, long.class, long[].class, int.class));
+            LOAD = MethodHandles.arrayElementGetter(long[].class);
+            REGISTERS = MethodHandles.arrayConstructor(long[].class);
+            MethodHandle plus = LOOKUP.findStatic(FormulaHandles.class, "plus", BINARY);
+            FOLDS = Map.of(
+                    Plus.class, plus,
+                    Sum.class, plus,
+                    Minus.class, LOOKUP.findStatic(FormulaHandles.class, "minus", BINARY),
+                    Times.class, LOOKUP.findStatic(FormulaHandles.class, "times", BINARY));
+            PAIRS = Map.of(
+                    Divide.class, LOOKUP.findStatic(FormulaHandles.class, "divide", BINARY),
+                    Less.class, LOOKUP.findStatic(FormulaHandles.class, "less", BINARY),
+                    Equal.class, LOOKUP.findStatic(FormulaHandles.class, "equal", BINARY));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private FormulaHandles() {
+    }
+
+    /**
+     * Generate a method handle of type (Transaction, int)long for the instructions of a program,
+     * taking the transaction and the slot the program is run for.
+     *
+     * @param code       The instructions of the program.
+     * @param constants  The constants pushed by the program, in order.
+     * @param operations The operations applied by the program, in order.
+     * @return A method handle computing the result of the program, or null if it could not be generated.
+     */
+    static MethodHandle generate(int[] code, long[] constants, Operation[] operations) {
+        Deque<MethodHandle> stack = new ArrayDeque<>();
+        int registers = 0;
+        int constant = 0;
+        int operation = 0;
+        try {
+            for (int pc = 0; pc < code.length; pc++) {
+                switch (code[pc]) {
+                    case Program.CONSTANT -> stack.push(MethodHandles.dropArguments(
+                            MethodHandles.constant(long.class, constants[constant++]), 0, STEP.parameterList()));
+                    case Program.CELL -> stack.push(MethodHandles.dropArguments(MethodHandles.filterArguments(
+                            CELL, 1, MethodHandles.insertArguments(OFFSET, 1, code[++pc])), 2, long[].class));
+                    case Program.APPLY -> {
+                        MethodHandle[] arguments = new MethodHandle[code[++pc]];
+                        for (int i = arguments.length - 1; i >= 0; i--) {
+                            arguments[i] = stack.pop();
+                        }
+                        stack.push(apply(operations[operation++], arguments));
+                    }
+                    case Program.SAVE -> {
+                        int register = code[++pc];
+                        registers = Math.max(registers, register + 1);
+                        // (value, transaction, slot, registers) -> value, storing the value in the register
+                        MethodHandle store = MethodHandles.dropArguments(
+                                MethodHandles.insertArguments(SAVE, 2, register), 1, Transaction.class, int.class);
+                        stack.push(MethodHandles.foldArguments(store, stack.pop()));
+                    }
+                    case Program.LOAD -> stack.push(MethodHandles.dropArguments(
+                            MethodHandles.insertArguments(LOAD, 1, code[++pc]), 0, Transaction.class, int.class));
+                    default -> stack.push(MethodHandles.dropArguments(FAIL, 1, int.class, long[].class));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // e.g. an operation with too many arguments for a method handle
+            return null;
+        }
+        MethodHandle formula = stack.pop();
+        // every invocation starts with its own registers, created before the formula is evaluated
+        MethodHandle allocate = MethodHandles.dropArguments(
+                MethodHandles.insertArguments(REGISTERS, 0, registers), 0, FORMULA.parameterList());
+        return MethodHandles.foldArguments(
+                MethodHandles.permuteArguments(formula, FORMULA.insertParameterTypes(0, long[].class), 1, 2, 0),
+                allocate);
+    }
+
+    /**
+     * A method handle applying an operation to the results of the handles of its arguments.
+     */
+    private static MethodHandle apply(Operation operation, MethodHandle[] arguments) {
+        MethodHandle fold = FOLDS.get(operation.getClass());
+        if (fold != null) {
+            MethodHandle result = arguments[0];
+            for (int i = 1; i < arguments.length; i++) {
+                result = combine(fold, result, arguments[i]);
+            }
+            return result;
+        }
+        MethodHandle pair = PAIRS.get(operation.getClass());
+        if (pair != null && arguments.length == 2) {
+            return combine(pair, arguments);
+        }
+        MethodHandle perform = MethodHandles.insertArguments(PERFORM.bindTo(operation), 1, 0, arguments.length)
+                .asCollector(long[].class, arguments.length);
+        return combine(perform, arguments);
+    }
+
+    /**
+     * Feed the results of the given handles, each called with the same transaction and registers, into a combiner.
+     * Each argument is folded into the combiner in turn, so the arguments are evaluated from left to right.
+     */
+    private static MethodHandle combine(MethodHandle combiner, MethodHandle... arguments) {
+        MethodHandle result = MethodHandles.dropArguments(combiner, arguments.length, STEP.parameterList());
+        for (int i = arguments.length - 1; i >= 0; i--) {
+            result = MethodHandles.foldArguments(result, i, arguments[i]);
+        }
+        return result;
+    }
+
+    private static int offset(int slot, int offset) {
+        return slot + offset;
+    }
+
+    private static long fail(Transaction transaction) throws TypeError {
+        throw new TypeError();
+    }
+
+    private static long save(long value, long[] registers, int register) {
+        registers[register] = value;
+        return value;
+    }
+
+    private static long plus(long left, long right) {
+        return left + right;
+    }
+
+    private static long minus(long left, long right) {
+        return left - right;
+    }
+
+    private static long times(long left, long right) {
+        return left * right;
+    }
+
+    private static long divide(long left, long right) {
+        return left / right;
+    }
+
+    private static long less(long left, long right) {
+        return left < right ? 1 : 0;
+    }
+
+    private static long equal(long left, long right) {
+        return left == right ? 1 : 0;
+    }
+}
@@ -0,0 +1,244 @@
+package sheep.sheets;
+
+import sheep.core.ReferenceCodec;
+import sheep.expression.Expression;
+import sheep.expression.Simplified;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A formula written relative to the position of its cell, shared by every cell holding the same relative formula.
+ * <p>
+ * Filling a formula down a column, e.g. {@code A1 + A0} in A2, {@code A2 + A1} in A3, and so on,
+ * gives every cell the same formula in R1C1 notation, {@code R[-1]C[0] + R[-2]C[0]}.
+ * Such cells hold one template between them instead of a formula and compiled {@link Program} each:
+ * the template keeps the formula of the first cell that held it, its prototype,
+ * and a relative program which runs for any cell from the slot of the cell.
+ * The absolute formula of any other cell is rebuilt from the prototype when it is asked for,
+ * e.g. to render the cell,
+ * while the cells used by any cell are found from their offsets without rebuilding its formula.
+ * <p>
+ * Only formulas that compile into a program and only reference cells are templated,
+ * and only in cells from which every cell the formula references is within the sheet.
+ * A {@link Simplified} formula is templated by the formula as it was written, so it renders as written in every cell,
+ * and its program is compiled from the simplified formula.
+ */
+final class FormulaTemplate {
+    private final String key;
+    private final Expression prototype;
+    private final int row;
+    private final int column;
+    private final Program program;
+    // the offsets from the slot of a cell to the slots of the distinct cells its formula references
+    private final int[] offsets;
+    private int uses = 0;
+
+    private FormulaTemplate(String key, Expression prototype, int row, int column, Program program,
+                            int[] offsets) {
+        this.key = key;
+        this.prototype = prototype;
+        this.row = row;
+        this.column = column;
+        this.program = program;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Create the template of the formula of a cell.
+     *
+     * @param key     The relative form of the formula, as given by {@link #key(Expression, int, int, int[])}.
+     * @param formula The formula of the cell.
+     * @param cells     The storage of the sheet holding the cell.
+     * @param slot      The slot of the cell.
+     * @param threshold The number of runs, by any cells, after which the program of the template is generated
+     *                  into a method handle, or {@link Program#NEVER}.
+     * @return The template of the formula, or null if the formula cannot be compiled.
+     * @requires every cell referenced by the formula is within the sheet
+     */
+    static FormulaTemplate create(String key, Expression formula, CellStore cells, int slot, int threshold) {
+        Program program = Program.compileRelative(formula, cells, slot, threshold);
+        if (program == null) {
+            return null;
+        }
+        long[] references = formula.references();
+        int[] offsets = new int[references.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = cells.slotAt(references[i]) - slot;
+        }
+        return new FormulaTemplate(key, formula, slot / cells.getColumns(), slot % cells.getColumns(),
+                program, offsets);
+    }
+
+    /**
+     * The relative form of a formula held in a cell, e.g. {@code +(R[-1]C[0],R[-2]C[0])},
+     * which is the same for every cell holding the formula relative to its own position.
+     * <p>
+     * The offsets of the referenced cells furthest above, left, below and right of the cell
+     * are written into the bounds, in that order, and are the same for every cell with the same relative form.
+     *
+     * @param formula The formula held in the cell.
+     * @param row     The row of the cell.
+     * @param column  The column of the cell.
+     * @param bounds  An array of four numbers to write the bounds of the references into.
+     * @return The relative form of the formula, or null if the formula cannot be templated.
+     */
+    static String key(Expression formula, int row, int column, int[] bounds) {
+        if (formula instanceof Simplified simplified) {
+            formula = simplified.original();
+        }
+        if (!(formula instanceof Operation)) {
+            // constants and references are already as small as a template
+            return null;
+        }
+        bounds[0] = 0;
+        bounds[1] = 0;
+        bounds[2] = 0;
+        bounds[3] = 0;
+        StringBuilder key = new StringBuilder();
+        return describe(formula, row, column, bounds, key) ? key.toString() : null;
+    }
+
+    private static boolean describe(Expression expression, int row, int column, int[] bounds, StringBuilder key) {
+        if (expression.getClass() == Constant.class) {
+            key.append(((Constant) expression).getValue());
+            return true;
+        }
+        if (expression.getClass() == Nothing.class) {
+            key.append('_');
+            return true;
+        }
+        if (expression.getClass() == Reference.class) {
+            long reference = ReferenceCodec.decodeCanonical(((Reference) expression).getIdentifier());
+            if (reference == ReferenceCodec.NOT_A_REFERENCE) {
+                // built-ins are resolved when compiled, so they are not templated
+                return false;
+            }
+            int rows = ReferenceCodec.row(reference) - row;
+            int columns = ReferenceCodec.column(reference) - column;
+            bounds[0] = Math.min(bounds[0], rows);
+            bounds[1] = Math.min(bounds[1], columns);
+            bounds[2] = Math.max(bounds[2], rows);
+            bounds[3] = Math.max(bounds[3], columns);
+            key.append("R[").append(rows).append("]C[").append(columns).append(']');
+            return true;
+        }
+        if (expression instanceof Operation operation && Program.isCompiled(operation)) {
+            key.append(operation.getOperator()).append('(');
+            List<Expression> arguments = operation.getExpressions();
+            for (int i = 0; i < arguments.size(); i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+                if (!describe(arguments.get(i), row, column, bounds, key)) {
+                    return false;
+                }
+            }
+            key.append(')');
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The relative form of the formula shared by this template.
+     *
+     * @return The key of this template.
+     */
+    String key() {
+        return key;
+    }
+
+    /**
+     * Evaluate the template for a cell against the values seen by a transaction.
+     *
+     * @param transaction The transaction holding the values of the cells of the sheet.
+     * @param slot        The slot of the cell.
+     * @return The numeric result of the formula of the cell.
+     * @throws TypeError If any argument of an operation is not numeric.
+     * @requires every cell referenced by the template from the cell is within the sheet
+     */
+    long run(Transaction transaction, int slot) throws TypeError {
+        return program.run(transaction, slot);
+    }
+
+    /**
+     * The offsets from the slot of a cell holding this template to the slots of the distinct cells it references,
+     * the same for every cell holding the template.
+     * The returned array is shared and must not be modified.
+     *
+     * @return The offsets of the referenced cells.
+     */
+    int[] offsets() {
+        return offsets;
+    }
+
+    /**
+     * The absolute formula of a cell holding this template, e.g. {@code A5 + A4} for the cell A6.
+     * The formula is rebuilt on every call, except for the cell the template was created from.
+     *
+     * @param row    The row of the cell.
+     * @param column The column of the cell.
+     * @return The formula of the cell.
+     * @requires every cell referenced by the template from the cell is within the sheet
+     */
+    Expression formula(int row, int column) {
+        if (row == this.row && column == this.column) {
+            return prototype;
+        }
+        return translate(prototype, row - this.row, column - this.column, new IdentityHashMap<>());
+    }
+
+    /**
+     * Rebuild an expression with every reference moved by an offset,
+     * keeping subexpressions that appear several times shared.
+     */
+    private static Expression translate(Expression expression, int rows, int columns,
+                                        Map<Expression, Expression> translated) {
+        if (expression instanceof Simplified simplified) {
+            return new Simplified(translate(simplified.original(), rows, columns, translated),
+                    translate(simplified.simplified(), rows, columns, translated));
+        }
+        if (expression.getClass() == Reference.class) {
+            long reference = ReferenceCodec.decodeCanonical(((Reference) expression).getIdentifier());
+            return new Reference(ReferenceCodec.encode(ReferenceCodec.row(reference) + rows,
+                    ReferenceCodec.column(reference) + columns));
+        }
+        if (!(expression instanceof Operation operation)) {
+            return expression;
+        }
+        Expression done = translated.get(operation);
+        if (done == null) {
+            List<Expression> arguments = operation.getExpressions();
+            Expression[] moved = new Expression[arguments.size()];
+            for (int i = 0; i < moved.length; i++) {
+                moved[i] = translate(arguments.get(i), rows, columns, translated);
+            }
+            done = Operation.build(operation.getOperator(), moved);
+            translated.put(operation, done);
+        }
+        return done;
+    }
+
+    /**
+     * Record that another cell holds this template.
+     */
+    void retain() {
+        uses++;
+    }
+
+    /**
+     * Record that a cell no longer holds this template.
+     *
+     * @return true if no cell holds this template any more.
+     */
+    boolean release() {
+        return --uses == 0;
+    }
+}
@@ -0,0 +1,97 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The table of the {@link FormulaTemplate templates} held by the cells of a sheet, interned by their relative form.
+ * <p>
+ * Every cell holding the same formula relative to its position is given the same template,
+ * so a formula filled down thousands of rows is compiled once and held once.
+ * A template is dropped from the table once no cell holds it.
+ */
+class FormulaTemplates {
+    private final CellStore cells;
+    private final Map<String, FormulaTemplate> templates = new HashMap<>();
+    private final int[] bounds = new int[4];
+
+    /**
+     * Construct an empty table of templates for the cells of a sheet.
+     *
+     * @param cells The storage of the sheet.
+     */
+    FormulaTemplates(CellStore cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * The template of a formula to be held by a cell, retained for the cell.
+     * The template must be released once the cell no longer holds it.
+     *
+     * @param slot      The slot of the cell.
+     * @param formula   The formula to be held by the cell.
+     * @param threshold The number of runs after which the program of a new template is generated,
+     *                  or {@link Program#NEVER}.
+     * @return The template of the formula, or null if the formula cannot be held as a template by the cell.
+     */
+    FormulaTemplate retain(int slot, Expression formula, int threshold) {
+        int row = slot / cells.getColumns();
+        int column = slot % cells.getColumns();
+        String key = FormulaTemplate.key(formula, row, column, bounds);
+        if (key == null || !fits(row, column)) {
+            return null;
+        }
+        FormulaTemplate template = templates.get(key);
+        if (template == null) {
+            template = FormulaTemplate.create(key, formula, cells, slot, threshold);
+            if (template == null) {
+                return null;
+            }
+            templates.put(key, template);
+        }
+        template.retain();
+        return template;
+    }
+
+    /**
+     * Retain a template held by a cell once more, e.g. while the cell may be restored to it.
+     * The template must be released as many times as it is retained.
+     *
+     * @param template The template to retain, or null for none.
+     */
+    void retain(FormulaTemplate template) {
+        if (template != null) {
+            template.retain();
+        }
+    }
+
+    /**
+     * Whether every cell referenced from a cell, as given by the last bounds found, is within the sheet.
+     */
+    private boolean fits(int row, int column) {
+        return row + bounds[0] >= 0 && row + bounds[2] < cells.getRows()
+                && column + bounds[1] >= 0 && column + bounds[3] < cells.getColumns();
+    }
+
+    /**
+     * Record that a cell no longer holds a template, dropping the template if no cell holds it.
+     *
+     * @param template The template the cell held, or null if it held none.
+     */
+    void release(FormulaTemplate template) {
+        if (template != null && template.release()) {
+            templates.remove(template.key());
+        }
+    }
+
+    /**
+     * The number of distinct templates held by the cells of the sheet.
+     *
+     * @return The number of templates in the table.
+     */
+    int size() {
+        return templates.size();
+    }
+}
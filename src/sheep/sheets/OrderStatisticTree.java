@@ -0,0 +1,188 @@
+package sheep.sheets;
+
+import java.util.SplittableRandom;
+
+/**
+ * A multiset of numbers that can find the k-th smallest number in O(log n).
+ * <p>
+ * The numbers are kept in a randomised binary search tree (treap) where every node holds a distinct number,
+ * how many times it occurs, and the number of occurrences within its subtree.
+ * Adding or removing a number and finding a number by rank all take O(log n) in expectation,
+ * so the median of a set of numbers can be kept up to date as the numbers change one at a time.
+ */
+class OrderStatisticTree {
+    private final SplittableRandom priorities = new SplittableRandom(0x5eed);
+    private Node root = null;
+
+    private static final class Node {
+        private final long value;
+        private final int priority;
+        private int count = 1;
+        private int size = 1;
+        private Node lower;
+        private Node higher;
+
+        private Node(long value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = count + size(lower) + size(higher);
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * The number of numbers held, counting repeated numbers once per occurrence.
+     *
+     * @return The number of numbers held.
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Add an occurrence of a number.
+     *
+     * @param value The number to add.
+     */
+    void add(long value) {
+        root = insert(root, value);
+    }
+
+    /**
+     * Remove an occurrence of a number.
+     * Numbers that are not held are ignored.
+     *
+     * @param value The number to remove.
+     */
+    void remove(long value) {
+        root = delete(root, value);
+    }
+
+    /**
+     * The number at a position among the numbers held in ascending order.
+     *
+     * @param rank The position of the number, 0 for the smallest.
+     * @return The number at the position.
+     * @requires 0 &lt;= rank &lt; size()
+     */
+    long select(int rank) {
+        Node node = root;
+        while (true) {
+            int lower = size(node.lower);
+            if (rank < lower) {
+                node = node.lower;
+            } else if (rank < lower + node.count) {
+                return node.value;
+            } else {
+                rank -= lower + node.count;
+                node = node.higher;
+            }
+        }
+    }
+
+    /**
+     * The number of numbers held that are no greater than a number.
+     *
+     * @param value The number to compare against.
+     * @return The number of occurrences of numbers less than or equal to the value.
+     */
+    int countAtMost(long value) {
+        int count = 0;
+        Node node = root;
+        while (node != null) {
+            if (value < node.value) {
+                node = node.lower;
+            } else {
+                count += size(node.lower) + node.count;
+                node = node.higher;
+            }
+        }
+        return count;
+    }
+
+    private Node insert(Node node, long value) {
+        if (node == null) {
+            return new Node(value, priorities.nextInt());
+        }
+        if (value == node.value) {
+            node.count++;
+        } else if (value < node.value) {
+            node.lower = insert(node.lower, value);
+            if (node.lower.priority > node.priority) {
+                node = rotateHigher(node);
+            }
+        } else {
+            node.higher = insert(node.higher, value);
+            if (node.higher.priority > node.priority) {
+                node = rotateLower(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, long value) {
+        if (node == null) {
+            return null;
+        }
+        if (value < node.value) {
+            node.lower = delete(node.lower, value);
+        } else if (value > node.value) {
+            node.higher = delete(node.higher, value);
+        } else if (--node.count == 0) {
+            return merge(node.lower, node.higher);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Join two treaps where every number of the first is less than every number of the second.
+     */
+    private static Node merge(Node lower, Node higher) {
+        if (lower == null) {
+            return higher;
+        }
+        if (higher == null) {
+            return lower;
+        }
+        if (lower.priority > higher.priority) {
+            lower.higher = merge(lower.higher, higher);
+            lower.update();
+            return lower;
+        }
+        higher.lower = merge(lower, higher.lower);
+        higher.update();
+        return higher;
+    }
+
+    /**
+     * Rotate the lower child of a node up into its place.
+     */
+    private static Node rotateHigher(Node node) {
+        Node lower = node.lower;
+        node.lower = lower.higher;
+        lower.higher = node;
+        node.update();
+        lower.update();
+        return lower;
+    }
+
+    /**
+     * Rotate the higher child of a node up into its place.
+     */
+    private static Node rotateLower(Node node) {
+        Node higher = node.higher;
+        node.higher = higher.lower;
+        higher.lower = node;
+        node.update();
+        higher.update();
+        return higher;
+    }
+}
@@ -0,0 +1,174 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+/**
+ * Evaluates the cells affected by an update one topological level at a time on a fork/join pool.
+ * <p>
+ * A cell belongs to level n if the longest chain of affected cells it depends upon has length n,
+ * so the cells of a level never depend on each other and can be evaluated concurrently,
+ * seeing only the values of earlier levels.
+ * The values of a level are written to the transaction once the whole level has been evaluated,
+ * so the transaction is never read and written at the same time.
+ * <p>
+ * Evaluation reads the formulas of the sheet and the values of the transaction from several threads,
+ * the expressions held in the sheet must therefore be safe to evaluate concurrently.
+ */
+class ParallelRecalculation {
+    /**
+     * The smallest number of cells evaluated by a single task,
+     * levels with fewer cells are evaluated on the calling thread.
+     */
+    static final int SPLIT_THRESHOLD = 64;
+
+    private final ForkJoinPool pool;
+    private final Dependants dependants;
+
+    /**
+     * Visits the cells which directly use a cell.
+     */
+    @FunctionalInterface
+    interface Dependants {
+        /**
+         * Visit the slot of every cell which directly uses the cell in a slot.
+         *
+         * @param slot    A slot within the sheet.
+         * @param visitor Accepts the slot of each dependant, possibly more than once.
+         */
+        void forEach(int slot, IntConsumer visitor);
+    }
+
+    /**
+     * Construct a recalculation of the cells of a sheet on the given pool.
+     *
+     * @param pool       The pool to evaluate levels on.
+     * @param dependants Visits the cells which directly use the cell in a slot.
+     */
+    ParallelRecalculation(ForkJoinPool pool, Dependants dependants) {
+        this.pool = pool;
+        this.dependants = dependants;
+    }
+
+    /**
+     * Evaluate every cell in the given order into the transaction.
+     * <p>
+     * When a cell results in a {@link TypeError} evaluation stops early and the transaction
+     * holds an incomplete set of changes which must be discarded.
+     * Which cell failed is not reported, as that depends on scheduling;
+     * the caller should evaluate serially to find the same error as the serial engine.
+     *
+     * @param order       The slots of the affected cells in topological order.
+     * @param transaction The transaction to evaluate against and record values in.
+     * @return true if every cell was evaluated, false if any cell resulted in a type error.
+     */
+    boolean evaluate(int[] order, Transaction transaction) {
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (int[] level : levels(order)) {
+            Expression[] values = new Expression[level.length];
+            LevelTask task = new LevelTask(level, values, transaction, failed, 0, level.length);
+            if (level.length < SPLIT_THRESHOLD) {
+                task.compute();
+            } else {
+                pool.invoke(task);
+            }
+            if (failed.get()) {
+                return false;
+            }
+            for (int i = 0; i < level.length; i++) {
+                transaction.put(level[i], values[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Group cells given in topological order into levels of cells that do not depend on each other.
+     *
+     * @param order The slots of the affected cells in topological order.
+     * @return The slots of the cells of each level, earlier levels first.
+     */
+    private int[][] levels(int[] order) {
+        Map<Integer, Integer> levels = new HashMap<>();
+        for (int slot : order) {
+            levels.put(slot, 0);
+        }
+
+        int depth = 0;
+        int[] sizes = new int[order.length];
+        SlotList usages = new SlotList();
+        for (int slot : order) {
+            // every affected dependency of the cell comes before it, so its level is final
+            int level = levels.get(slot);
+            sizes[level]++;
+            depth = Math.max(depth, level + 1);
+            usages.truncate(0);
+            dependants.forEach(slot, usages);
+            for (int i = 0; i < usages.size(); i++) {
+                Integer current = levels.get(usages.get(i));
+                if (current != null && current <= level) {
+                    levels.put(usages.get(i), level + 1);
+                }
+            }
+        }
+
+        int[][] grouped = new int[depth][];
+        for (int level = 0; level < depth; level++) {
+            grouped[level] = new int[sizes[level]];
+            sizes[level] = 0;
+        }
+        for (int slot : order) {
+            int level = levels.get(slot);
+            grouped[level][sizes[level]++] = slot;
+        }
+        return grouped;
+    }
+
+    /**
+     * Evaluates a range of the cells of a single level, splitting large ranges in half.
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] level;
+        private final Expression[] values;
+        private final Transaction transaction;
+        private final AtomicBoolean failed;
+        private final int from;
+        private final int to;
+
+        private LevelTask(int[] level, Expression[] values, Transaction transaction,
+                          AtomicBoolean failed, int from, int to) {
+            this.level = level;
+            this.values = values;
+            this.transaction = transaction;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new LevelTask(level, values, transaction, failed, from, middle),
+                        new LevelTask(level, values, transaction, failed, middle, to));
+                return;
+            }
+            for (int i = from; i < to && !failed.get(); i++) {
+                try {
+                    values[i] = transaction.evaluate(level[i]);
+                } catch (TypeError e) {
+                    failed.set(true);
+                }
+            }
+        }
+    }
+}
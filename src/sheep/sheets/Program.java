@@ -0,0 +1,384 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+import sheep.expression.Simplified;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Divide;
+import sheep.expression.arithmetic.Equal;
+import sheep.expression.arithmetic.ExpressionList;
+import sheep.expression.arithmetic.Identity;
+import sheep.expression.arithmetic.Less;
+import sheep.expression.arithmetic.Mean;
+import sheep.expression.arithmetic.Median;
+import sheep.expression.arithmetic.Minus;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.arithmetic.Plus;
+import sheep.expression.arithmetic.Sum;
+import sheep.expression.arithmetic.Times;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A formula compiled into a flat sequence of instructions over a stack of numbers.
+ * <p>
+ * Compiling resolves every reference ahead of time, either to the slot of a cell
+ * or to the number held by a constant built-in,
+ * so running a program performs no map lookups and allocates nothing.
+ * Each operation pops its arguments from the stack and pushes its result,
+ * in the same order as {@link Operation#value(Map)} would evaluate them.
+ * <p>
+ * Only formulas built entirely from the core operations, constants, empty expressions and references
+ * can be compiled, all other formulas, including those with ranges, are evaluated as trees.
+ * <p>
+ * A subexpression that appears several times within a formula, as the same instance,
+ * is only evaluated once: its result is saved into a register and loaded by later occurrences.
+ * Such formulas are built by {@link sheep.expression.OptimizingFactory}.
+ * <p>
+ * Programs that are run often may be promoted to a method handle generated by {@link FormulaHandles}.
+ * A program reuses its own stack and must not be run by several threads at once.
+ * <p>
+ * A relative program, as shared by the cells of a {@link FormulaTemplate},
+ * refers to cells by their offset from the slot it is run for,
+ * and runs on a stack belonging to the running thread so that it may be run by several threads at once.
+ * Its runs are counted across every cell sharing it, and its generated method handle takes the slot as an argument,
+ * so a formula filled down a column is generated once for the whole column.
+ */
+class Program {
+    private static final Set<Class<?>> OPERATIONS = Set.of(
+            Plus.class, Minus.class, Times.class, Divide.class, Less.class, Equal.class,
+            Mean.class, Median.class, Sum.class, ExpressionList.class, Identity.class);
+
+    /**
+     * Threshold which disables the generation of method handles.
+     */
+    static final int NEVER = 0;
+
+    // push the next constant
+    static final int CONSTANT = 0;
+    // push the numeric value of the cell in the given slot
+    static final int CELL = 1;
+    // replace the given number of arguments with the result of the next operation
+    static final int APPLY = 2;
+    // throw a type error, for empty expressions and references to nothing
+    static final int FAIL = 3;
+    // copy the top of the stack into the given register
+    static final int SAVE = 4;
+    // push the number held in the given register
+    static final int LOAD = 5;
+
+    // stacks and registers of relative programs run by each thread, grown as required
+    private static final ThreadLocal<long[]> SCRATCH = ThreadLocal.withInitial(() -> new long[64]);
+
+    private final int[] code;
+    private final long[] constants;
+    private final Operation[] operations;
+    private final int depth;
+    // the stack followed by the registers, or null if the program is relative
+    private final long[] scratch;
+
+    private final int threshold;
+    // relative programs are run by several threads, racing runs can at worst generate the handle twice
+    private int runs = 0;
+    private volatile MethodHandle generated = null;
+
+    private Program(int[] code, long[] constants, Operation[] operations, int depth, int registers,
+                    int threshold, boolean relative) {
+        this.code = code;
+        this.constants = constants;
+        this.operations = operations;
+        this.depth = depth;
+        this.scratch = relative ? null : new long[depth + registers];
+        this.threshold = threshold;
+    }
+
+    /**
+     * Compile a formula for evaluation within a sheet.
+     *
+     * @param formula  The formula to compile.
+     * @param cells    The storage of the sheet, used to resolve references to cells.
+     * @param builtins The built-ins of the sheet, used to resolve any other references.
+     * @return The compiled formula, or null if the formula cannot be compiled.
+     */
+    static Program compile(Expression formula, CellStore cells, Map<String, Expression> builtins) {
+        return compile(formula, cells, builtins, NEVER);
+    }
+
+    /**
+     * Compile a formula for evaluation within a sheet,
+     * generating a method handle for the formula once it has been run often enough.
+     * <p>
+     * The generated method handle computes exactly what the instructions would,
+     * but can be inlined by the JIT into a single method for the whole formula.
+     *
+     * @param formula   The formula to compile.
+     * @param cells     The storage of the sheet, used to resolve references to cells.
+     * @param builtins  The built-ins of the sheet, used to resolve any other references.
+     * @param threshold The number of runs after which a method handle is generated,
+     *                  or {@link #NEVER} to always interpret the instructions.
+     * @return The compiled formula, or null if the formula cannot be compiled.
+     */
+    static Program compile(Expression formula, CellStore cells, Map<String, Expression> builtins,
+                           int threshold) {
+        return compile(formula, cells, builtins, threshold, -1);
+    }
+
+    /**
+     * Compile a formula into a relative program, which can be run for any cell
+     * holding the same formula relative to its own position, see {@link #run(Transaction, int)}.
+     * <p>
+     * The program is generated into a method handle once it has been run often enough, by any cells.
+     *
+     * @param formula The formula to compile, as held by the cell in the origin slot.
+     * @param cells   The storage of the sheet, used to resolve references to cells.
+     * @param origin    The slot of the cell holding the formula.
+     * @param threshold The number of runs after which a method handle is generated,
+     *                  or {@link #NEVER} to always interpret the instructions.
+     * @return The compiled formula, or null if the formula cannot be compiled.
+     * @requires every reference of the formula is to a cell within the sheet
+     */
+    static Program compileRelative(Expression formula, CellStore cells, int origin, int threshold) {
+        return compile(formula, cells, Map.of(), threshold, origin);
+    }
+
+    private static Program compile(Expression formula, CellStore cells, Map<String, Expression> builtins,
+                                   int threshold, int origin) {
+        if (formula instanceof Simplified simplified) {
+            // the simplified formula evaluates to the same value as the formula as written
+            formula = simplified.simplified();
+        }
+        if (!(formula instanceof Operation)) {
+            // constants and references already evaluate without any arithmetic
+            return null;
+        }
+        Compiler compiler = new Compiler(cells, builtins, Math.max(origin, 0));
+        compiler.count(formula);
+        if (!compiler.emit(formula, 0)) {
+            return null;
+        }
+        return new Program(compiler.code.stream().mapToInt(Integer::intValue).toArray(),
+                compiler.constants.stream().mapToLong(Long::longValue).toArray(),
+                compiler.operations.toArray(new Operation[0]),
+                compiler.depth, compiler.registers.size(), threshold, origin >= 0);
+    }
+
+    /**
+     * Whether the operation is one of the core operations that can be compiled.
+     *
+     * @param operation An operation.
+     * @return true if the exact class of the operation is compiled into instructions.
+     */
+    static boolean isCompiled(Operation operation) {
+        return OPERATIONS.contains(operation.getClass());
+    }
+
+    /**
+     * Whether a method handle has been generated for this program.
+     *
+     * @return true if runs of this program invoke a generated method handle.
+     */
+    boolean isGenerated() {
+        return generated != null;
+    }
+
+    /**
+     * Evaluate the program against the values seen by a transaction.
+     *
+     * @param transaction The transaction holding the values of the cells of the sheet.
+     * @return The numeric result of the formula.
+     * @throws TypeError If any argument of an operation is not numeric.
+     */
+    long run(Transaction transaction) throws TypeError {
+        MethodHandle handle = generated;
+        if (handle != null) {
+            return invoke(handle, transaction, 0);
+        }
+        count();
+        return interpret(transaction, 0, scratch);
+    }
+
+    /**
+     * Count a run of the program, generating its method handle once it has been run often enough.
+     */
+    private void count() {
+        if (threshold != NEVER && runs < threshold && ++runs == threshold) {
+            // generation is only attempted once, if it fails the instructions are interpreted from now on
+            generated = FormulaHandles.generate(code, constants, operations);
+        }
+    }
+
+    /**
+     * Evaluate a relative program for a cell against the values seen by a transaction.
+     *
+     * @param transaction The transaction holding the values of the cells of the sheet.
+     * @param slot        The slot of the cell the program is run for.
+     * @return The numeric result of the formula.
+     * @throws TypeError If any argument of an operation is not numeric.
+     * @requires the program is relative and every cell it refers to from the slot is within the sheet
+     */
+    long run(Transaction transaction, int slot) throws TypeError {
+        MethodHandle handle = generated;
+        if (handle != null) {
+            return invoke(handle, transaction, slot);
+        }
+        count();
+        long[] scratch = SCRATCH.get();
+        int size = depth + code.length;
+        if (scratch.length < size) {
+            // there are never more registers than instructions
+            scratch = new long[Math.max(size, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        return interpret(transaction, slot, scratch);
+    }
+
+    private static long invoke(MethodHandle handle, Transaction transaction, int slot) throws TypeError {
+        try {
+            return (long) handle.invokeExact(transaction, slot);
+        } catch (TypeError | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long interpret(Transaction transaction, int base, long[] stack) throws TypeError {
+        int top = 0;
+        int constant = 0;
+        int operation = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONSTANT -> stack[top++] = constants[constant++];
+                case CELL -> stack[top++] = transaction.valueAt(base + code[++pc]);
+                case APPLY -> {
+                    int from = top - code[++pc];
+                    stack[from] = operations[operation++].perform(stack, from, top);
+                    top = from + 1;
+                }
+                case SAVE -> stack[depth + code[++pc]] = stack[top - 1];
+                case LOAD -> stack[top++] = stack[depth + code[++pc]];
+                default -> throw new TypeError();
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Builds the instructions of a program by walking a formula depth first.
+     */
+    private static class Compiler {
+        private final CellStore cells;
+        private final Map<String, Expression> builtins;
+        // the slot cells are referred to relative to, 0 for absolute programs
+        private final int origin;
+        private final List<Integer> code = new ArrayList<>();
+        private final List<Long> constants = new ArrayList<>();
+        private final List<Operation> operations = new ArrayList<>();
+        // the number of times each operation instance occurs within the formula
+        private final Map<Expression, Integer> occurrences = new IdentityHashMap<>();
+        // the register holding the result of each repeated operation emitted so far
+        private final Map<Expression, Integer> registers = new IdentityHashMap<>();
+        private int depth = 0;
+
+        private Compiler(CellStore cells, Map<String, Expression> builtins, int origin) {
+            this.cells = cells;
+            this.builtins = builtins;
+            this.origin = origin;
+        }
+
+        /**
+         * Count the occurrences of every operation instance within an expression.
+         *
+         * @param expression The expression to count the operations of.
+         */
+        private void count(Expression expression) {
+            if (expression instanceof Operation operation
+                    && occurrences.merge(operation, 1, Integer::sum) == 1) {
+                // the arguments of a repeated operation are only emitted once
+                for (Expression argument : operation.getExpressions()) {
+                    count(argument);
+                }
+            }
+        }
+
+        /**
+         * Emit the instructions that push the numeric value of an expression.
+         *
+         * @param expression The expression to emit.
+         * @param height     The height of the stack before the expression is evaluated.
+         * @return false if the expression cannot be compiled.
+         */
+        private boolean emit(Expression expression, int height) {
+            depth = Math.max(depth, height + 1);
+            // subclasses may evaluate differently, so only the exact core classes are compiled
+            if (expression.getClass() == Constant.class) {
+                code.add(CONSTANT);
+                constants.add(((Constant) expression).getValue());
+                return true;
+            }
+            if (expression.getClass() == Nothing.class) {
+                code.add(FAIL);
+                return true;
+            }
+            if (expression.getClass() == Reference.class) {
+                return emitReference(((Reference) expression).getIdentifier());
+            }
+            if (expression instanceof Operation operation && OPERATIONS.contains(operation.getClass())) {
+                List<Expression> arguments = operation.getExpressions();
+                if (arguments.isEmpty()) {
+                    return false;
+                }
+                Integer register = registers.get(operation);
+                if (register != null) {
+                    code.add(LOAD);
+                    code.add(register);
+                    return true;
+                }
+                for (int i = 0; i < arguments.size(); i++) {
+                    if (!emit(arguments.get(i), height + i)) {
+                        return false;
+                    }
+                }
+                code.add(APPLY);
+                code.add(arguments.size());
+                operations.add(operation);
+                if (occurrences.getOrDefault(operation, 1) > 1) {
+                    register = registers.size();
+                    registers.put(operation, register);
+                    code.add(SAVE);
+                    code.add(register);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        private boolean emitReference(String identifier) {
+            int slot = cells.slot(identifier);
+            if (slot >= 0) {
+                code.add(CELL);
+                code.add(slot - origin);
+                return true;
+            }
+            if (!builtins.containsKey(identifier)) {
+                // a reference to nothing evaluates to itself, which is not numeric
+                code.add(FAIL);
+                return true;
+            }
+            Expression builtin = builtins.get(identifier);
+            if (builtin != null && builtin.getClass() == Constant.class) {
+                code.add(CONSTANT);
+                constants.add(((Constant) builtin).getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+}
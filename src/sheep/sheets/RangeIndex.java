@@ -0,0 +1,254 @@
+package sheep.sheets;
+
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+
+/**
+ * An index of the cells that depend upon rectangular ranges of a {@link Sheet}.
+ * <p>
+ * Recording a range as a usage of every cell within it would add one usage per cell,
+ * so a formula over A1:A100000 would add a hundred thousand usages.
+ * Instead each range is stored once, as a rectangle, in an interval tree over its rows:
+ * a randomised binary search tree (treap) ordered by the top row of each range,
+ * where every node also knows the greatest bottom row within its subtree,
+ * and the leftmost and rightmost columns of the ranges within its subtree.
+ * Finding the ranges that contain a cell only descends into subtrees that can reach its row,
+ * so it costs O((k + 1) log n) in expectation for n ranges of which k span the row of the cell,
+ * no matter how many cells the ranges cover.
+ * The bound is over rows alone: subtrees whose ranges all lie left or right of the column of the cell
+ * are skipped as well, which avoids most ranges over other columns in practice,
+ * but ranges over other columns that are mixed in with ranges over the column may still be visited.
+ * <p>
+ * The same range may be recorded for the same dependant several times,
+ * it must then be removed as many times.
+ */
+class RangeIndex {
+    private final SplittableRandom priorities = new SplittableRandom(0x5eed);
+    private Node root = null;
+    private int size = 0;
+
+    private static final class Node {
+        private final int top;
+        private final int left;
+        private final int bottom;
+        private final int right;
+        private final int dependant;
+        private final int priority;
+        private int count = 1;
+        private int maxBottom;
+        private int minLeft;
+        private int maxRight;
+        private Node lower;
+        private Node higher;
+
+        private Node(int top, int left, int bottom, int right, int dependant, int priority) {
+            this.top = top;
+            this.left = left;
+            this.bottom = bottom;
+            this.right = right;
+            this.dependant = dependant;
+            this.priority = priority;
+            this.maxBottom = bottom;
+            this.minLeft = left;
+            this.maxRight = right;
+        }
+
+        /**
+         * Order nodes by their top row, then the rest of the range and the dependant.
+         */
+        private int compare(int top, int left, int bottom, int right, int dependant) {
+            int order = Integer.compare(this.top, top);
+            if (order == 0) {
+                order = Integer.compare(this.bottom, bottom);
+            }
+            if (order == 0) {
+                order = Integer.compare(this.left, left);
+            }
+            if (order == 0) {
+                order = Integer.compare(this.right, right);
+            }
+            if (order == 0) {
+                order = Integer.compare(this.dependant, dependant);
+            }
+            return order;
+        }
+
+        private void update() {
+            maxBottom = bottom;
+            minLeft = left;
+            maxRight = right;
+            include(lower);
+            include(higher);
+        }
+
+        private void include(Node child) {
+            if (child != null) {
+                maxBottom = Math.max(maxBottom, child.maxBottom);
+                minLeft = Math.min(minLeft, child.minLeft);
+                maxRight = Math.max(maxRight, child.maxRight);
+            }
+        }
+
+        /**
+         * Whether any range within the subtree of this node can contain a cell.
+         */
+        private boolean reaches(int row, int column) {
+            return maxBottom >= row && minLeft <= column && column <= maxRight;
+        }
+    }
+
+    /**
+     * The number of ranges recorded, counting repeated ranges once per time they were added.
+     *
+     * @return The number of recorded ranges.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Record that a cell depends upon every cell within a range.
+     *
+     * @param top       The first row of the range.
+     * @param left      The first column of the range.
+     * @param bottom    The last row of the range, inclusive.
+     * @param right     The last column of the range, inclusive.
+     * @param dependant The slot of the cell that depends upon the range.
+     * @requires top &lt;= bottom &amp;&amp; left &lt;= right
+     */
+    void add(int top, int left, int bottom, int right, int dependant) {
+        root = insert(root, top, left, bottom, right, dependant);
+        size++;
+    }
+
+    /**
+     * Remove a record that a cell depends upon every cell within a range.
+     * Ranges that were never recorded are ignored.
+     *
+     * @param top       The first row of the range.
+     * @param left      The first column of the range.
+     * @param bottom    The last row of the range, inclusive.
+     * @param right     The last column of the range, inclusive.
+     * @param dependant The slot of the cell that no longer depends upon the range.
+     */
+    void remove(int top, int left, int bottom, int right, int dependant) {
+        root = delete(root, top, left, bottom, right, dependant);
+    }
+
+    /**
+     * Visit the dependant of every range that contains a cell.
+     * A dependant is visited once for each distinct range it depends upon that contains the cell.
+     *
+     * @param row     The row of the cell.
+     * @param column  The column of the cell.
+     * @param visitor Accepts the slot of each dependant.
+     */
+    void forEachContaining(int row, int column, IntConsumer visitor) {
+        stab(root, row, column, visitor);
+    }
+
+    private void stab(Node node, int row, int column, IntConsumer visitor) {
+        // no range within the subtree reaches down to the row or across to the column
+        while (node != null && node.reaches(row, column)) {
+            if (node.lower != null && node.lower.reaches(row, column)) {
+                stab(node.lower, row, column, visitor);
+            }
+            if (node.top > row) {
+                // every range in the higher subtree starts below the row
+                return;
+            }
+            if (node.bottom >= row && node.left <= column && column <= node.right) {
+                visitor.accept(node.dependant);
+            }
+            node = node.higher;
+        }
+    }
+
+    private Node insert(Node node, int top, int left, int bottom, int right, int dependant) {
+        if (node == null) {
+            return new Node(top, left, bottom, right, dependant, priorities.nextInt());
+        }
+        int order = node.compare(top, left, bottom, right, dependant);
+        if (order == 0) {
+            node.count++;
+            return node;
+        }
+        if (order > 0) {
+            node.lower = insert(node.lower, top, left, bottom, right, dependant);
+            if (node.lower.priority > node.priority) {
+                node = rotateHigher(node);
+            }
+        } else {
+            node.higher = insert(node.higher, top, left, bottom, right, dependant);
+            if (node.higher.priority > node.priority) {
+                node = rotateLower(node);
+            }
+        }
+        node.update();
+        return node;
+    }
+
+    private Node delete(Node node, int top, int left, int bottom, int right, int dependant) {
+        if (node == null) {
+            return null;
+        }
+        int order = node.compare(top, left, bottom, right, dependant);
+        if (order > 0) {
+            node.lower = delete(node.lower, top, left, bottom, right, dependant);
+        } else if (order < 0) {
+            node.higher = delete(node.higher, top, left, bottom, right, dependant);
+        } else {
+            size--;
+            if (--node.count > 0) {
+                return node;
+            }
+            return merge(node.lower, node.higher);
+        }
+        node.update();
+        return node;
+    }
+
+    /**
+     * Join two treaps where every node of the first is ordered before every node of the second.
+     */
+    private static Node merge(Node lower, Node higher) {
+        if (lower == null) {
+            return higher;
+        }
+        if (higher == null) {
+            return lower;
+        }
+        if (lower.priority > higher.priority) {
+            lower.higher = merge(lower.higher, higher);
+            lower.update();
+            return lower;
+        }
+        higher.lower = merge(lower, higher.lower);
+        higher.update();
+        return higher;
+    }
+
+    /**
+     * Rotate the lower child of a node up into its place.
+     */
+    private static Node rotateHigher(Node node) {
+        Node lower = node.lower;
+        node.lower = lower.higher;
+        lower.higher = node;
+        node.update();
+        lower.update();
+        return lower;
+    }
+
+    /**
+     * Rotate the higher child of a node up into its place.
+     */
+    private static Node rotateLower(Node node) {
+        Node higher = node.higher;
+        node.higher = higher.lower;
+        higher.lower = node;
+        node.update();
+        higher.update();
+        return higher;
+    }
+}
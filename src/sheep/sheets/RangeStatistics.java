@@ -0,0 +1,174 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The committed numbers within the ranges used by the formulas of a sheet, kept in order
+ * so that the median of a range can be found without reading and sorting its cells.
+ * <p>
+ * Ranges are retained and released as formulas using them are inserted and removed,
+ * but the numbers within a range are only collected once the order of the range is first asked for,
+ * so ranges only used by sums cost nothing.
+ * Each collected range is then kept up to date in O(log n) whenever a cell within it is replaced,
+ * the collected ranges containing the cell being found through a {@link RangeIndex}
+ * rather than by checking every collected range.
+ */
+class RangeStatistics {
+    private final CellStore cells;
+    private final Map<Area, Integer> retained = new HashMap<>();
+    private final Map<Area, Ordered> collected = new HashMap<>();
+    // the collected ranges, each recorded against its position in byIndex
+    private final RangeIndex index = new RangeIndex();
+    private final List<Ordered> byIndex = new ArrayList<>();
+    // positions of byIndex freed by discarded ranges, reused before the list grows
+    private final SlotList free = new SlotList();
+
+    /**
+     * A rectangle of cells, inclusive of its bottom row and right column.
+     */
+    private record Area(int top, int left, int bottom, int right) {
+    }
+
+    /**
+     * The numbers within a range, and the number of cells within it that do not hold a number.
+     */
+    static final class Ordered {
+        private final OrderStatisticTree numbers = new OrderStatisticTree();
+        private int irregular = 0;
+        private int position;
+
+        /**
+         * The numbers held by the cells of the range.
+         *
+         * @return The numbers in order.
+         */
+        OrderStatisticTree numbers() {
+            return numbers;
+        }
+
+        /**
+         * The number of cells within the range that do not hold a number.
+         *
+         * @return The number of cells holding anything other than a constant.
+         */
+        int irregular() {
+            return irregular;
+        }
+
+        private void add(Expression value) {
+            if (ColumnAggregates.isNumber(value)) {
+                numbers.add(ColumnAggregates.number(value));
+            } else {
+                irregular++;
+            }
+        }
+
+        private void remove(Expression value) {
+            if (ColumnAggregates.isNumber(value)) {
+                numbers.remove(ColumnAggregates.number(value));
+            } else {
+                irregular--;
+            }
+        }
+    }
+
+    /**
+     * Construct statistics over the values held in a cell store, initially retaining no ranges.
+     *
+     * @param cells The storage whose committed values are ordered.
+     */
+    RangeStatistics(CellStore cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Record that a formula uses a range.
+     * A range may be retained several times, it must then be released as many times.
+     *
+     * @param top    The first row of the range.
+     * @param left   The first column of the range.
+     * @param bottom The last row of the range, inclusive.
+     * @param right  The last column of the range, inclusive.
+     */
+    synchronized void retain(int top, int left, int bottom, int right) {
+        retained.merge(new Area(top, left, bottom, right), 1, Integer::sum);
+    }
+
+    /**
+     * Remove a record that a formula uses a range,
+     * discarding the numbers collected for the range once no formula uses it.
+     *
+     * @param top    The first row of the range.
+     * @param left   The first column of the range.
+     * @param bottom The last row of the range, inclusive.
+     * @param right  The last column of the range, inclusive.
+     */
+    synchronized void release(int top, int left, int bottom, int right) {
+        Area area = new Area(top, left, bottom, right);
+        if (retained.computeIfPresent(area, (key, count) -> count == 1 ? null : count - 1) == null) {
+            Ordered ordered = collected.remove(area);
+            if (ordered != null) {
+                index.remove(top, left, bottom, right, ordered.position);
+                byIndex.set(ordered.position, null);
+                free.accept(ordered.position);
+            }
+        }
+    }
+
+    /**
+     * The ordered committed numbers within a retained range, collected on first use in O(n log n).
+     *
+     * @param top    The first row of the range.
+     * @param left   The first column of the range.
+     * @param bottom The last row of the range, inclusive.
+     * @param right  The last column of the range, inclusive.
+     * @return The numbers within the range, or null if the range is not retained or not within the sheet.
+     */
+    synchronized Ordered ordered(int top, int left, int bottom, int right) {
+        Area area = new Area(top, left, bottom, right);
+        Ordered ordered = collected.get(area);
+        if (ordered != null || !retained.containsKey(area)
+                || bottom >= cells.getRows() || right >= cells.getColumns()) {
+            return ordered;
+        }
+        ordered = new Ordered();
+        for (int row = top; row <= bottom; row++) {
+            for (int column = left; column <= right; column++) {
+                ordered.add(cells.value(cells.slot(row, column)));
+            }
+        }
+        collected.put(area, ordered);
+        if (free.size() > 0) {
+            ordered.position = free.pop();
+            byIndex.set(ordered.position, ordered);
+        } else {
+            ordered.position = byIndex.size();
+            byIndex.add(ordered);
+        }
+        index.add(top, left, bottom, right, ordered.position);
+        return ordered;
+    }
+
+    /**
+     * Adjust the collected ranges containing a cell whose committed value is replaced.
+     *
+     * @param slot     The slot of the cell.
+     * @param previous The value the cell held.
+     * @param value    The value the cell now holds.
+     */
+    synchronized void replace(int slot, Expression previous, Expression value) {
+        if (collected.isEmpty()) {
+            return;
+        }
+        index.forEachContaining(slot / cells.getColumns(), slot % cells.getColumns(), position -> {
+            Ordered ordered = byIndex.get(position);
+            ordered.remove(previous);
+            ordered.add(value);
+        });
+    }
+}
@@ -1,15 +1,20 @@
 package sheep.sheets;
 
+import sheep.core.ReferenceCodec;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
 import sheep.core.ViewElement;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
+import sheep.expression.basic.ErrorValue;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 /**
  * Spreadsheet that evaluates its expressions and updates dependant cells.
@@ -23,9 +28,15 @@ import java.util.*;
  */
 public class Sheet implements SheetView, SheetUpdate {
 
-    private final Map<CellLocation, Expression> formulas = new HashMap<>();
-    private final Map<CellLocation, Expression> values = new HashMap<>();
-    private final Map<CellLocation, Set<CellLocation>> usages = new HashMap<>();
+    private final CellStore cells;
+    // cells using a range are recorded against the range rather than every cell within it
+    private final RangeIndex rangeUsages = new RangeIndex();
+    // cells holding the same formula relative to their position share its template
+    private final FormulaTemplates templates;
+    // the cells visited by the current traversal of the dependants of a cell
+    private final SlotMarks visited;
+    // the cells found but not yet finished by the current traversal of the dependants of a cell
+    private final SlotList found = new SlotList();
     private final Map<String, Expression> builtins;
     private final Expression defaultExpression;
     private final int rows;
@@ -33,6 +44,10 @@ public class Sheet implements SheetView, SheetUpdate {
 
     private final Parser parser;
 
+    private ForkJoinPool recalculationPool = null;
+    private int hotFormulaThreshold = Program.NEVER;
+    private boolean errorsAsValues = false;
+
     /**
      * Construct a new instance of the sheet class.
      * <p>
@@ -44,27 +59,89 @@ public class Sheet implements SheetView, SheetUpdate {
      * @param rows              Amount of rows for the new sheet.
      * @param columns           Amount of columns for the new sheet.
      * @requires rows &gt; 0
-     * @requires columns &gt; 0 &amp;&amp; columns &lt; 26
+     * @requires columns &gt; 0 &amp;&amp; columns &lt;= ReferenceCodec.MAX_COLUMNS
      */
     Sheet(Parser parser, Map<String, Expression> builtins,
           Expression defaultExpression, int rows, int columns) {
+        this(parser, builtins, defaultExpression, new DenseCellStore(defaultExpression, rows, columns));
+    }
+
+    /**
+     * Construct a new instance of the sheet class over the given cell storage.
+     * <p>
+     * The dimensions of the sheet are those of the storage.
+     *
+     * @param parser            The parser instance used to create expressions.
+     * @param builtins          A mapping of built-in identifiers to expressions.
+     * @param defaultExpression The default expression held in every cell of the storage.
+     * @param cells             Storage in which every cell holds the default expression.
+     */
+    Sheet(Parser parser, Map<String, Expression> builtins,
+          Expression defaultExpression, CellStore cells) {
         this.parser = parser;
-        this.rows = rows;
-        this.columns = columns;
+        this.rows = cells.getRows();
+        this.columns = cells.getColumns();
         this.defaultExpression = defaultExpression;
         this.builtins = new HashMap<>(builtins);
-        this.populate();
+        this.cells = cells;
+        this.templates = new FormulaTemplates(cells);
+        this.visited = new SlotMarks(Math.multiplyExact(rows, columns));
     }
 
-    private void populate() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                CellLocation location = new CellLocation(i, j);
-                values.put(location, defaultExpression);
-                formulas.put(location, defaultExpression);
-                usages.put(location, new HashSet<>());
-            }
-        }
+    /**
+     * Recalculate the cells affected by future updates on the given pool.
+     * <p>
+     * The affected cells are split into levels of cells that do not depend on each other
+     * and each level is evaluated concurrently.
+     * The resulting values, and any {@link TypeError}, are identical to serial recalculation
+     * and are committed to the sheet all at once.
+     * Every expression held in the sheet must be safe to evaluate concurrently.
+     *
+     * @param pool The pool to recalculate on, or null to recalculate on the updating thread.
+     */
+    public void recalculateOn(ForkJoinPool pool) {
+        this.recalculationPool = pool;
+    }
+
+    /**
+     * Generate a method handle for any formula once it has been recalculated the given number of times.
+     * <p>
+     * Formulas made from the core operations are normally evaluated by interpreting a compiled {@link Program}.
+     * Formulas which are recalculated very often, such as long reference chains,
+     * can instead be turned into a tree of method handles which the JIT compiles into a single method.
+     * Generation is not free, so only formulas recalculated at least the given number of times are generated,
+     * and a formula falls back to the interpreter if its method handle cannot be generated.
+     * <p>
+     * The threshold applies to formulas inserted after this method is called.
+     * Cells sharing a {@link FormulaTemplate template} share its method handle,
+     * which takes the cell as an argument and is generated once the template has been recalculated
+     * the given number of times by all of its cells together.
+     *
+     * @param recalculations The number of recalculations after which a formula is generated,
+     *                       or 0 to never generate method handles.
+     * @requires recalculations &gt;= 0
+     */
+    public void generateHotFormulas(int recalculations) {
+        this.hotFormulaThreshold = recalculations;
+    }
+
+    /**
+     * Hold the errors of formulas that cannot be evaluated as the values of their cells.
+     * <p>
+     * By default the sheet is strict: an update resulting in a {@link TypeError} is rejected
+     * and the sheet returns to its previous state.
+     * When errors are held as values, the update is accepted instead
+     * and a cell whose formula cannot be evaluated holds an {@link ErrorValue},
+     * {@link ErrorValue#DIV0} if it divided by zero or {@link ErrorValue#TYPE} otherwise,
+     * which is rendered in the cell and passed on to every cell using it.
+     * One bad cell then no longer prevents the rest of an update from being applied.
+     * <p>
+     * The setting applies to updates made after this method is called.
+     *
+     * @param enabled Whether errors are held as values, false to reject updates resulting in a type error.
+     */
+    public void holdErrorsAsValues(boolean enabled) {
+        this.errorsAsValues = enabled;
     }
 
     /**
@@ -100,7 +177,7 @@ public class Sheet implements SheetView, SheetUpdate {
      */
     @Override
     public ViewElement valueAt(int row, int column) {
-        return new ViewElement(valueAt(new CellLocation(row, column)).render(),
+        return new ViewElement(cells.value(cells.slot(row, column)).render(),
                 "white", "black");
     }
 
@@ -117,7 +194,7 @@ public class Sheet implements SheetView, SheetUpdate {
      */
     @Override
     public ViewElement formulaAt(int row, int column) {
-        return new ViewElement(formulaAt(new CellLocation(row, column)).render(),
+        return new ViewElement(cells.formula(cells.slot(row, column)).render(),
                 "white", "black");
     }
 
@@ -163,7 +240,7 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public Expression formulaAt(CellLocation location) {
-        return formulas.get(location);
+        return cells.formula(cells.slot(location));
     }
 
     /**
@@ -178,7 +255,7 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public Expression valueAt(CellLocation location) {
-        return values.get(location);
+        return cells.value(cells.slot(location));
     }
 
     /**
@@ -211,27 +288,20 @@ public class Sheet implements SheetView, SheetUpdate {
      * @see Expression#dependencies()
      */
     public Set<CellLocation> usedBy(CellLocation location) {
+        visited.clear();
         Set<CellLocation> usages = new HashSet<>();
-        usedBy(location, usages);
-        return usages;
-    }
-
-    private void usedBy(CellLocation location, Set<CellLocation> seen) {
-        for (CellLocation next : usages.get(location)) {
-            if (seen.contains(next)) {
-                return;
+        IntConsumer visit = usage -> {
+            if (visited.mark(usage)) {
+                usages.add(cells.location(usage));
+                found.accept(usage);
             }
-            seen.add(next);
-            usedBy(next, seen);
+        };
+        found.truncate(0);
+        found.accept(cells.slot(location));
+        while (found.size() > 0) {
+            forEachDependant(found.pop(), visit);
         }
-    }
-
-    private Map<String, Expression> createState() {
-        Map<String, Expression> symbols = new HashMap<>(builtins);
-        for (CellLocation location : formulas.keySet()) {
-            symbols.put(location.toString(), values.get(location));
-        }
-        return symbols;
+        return usages;
     }
 
     /**
@@ -263,43 +333,449 @@ public class Sheet implements SheetView, SheetUpdate {
      * @requires location is within the bounds (row/columns) of the spreadsheet.
      */
     public void update(CellLocation location, Expression cell) throws TypeError {
-        Map<String, Expression> state = createState();
-        state.put(location.toString(), cell.value(state));
-        // recursively pre-calculate all the updated values
-        // this approach triggers a TypeError before the state is modified
-        applyUpdate(state, location);
-
-        // no type error, update the state
-        updateUsage(location, cell);
-        formulas.put(location, cell);
-        for (CellLocation existing : values.keySet()) {
-            if (state.containsKey(existing.toString())) {
-                values.put(existing, state.get(existing.toString()));
+        update(Map.of(location, cell));
+    }
+
+    /**
+     * Insert several expressions into the sheet at once, updating the sheet as required.
+     * <p>
+     * The result is the same as inserting every expression with {@link #update(CellLocation, Expression)},
+     * except that the inserted cells may refer to each other in any order and
+     * every cell affected by any of the insertions is evaluated exactly once.
+     * <p>
+     * If a {@link TypeError} is thrown at any point during the update of these cells or any dependant cells,
+     * none of the expressions are inserted and
+     * the sheet should return to the same state as before this method was called.
+     *
+     * @param updates A mapping of cell locations to the expressions to insert at them.
+     * @throws TypeError If the evaluation of any inserted cell or any of their usages
+     *                   results in a TypeError being thrown.
+     * @requires every location is within the bounds (row/columns) of the spreadsheet.
+     */
+    public void update(Map<CellLocation, Expression> updates) throws TypeError {
+        // what each cell held, kept as stored rather than rebuilding the formulas of templated cells
+        Map<Integer, Held> previous = new HashMap<>();
+        for (Map.Entry<CellLocation, Expression> update : updates.entrySet()) {
+            int slot = cells.slot(update.getKey());
+            if (!previous.containsKey(slot)) {
+                FormulaTemplate template = cells.template(slot);
+                // the template is kept alive while the cell may be restored to it
+                templates.retain(template);
+                previous.put(slot, new Held(template, template == null ? cells.formula(slot) : null));
+            }
+            replaceFormula(slot, update.getValue());
+        }
+
+        Transaction transaction = new Transaction(cells, builtins, errorsAsValues);
+        boolean evaluated = false;
+        try {
+            // pre-calculate every affected cell exactly once, in dependency order
+            // this approach triggers a TypeError before any value is modified
+            int[] order = recalculationOrder(previous.keySet());
+            if (recalculationPool == null) {
+                for (int slot : order) {
+                    transaction.put(slot, transaction.evaluate(slot));
+                }
+            } else if (!new ParallelRecalculation(recalculationPool, this::forEachDependant)
+                    .evaluate(order, transaction)) {
+                // a failed parallel pass is repeated serially to throw the same error as the serial engine
+                transaction = new Transaction(cells, builtins, errorsAsValues);
+                for (int slot : order) {
+                    transaction.put(slot, transaction.evaluate(slot));
+                }
+            }
+            evaluated = true;
+        } finally {
+            if (evaluated) {
+                previous.values().forEach(held -> templates.release(held.template()));
+            } else {
+                previous.forEach((slot, held) -> holdFormula(slot, held.template(), held.formula()));
+            }
+        }
+
+        // no type error, commit the changed values
+        transaction.commit();
+    }
+
+    /**
+     * Attempt to update several cells within the sheet with the given inputs.
+     * <p>
+     * Every input is parsed using the sheet's {@link Parser},
+     * inputs that cannot be parsed fail with "Unable to parse: [input]" and are skipped.
+     * The remaining cells are then inserted together as per {@link #update(Map)},
+     * so each affected cell is recalculated once no matter how many inputs it depends upon.
+     * <p>
+     * If inserting the cells together results in a {@link TypeError},
+     * the cells are instead inserted one at a time in the iteration order of the inputs,
+     * so that each cell reports its own outcome
+     * exactly as {@link #update(int, int, String)} would.
+     *
+     * @param inputs A mapping of cell locations to the input to parse at that location.
+     * @return The outcome of updating each cell, in the iteration order of the inputs.
+     * @requires every location is within the bounds (row/columns) of the spreadsheet.
+     */
+    public Map<CellLocation, UpdateResponse> updateAll(Map<CellLocation, String> inputs) {
+        Map<CellLocation, UpdateResponse> responses = new LinkedHashMap<>();
+        Map<CellLocation, Expression> parsed = new LinkedHashMap<>();
+        for (Map.Entry<CellLocation, String> input : inputs.entrySet()) {
+            try {
+                parsed.put(input.getKey(), parser.parse(input.getValue()));
+                responses.put(input.getKey(), UpdateResponse.success());
+            } catch (ParseException e) {
+                responses.put(input.getKey(), UpdateResponse.fail("Unable to parse: " + input.getValue()));
+            }
+        }
+
+        try {
+            update(parsed);
+        } catch (TypeError batchError) {
+            for (Map.Entry<CellLocation, Expression> cell : parsed.entrySet()) {
+                try {
+                    update(cell.getKey(), cell.getValue());
+                } catch (TypeError e) {
+                    responses.put(cell.getKey(), UpdateResponse.fail("Type error: " + e));
+                }
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Insert the contents of a newly constructed sheet in a single pass.
+     * <p>
+     * The dependencies of every cell are recorded once,
+     * then every cell is evaluated exactly once after all the cells it depends upon.
+     * Unlike {@link #update(Map)}, a problem with one cell does not prevent the others from loading:
+     * any cell that is part of a reference loop or whose evaluation results in a {@link TypeError}
+     * is reset to the default expression and reported,
+     * and the cells which depend on it are evaluated against the default expression instead.
+     *
+     * @param loaded A mapping of cell locations to the expressions to insert at them.
+     * @return The cells that could not be loaded, with a failed response explaining why.
+     * @requires every location is within the bounds (row/columns) of the spreadsheet.
+     * @requires every cell of the spreadsheet holds the default expression.
+     */
+    Map<CellLocation, UpdateResponse> load(Map<CellLocation, Expression> loaded) {
+        Map<Integer, Expression> formulas = new LinkedHashMap<>();
+        for (Map.Entry<CellLocation, Expression> cell : loaded.entrySet()) {
+            int slot = cells.slot(cell.getKey());
+            formulas.put(slot, cell.getValue());
+            replaceFormula(slot, cell.getValue());
+        }
+
+        Map<Integer, int[]> dependencies = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Expression> formula : formulas.entrySet()) {
+            IntStream.Builder used = IntStream.builder();
+            forEachUsed(formula.getValue(), used);
+            dependencies.put(formula.getKey(), used.build()
+                    .filter(formulas::containsKey)
+                    .distinct()
+                    .toArray());
+        }
+
+        Set<Integer> cyclic = new HashSet<>();
+        Map<CellLocation, UpdateResponse> failures = new LinkedHashMap<>();
+        Transaction state = new Transaction(cells, builtins, errorsAsValues);
+        for (int slot : evaluationOrder(dependencies, cyclic)) {
+            if (cyclic.contains(slot)) {
+                failures.put(cells.location(slot),
+                        UpdateResponse.fail("Circular reference: " + cells.location(slot)));
+                replaceFormula(slot, defaultExpression);
+                continue;
+            }
+            try {
+                // the sheet is not visible to anyone yet, so values can be written in place
+                cells.setValue(slot, state.evaluate(slot));
+            } catch (TypeError e) {
+                failures.put(cells.location(slot), UpdateResponse.fail("Type error: " + e));
+                replaceFormula(slot, defaultExpression);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Order cells such that every cell appears after all the cells it depends upon.
+     * <p>
+     * Cells which are part of a reference loop cannot be ordered,
+     * they are added to the given cyclic set and placed as if the loop were broken.
+     *
+     * @param dependencies A mapping of the slot of every cell to order
+     *                     to the slots of the cells it depends upon.
+     * @param cyclic       A set to add the slots of any cells which are part of a reference loop to.
+     * @return The slots of the cells in the order they should be evaluated.
+     */
+    private static int[] evaluationOrder(Map<Integer, int[]> dependencies, Set<Integer> cyclic) {
+        int[] order = new int[dependencies.size()];
+        int ordered = 0;
+        Set<Integer> finished = new HashSet<>();
+        Set<Integer> onPath = new HashSet<>();
+        int[] path = new int[16];
+        int[] positions = new int[16];
+
+        for (int root : dependencies.keySet()) {
+            if (finished.contains(root)) {
+                continue;
+            }
+            int depth = push(path, positions, 0, root);
+            onPath.add(root);
+            while (depth > 0) {
+                int slot = path[depth - 1];
+                int[] references = dependencies.get(slot);
+                int position = positions[depth - 1]++;
+                if (position < references.length) {
+                    int dependency = references[position];
+                    if (onPath.contains(dependency)) {
+                        // every cell on the path back to the dependency forms a loop
+                        for (int i = depth - 1; i >= 0; i--) {
+                            cyclic.add(path[i]);
+                            if (path[i] == dependency) {
+                                break;
+                            }
+                        }
+                    } else if (!finished.contains(dependency)) {
+                        if (depth == path.length) {
+                            path = Arrays.copyOf(path, depth * 2);
+                            positions = Arrays.copyOf(positions, depth * 2);
+                        }
+                        depth = push(path, positions, depth, dependency);
+                        onPath.add(dependency);
+                    }
+                    continue;
+                }
+                depth--;
+                onPath.remove(slot);
+                finished.add(slot);
+                order[ordered++] = slot;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Push a slot onto the path of a depth-first traversal.
+     *
+     * @return The new depth of the traversal.
+     * @requires depth &lt; path.length
+     */
+    private static int push(int[] path, int[] positions, int depth, int slot) {
+        path[depth] = slot;
+        positions[depth] = 0;
+        return depth + 1;
+    }
+
+    /**
+     * Topologically sort the given cells and the cells which transitively use them.
+     * <p>
+     * Every affected cell appears exactly once and after all the affected cells
+     * it depends upon, so evaluating them in order sees up-to-date values.
+     * The traversal is iterative so that long reference chains cannot overflow the stack.
+     *
+     * @param slots The slots of the cells whose formulas have changed.
+     * @return The slots of the changed cells and their dependants in the order they should be evaluated.
+     */
+    private int[] recalculationOrder(Collection<Integer> slots) {
+        int[] postOrder = new int[Math.max(16, slots.size())];
+        int ordered = 0;
+        visited.clear();
+        int[] path = new int[16];
+        // the dependants of the cell at each depth of the path are found[positions[depth]] up to found[ends[depth]]
+        int[] positions = new int[16];
+        int[] ends = new int[16];
+        found.truncate(0);
+
+        for (int root : slots) {
+            if (!visited.mark(root)) {
+                continue;
+            }
+            int depth = descend(path, positions, ends, 0, root);
+            while (depth > 0) {
+                int slot = path[depth - 1];
+                int position = positions[depth - 1]++;
+                if (position < ends[depth - 1]) {
+                    int usage = found.get(position);
+                    if (visited.mark(usage)) {
+                        if (depth == path.length) {
+                            path = Arrays.copyOf(path, depth * 2);
+                            positions = Arrays.copyOf(positions, depth * 2);
+                            ends = Arrays.copyOf(ends, depth * 2);
+                        }
+                        depth = descend(path, positions, ends, depth, usage);
+                    }
+                    continue;
+                }
+                depth--;
+                // the dependants of the cell were the last found, after those of the cells before it on the path
+                found.truncate(depth == 0 ? 0 : ends[depth - 1]);
+                if (ordered == postOrder.length) {
+                    postOrder = Arrays.copyOf(postOrder, ordered * 2);
+                }
+                postOrder[ordered++] = slot;
+            }
+        }
+
+        int[] order = new int[ordered];
+        for (int i = 0; i < ordered; i++) {
+            order[i] = postOrder[ordered - 1 - i];
+        }
+        return order;
+    }
+
+    /**
+     * What a cell holds: either a retained template, or a formula of its own.
+     */
+    private record Held(FormulaTemplate template, Expression formula) {
+    }
+
+    private void replaceFormula(int slot, Expression formula) {
+        FormulaTemplate template = templates.retain(slot, formula, hotFormulaThreshold);
+        holdFormula(slot, template, template == null ? formula : null);
+    }
+
+    /**
+     * Make a cell hold a template, which must already be retained for the cell,
+     * or a formula of its own if the template is null.
+     */
+    private void holdFormula(int slot, FormulaTemplate template, Expression formula) {
+        FormulaTemplate previous = cells.template(slot);
+        // every cell holding a template uses the same cells relative to itself
+        if (template == null || template != previous) {
+            updateUsage(slot, template, formula);
+        }
+        templates.release(previous);
+        cells.setTemplate(slot, template);
+        if (template != null) {
+            // the cell only holds the shared template, its formula is rebuilt from it when asked for
+            cells.setFormula(slot, defaultExpression);
+            cells.setProgram(slot, null);
+        } else {
+            cells.setFormula(slot, formula);
+            cells.setProgram(slot, Program.compile(formula, cells, builtins, hotFormulaThreshold));
+        }
+    }
+
+    /**
+     * The number of distinct formula templates shared by the cells of the sheet.
+     *
+     * @return The number of templates held by the cells.
+     */
+    int templateCount() {
+        return templates.size();
+    }
+
+    /**
+     * Replace the usages of the cells used by the template or formula a cell held with those of its new one.
+     * The cells used by a template are found from its offsets, without rebuilding the formula of the cell.
+     */
+    private void updateUsage(int slot, FormulaTemplate template, Expression formula) {
+        FormulaTemplate oldTemplate = cells.template(slot);
+        if (oldTemplate != null) {
+            for (int offset : oldTemplate.offsets()) {
+                cells.removeDependant(slot + offset, slot);
+            }
+        } else {
+            removeUsage(slot, cells.formula(slot));
+        }
+        if (template != null) {
+            for (int offset : template.offsets()) {
+                cells.addDependant(slot + offset, slot);
+            }
+        } else {
+            addUsage(slot, formula);
+        }
+    }
+
+    private void removeUsage(int slot, Expression oldExpression) {
+        for (long reference : oldExpression.references()) {
+            int used = cells.slotAt(reference);
+            if (used >= 0) {
+                cells.removeDependant(used, slot);
             }
         }
+        long[] ranges = oldExpression.ranges();
+        for (int i = 0; i < ranges.length; i += 2) {
+            rangeUsages.remove(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]), slot);
+            cells.statistics().release(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]));
+            cells.aggregates().release(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]));
+        }
     }
 
-    private void applyUpdate(Map<String, Expression> state, CellLocation location)
-            throws TypeError {
-        for (CellLocation usage : usages.get(location)) {
-            Expression value = formulas.get(usage).value(state);
-            state.put(usage.toString(), value);
-            applyUpdate(state, usage);
+    private void addUsage(int slot, Expression newExpression) {
+        for (long reference : newExpression.references()) {
+            int used = cells.slotAt(reference);
+            if (used >= 0) {
+                cells.addDependant(used, slot);
+            }
         }
+        long[] ranges = newExpression.ranges();
+        for (int i = 0; i < ranges.length; i += 2) {
+            rangeUsages.add(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]), slot);
+            cells.statistics().retain(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]));
+            // keep running sums of the columns so the range can be summed without reading every cell
+            cells.aggregates().retain(ReferenceCodec.row(ranges[i]), ReferenceCodec.column(ranges[i]),
+                    ReferenceCodec.row(ranges[i + 1]), ReferenceCodec.column(ranges[i + 1]));
+        }
+    }
+
+    /**
+     * Push a slot onto the path of the traversal of {@link #recalculationOrder(Collection)},
+     * finding its dependants after those of the cells before it on the path.
+     *
+     * @return The new depth of the traversal.
+     * @requires depth &lt; path.length
+     */
+    private int descend(int[] path, int[] positions, int[] ends, int depth, int slot) {
+        path[depth] = slot;
+        positions[depth] = found.size();
+        forEachDependant(slot, found);
+        ends[depth] = found.size();
+        return depth + 1;
     }
 
-    private void updateUsage(CellLocation location, Expression newExpression) {
-        // remove all usages of old formula
-        Expression oldExpression = formulas.get(location);
-        for (String oldDep : oldExpression.dependencies()) {
-            Optional<CellLocation> ref = CellLocation.maybeReference(oldDep);
-            ref.ifPresent(cellLocation -> usages.get(cellLocation).remove(location));
+    /**
+     * Visit the cells which directly use a cell,
+     * both those referencing it individually and those using a range containing it.
+     * A cell may be visited more than once.
+     *
+     * @param slot    A slot within the sheet.
+     * @param visitor Accepts the slot of each direct dependant of the cell.
+     */
+    private void forEachDependant(int slot, IntConsumer visitor) {
+        int count = cells.dependantCount(slot);
+        for (int i = 0; i < count; i++) {
+            visitor.accept(cells.dependant(slot, i));
+        }
+        if (rangeUsages.size() > 0) {
+            rangeUsages.forEachContaining(slot / columns, slot % columns, visitor);
         }
+    }
 
-        // insert all new usages
-        for (String dep : newExpression.dependencies()) {
-            Optional<CellLocation> ref = CellLocation.maybeReference(dep);
-            ref.ifPresent(cellLocation -> usages.get(cellLocation).add(location));
+    /**
+     * Visit the slot of every cell within the sheet used by a formula,
+     * both cells referenced individually and cells within a range.
+     * A cell may be visited more than once.
+     */
+    private void forEachUsed(Expression formula, IntConsumer visitor) {
+        for (long reference : formula.references()) {
+            int used = cells.slotAt(reference);
+            if (used >= 0) {
+                visitor.accept(used);
+            }
+        }
+        long[] ranges = formula.ranges();
+        for (int i = 0; i < ranges.length; i += 2) {
+            int bottom = Math.min(ReferenceCodec.row(ranges[i + 1]), rows - 1);
+            int right = Math.min(ReferenceCodec.column(ranges[i + 1]), columns - 1);
+            for (int row = ReferenceCodec.row(ranges[i]); row <= bottom; row++) {
+                for (int column = ReferenceCodec.column(ranges[i]); column <= right; column++) {
+                    visitor.accept(cells.slot(row, column));
+                }
+            }
         }
     }
 
@@ -337,7 +813,7 @@ public class Sheet implements SheetView, SheetUpdate {
         for (int row = 0; row < rows; row++) {
             StringJoiner rowEncoding = new StringJoiner("|");
             for (int column = 0; column < columns; column++) {
-                rowEncoding.add(formulas.get(new CellLocation(row, column)).render());
+                rowEncoding.add(cells.formula(cells.slot(row, column)).render());
             }
             builder.add(rowEncoding.toString());
         }
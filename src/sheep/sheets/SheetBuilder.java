@@ -1,17 +1,25 @@
 package sheep.sheets;
 
+import sheep.core.UpdateResponse;
 import sheep.expression.Expression;
-import sheep.expression.TypeError;
+import sheep.parsing.CachingParser;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Builder pattern to construct {@link Sheet} instances.
@@ -36,9 +44,29 @@ import java.util.Map;
  * @stage2
  */
 public class SheetBuilder {
+    /**
+     * Sheets with more cells than this only store the cells that are populated.
+     */
+    public static final int DENSE_CELL_LIMIT = 1 << 20;
+
+    /**
+     * The greatest number of distinct formulas remembered while loading a sheet,
+     * so that repeated formulas are only parsed once.
+     */
+    public static final int LOAD_CACHE_SIZE = 4096;
+
+    /**
+     * The smallest number of rows parsed by a single task when loading a sheet on a pool.
+     */
+    static final int PARSE_SPLIT_THRESHOLD = 64;
+
     private final Map<String, Expression> builtins = new HashMap<>();
     private final Parser parser;
     private final Expression defaultExpression;
+    private ForkJoinPool recalculationPool = null;
+    private ForkJoinPool parsePool = null;
+    private int hotFormulaThreshold = 0;
+    private boolean errorsAsValues = false;
 
     /**
      * Construct an instance of SheetBuilder that will create
@@ -49,16 +77,23 @@ public class SheetBuilder {
         this.defaultExpression = defaultExpression;
     }
 
-    private static int countCols(String row) {
-        return Math.toIntExact(row.chars().filter(c -> c == '|').count()) + 1;
+    private CellStore store(int rows, int columns) {
+        if ((long) rows * columns > DENSE_CELL_LIMIT) {
+            return new SparseCellStore(defaultExpression, rows, columns);
+        }
+        return new DenseCellStore(defaultExpression, rows, columns);
     }
 
-    private static Expression parseOr(Parser parser, String input, Expression defaultExpr) {
-        try {
-            return parser.parse(input);
-        } catch (ParseException e) {
-            return defaultExpr;
-        }
+    private Sheet sheet(int rows, int columns) {
+        Sheet sheet = new Sheet(parser, new HashMap<>(builtins), defaultExpression, store(rows, columns));
+        sheet.recalculateOn(recalculationPool);
+        sheet.generateHotFormulas(hotFormulaThreshold);
+        sheet.holdErrorsAsValues(errorsAsValues);
+        return sheet;
+    }
+
+    private static int countCols(String row) {
+        return Math.toIntExact(row.chars().filter(c -> c == '|').count()) + 1;
     }
 
     /**
@@ -84,6 +119,79 @@ public class SheetBuilder {
         return this;
     }
 
+    /**
+     * Recalculate the cells of any sheet constructed by this builder instance on the given pool.
+     *
+     * <pre>
+     * {@code
+     * Sheet sheet = new SheetBuilder(parser, exp)
+     *         .recalculateOn(ForkJoinPool.commonPool())
+     *         .empty(10, 10);
+     * }</pre>
+     *
+     * @param pool The pool to recalculate on, or null to recalculate on the updating thread.
+     * @return The current instance of the SheetBuilder.
+     * @see Sheet#recalculateOn(ForkJoinPool)
+     */
+    public SheetBuilder recalculateOn(ForkJoinPool pool) {
+        this.recalculationPool = pool;
+        return this;
+    }
+
+    /**
+     * Parse the cells of sheets loaded by this builder instance on the given pool.
+     * <p>
+     * The rows of a file are split into chunks which are parsed concurrently,
+     * the parsed cells are then inserted into the sheet in the same order as if they were parsed serially,
+     * so the loaded sheet and its failures do not depend on scheduling.
+     * The parser of this builder must be safe to use from several threads at once.
+     *
+     * <pre>
+     * {@code
+     * Sheet sheet = new SheetBuilder(parser, exp)
+     *         .parseOn(ForkJoinPool.commonPool())
+     *         .load("large.sheep");
+     * }</pre>
+     *
+     * @param pool The pool to parse on, or null to parse on the loading thread.
+     * @return The current instance of the SheetBuilder.
+     */
+    public SheetBuilder parseOn(ForkJoinPool pool) {
+        this.parsePool = pool;
+        return this;
+    }
+
+    /**
+     * Generate method handles for the hot formulas of any sheet constructed by this builder instance.
+     * <p>
+     * Generation composes with the sharing of formulas filled across cells:
+     * a formula shared by many cells is generated once for all of them,
+     * as soon as it has been recalculated the given number of times by any of those cells.
+     *
+     * @param recalculations The number of recalculations after which a formula is generated,
+     *                       or 0 to never generate method handles.
+     * @return The current instance of the SheetBuilder.
+     * @requires recalculations &gt;= 0
+     * @see Sheet#generateHotFormulas(int)
+     */
+    public SheetBuilder generateHotFormulas(int recalculations) {
+        this.hotFormulaThreshold = recalculations;
+        return this;
+    }
+
+    /**
+     * Hold the errors of formulas that cannot be evaluated as the values of their cells
+     * in any sheet constructed by this builder instance.
+     *
+     * @param enabled Whether errors are held as values, false to reject updates resulting in a type error.
+     * @return The current instance of the SheetBuilder.
+     * @see Sheet#holdErrorsAsValues(boolean)
+     */
+    public SheetBuilder holdErrorsAsValues(boolean enabled) {
+        this.errorsAsValues = enabled;
+        return this;
+    }
+
     /**
      * Construct a new empty sheet with the given number of rows and columns.
      * <p>
@@ -98,13 +206,18 @@ public class SheetBuilder {
      * Sheet sheet = builder.empty(10, 10);
      * builder.includeBuiltIn("hello", new Constant(20)); // Should not update the built-ins of `sheet`
      * }</pre>
+     * <p>
+     * Sheets with more than {@link #DENSE_CELL_LIMIT} cells only allocate memory for cells
+     * that hold something other than the default expression,
+     * so very large, mostly empty sheets can be created cheaply.
      *
      * @param rows    Amount of rows for the new sheet.
      * @param columns Amount of columns for the sheet.
      * @return A new sheet with the appropriate built-ins and of the specified dimensions.
+     * @requires rows * columns &lt;= Integer.MAX_VALUE
      */
     public Sheet empty(int rows, int columns) {
-        return new Sheet(parser, new HashMap<>(builtins), defaultExpression, rows, columns);
+        return sheet(rows, columns);
     }
 
     /**
@@ -113,17 +226,53 @@ public class SheetBuilder {
      * The resulting sheet has as many rows as there are lines in the file,
      * and one more column than there are pipes '|' in the row with the most pipes.
      * Missing trailing columns are filled with the default expression.
+     * <p>
+     * Cells which fail to parse, are part of a reference loop, or have a type error
+     * are filled with the default expression rather than preventing the sheet from loading.
      *
      * @param filename The path to file to open.
      * @return The sheet decoded from the file.
      * @throws FileNotFoundException If the file is not found.
-     * @throws ParseException        If the sheet or any of its expressions fail to parse.
-     * @throws TypeError             If any of the expressions have a type error.
+     * @throws ParseException        If the sheet has no rows.
      * @stage2
      */
-    public Sheet load(String filename) throws FileNotFoundException, ParseException, TypeError {
-        BufferedReader br = new BufferedReader(new FileReader(filename));
-        List<String> lines = new ArrayList<>(br.lines().toList());
+    public Sheet load(String filename) throws FileNotFoundException, ParseException {
+        return load(filename, new HashMap<>());
+    }
+
+    /**
+     * Load a Sheet from file, reporting any cells which could not be loaded.
+     * <p>
+     * The sheet is loaded as per {@link #load(String)}.
+     * Every cell which was filled with the default expression because it failed to parse,
+     * is part of a reference loop, or has a type error is added to the failures
+     * with a failed {@link UpdateResponse} explaining why.
+     * <p>
+     * Every cell is parsed, recorded as a dependant of the cells it references,
+     * and evaluated exactly once, so loading takes time proportional to the size of the file.
+     * Cells holding the same formula as a recently parsed cell share its expression
+     * instead of being parsed again, see {@link CachingParser},
+     * and cells are parsed concurrently if a pool is given by {@link #parseOn(ForkJoinPool)}.
+     * <p>
+     * Several sheets may be loaded by different threads at once,
+     * provided the builder is not modified meanwhile and its parser is safe to use from several threads.
+     *
+     * @param filename The path to file to open.
+     * @param failures A mapping to add the cells which could not be loaded to.
+     * @return The sheet decoded from the file.
+     * @throws FileNotFoundException If the file is not found.
+     * @throws ParseException        If the sheet has no rows.
+     */
+    public Sheet load(String filename, Map<CellLocation, UpdateResponse> failures)
+            throws FileNotFoundException, ParseException {
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            lines = reader.lines().toList();
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException | UncheckedIOException e) {
+            throw new ParseException("Unable to read " + filename);
+        }
         int rows = lines.size();
         int cols = lines
                 .stream()
@@ -131,24 +280,128 @@ public class SheetBuilder {
                 .max()
                 .orElseThrow(() -> new ParseException("File had no valid"));
 
-        Sheet sheet = new Sheet(parser, new HashMap<>(builtins), defaultExpression, rows, cols);
-        List<List<Expression>> expressions = lines.stream()
-                .map(line -> List.of(line.split("\\|")))
-                .map(row -> row.stream()
-                        .map((e) -> parseOr(parser, e, defaultExpression))
-                        .toList())
-                .toList();
-
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < cols; j++) {
-                Expression expression = defaultExpression;
-                if (i < expressions.size() && j < expressions.get(i).size()) {
-                    expression = expressions.get(i).get(j);
+        Sheet sheet = sheet(rows, cols);
+        String[][] inputs = new String[rows][];
+        Expression[][] parsed = new Expression[rows][];
+        ParseTask parse = new ParseTask(lines, inputs, parsed,
+                new CachingParser(parser, LOAD_CACHE_SIZE), 0, rows);
+        if (parsePool == null) {
+            parse.parseRows();
+        } else {
+            parsePool.invoke(parse);
+        }
+
+        Map<CellLocation, Expression> cells = new LinkedHashMap<>();
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < inputs[row].length; column++) {
+                CellLocation location = new CellLocation(row, column);
+                if (parsed[row][column] != null) {
+                    cells.put(location, parsed[row][column]);
+                } else {
+                    failures.put(location, UpdateResponse.fail("Unable to parse: " + inputs[row][column]));
                 }
-                sheet.update(new CellLocation(i, j), expression);
             }
         }
+        failures.putAll(sheet.load(cells));
         return sheet;
     }
 
+    /**
+     * Load several sheets from files concurrently.
+     * <p>
+     * Each file is loaded as per {@link #load(String)} on the pool given by {@link #parseOn(ForkJoinPool)},
+     * or the common pool if there is none.
+     * The graphical interface only ever opens a single file, through {@link #load(String)},
+     * so this is for callers which load many sheets at once, such as batch tools.
+     *
+     * @param filenames The paths to the files to open.
+     * @return The sheets decoded from the files, in the same order as the files.
+     * @throws FileNotFoundException If any of the files is not found.
+     * @throws ParseException        If any of the sheets has no rows.
+     */
+    public List<Sheet> loadAll(List<String> filenames) throws FileNotFoundException, ParseException {
+        ForkJoinPool pool = parsePool == null ? ForkJoinPool.commonPool() : parsePool;
+        List<ForkJoinTask<Sheet>> loads = new ArrayList<>();
+        for (String filename : filenames) {
+            loads.add(pool.submit(() -> load(filename)));
+        }
+        List<Sheet> sheets = new ArrayList<>();
+        for (ForkJoinTask<Sheet> load : loads) {
+            try {
+                sheets.add(load.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ParseException("Interrupted while loading");
+            } catch (ExecutionException e) {
+                // the pool wraps checked exceptions thrown by a task, rethrow the original
+                for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                    if (cause instanceof FileNotFoundException notFound) {
+                        throw notFound;
+                    }
+                    if (cause instanceof ParseException invalid) {
+                        throw invalid;
+                    }
+                }
+                if (e.getCause() instanceof RuntimeException unchecked) {
+                    throw unchecked;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return sheets;
+    }
+
+    /**
+     * Splits the lines of a file into their cells and parses them, splitting large runs of rows in half.
+     * Each task only writes the rows it was given, so tasks never write the same row.
+     */
+    private static class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> lines;
+        private final String[][] inputs;
+        private final Expression[][] parsed;
+        private final Parser parser;
+        private final int from;
+        private final int to;
+
+        private ParseTask(List<String> lines, String[][] inputs, Expression[][] parsed, Parser parser,
+                          int from, int to) {
+            this.lines = lines;
+            this.inputs = inputs;
+            this.parsed = parsed;
+            this.parser = parser;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARSE_SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ParseTask(lines, inputs, parsed, parser, from, middle),
+                        new ParseTask(lines, inputs, parsed, parser, middle, to));
+                return;
+            }
+            parseRows();
+        }
+
+        /**
+         * Parse every row of this task on the current thread.
+         */
+        private void parseRows() {
+            for (int row = from; row < to; row++) {
+                inputs[row] = lines.get(row).split("\\|");
+                parsed[row] = new Expression[inputs[row].length];
+                for (int column = 0; column < inputs[row].length; column++) {
+                    try {
+                        parsed[row][column] = parser.parse(inputs[row][column]);
+                    } catch (ParseException e) {
+                        // left empty, reported as a failure once every row is parsed
+                    }
+                }
+            }
+        }
+    }
+
 }
\ No newline at end of file
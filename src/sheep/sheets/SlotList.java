@@ -0,0 +1,69 @@
+package sheep.sheets;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A reusable, growable list of slots, used to collect the cells found by a traversal of a sheet.
+ * <p>
+ * The list is used as a stack of lists: a traversal appends the dependants of a cell,
+ * visits them, then truncates the list back to where they started,
+ * so the same array is reused by every cell of every traversal.
+ */
+class SlotList implements IntConsumer {
+    private int[] slots = new int[16];
+    private int size = 0;
+
+    /**
+     * Append a slot to the end of the list.
+     *
+     * @param slot A slot within the sheet.
+     */
+    @Override
+    public void accept(int slot) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size++] = slot;
+    }
+
+    /**
+     * The slot at a position of the list.
+     *
+     * @param index The position of the slot.
+     * @return The slot at the position.
+     * @requires 0 &lt;= index &lt; size()
+     */
+    int get(int index) {
+        return slots[index];
+    }
+
+    /**
+     * The number of slots in the list.
+     *
+     * @return The size of the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Remove the last slot of the list.
+     *
+     * @return The removed slot.
+     * @requires size() &gt; 0
+     */
+    int pop() {
+        return slots[--size];
+    }
+
+    /**
+     * Remove every slot after the first few.
+     *
+     * @param size The number of slots to keep.
+     * @requires 0 &lt;= size &lt;= size()
+     */
+    void truncate(int size) {
+        this.size = size;
+    }
+}
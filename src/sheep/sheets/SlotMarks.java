@@ -0,0 +1,75 @@
+package sheep.sheets;
+
+import java.util.Arrays;
+
+/**
+ * A reusable set of slots, used to mark the cells visited by a traversal of a sheet.
+ * <p>
+ * Every slot is stamped with the generation in which it was last marked,
+ * so clearing the set between traversals only starts a new generation rather than touching every slot.
+ * Stamps are held in pages of consecutive slots which are only allocated once a slot within them is marked,
+ * so a traversal of a few cells of a very large sparse sheet does not allocate an array the size of the sheet.
+ * The pages are kept between traversals.
+ */
+class SlotMarks {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int[][] pages;
+    private int generation = 1;
+
+    /**
+     * Construct an empty set of the slots of a sheet.
+     *
+     * @param slots The number of slots of the sheet.
+     */
+    SlotMarks(int slots) {
+        pages = new int[(int) (((long) slots + PAGE_SIZE - 1) >>> PAGE_BITS)][];
+    }
+
+    /**
+     * Unmark every slot.
+     */
+    void clear() {
+        if (++generation == 0) {
+            // stamps have wrapped around, old stamps could be mistaken for the new generation
+            for (int[] page : pages) {
+                if (page != null) {
+                    Arrays.fill(page, 0);
+                }
+            }
+            generation = 1;
+        }
+    }
+
+    /**
+     * Mark a slot.
+     *
+     * @param slot A slot within the sheet.
+     * @return true if the slot was not already marked.
+     */
+    boolean mark(int slot) {
+        int[] page = pages[slot >>> PAGE_BITS];
+        if (page == null) {
+            page = new int[PAGE_SIZE];
+            pages[slot >>> PAGE_BITS] = page;
+        }
+        if (page[slot & PAGE_MASK] == generation) {
+            return false;
+        }
+        page[slot & PAGE_MASK] = generation;
+        return true;
+    }
+
+    /**
+     * Whether a slot is marked.
+     *
+     * @param slot A slot within the sheet.
+     * @return true if the slot has been marked since the set was last cleared.
+     */
+    boolean isMarked(int slot) {
+        int[] page = pages[slot >>> PAGE_BITS];
+        return page != null && page[slot & PAGE_MASK] == generation;
+    }
+}
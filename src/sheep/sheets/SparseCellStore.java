@@ -0,0 +1,227 @@
+package sheep.sheets;
+
+import sheep.expression.Expression;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cell storage that only allocates memory for cells which differ from an empty cell.
+ * <p>
+ * Slots are grouped into fixed size chunks of consecutive slots, i.e. tiles of whole rows,
+ * and a chunk is only allocated once one of its cells holds something other than
+ * the default expression or gains a dependant.
+ * A chunk is released again once all of its cells are empty,
+ * so memory follows the number of populated cells rather than the size of the sheet.
+ */
+class SparseCellStore extends CellStore {
+    private static final int CHUNK_BITS = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Map<Integer, Chunk> chunks = new HashMap<>();
+
+    /**
+     * Construct sparse storage for a sheet of the given dimensions.
+     *
+     * @param defaultExpression The expression initially held in every cell.
+     * @param rows              Amount of rows for the sheet.
+     * @param columns           Amount of columns for the sheet.
+     * @throws IllegalArgumentException If the sheet has more cells than can be addressed by an int slot.
+     * @requires rows &gt; 0 &amp;&amp; columns &gt; 0
+     */
+    SparseCellStore(Expression defaultExpression, int rows, int columns) {
+        super(defaultExpression, rows, columns);
+        if ((long) rows * columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A sheet of " + rows + " rows and " + columns
+                    + " columns has too many cells to address.");
+        }
+    }
+
+    /**
+     * The number of chunks currently allocated.
+     *
+     * @return The number of chunks currently allocated.
+     */
+    int chunkCount() {
+        return chunks.size();
+    }
+
+    private Chunk find(int slot) {
+        return chunks.get(slot >>> CHUNK_BITS);
+    }
+
+    private Chunk create(int slot) {
+        return chunks.computeIfAbsent(slot >>> CHUNK_BITS, key -> new Chunk());
+    }
+
+    private void release(int slot, Chunk chunk) {
+        if (chunk.occupied == 0) {
+            chunks.remove(slot >>> CHUNK_BITS);
+        }
+    }
+
+    @Override
+    Expression storedFormula(int slot) {
+        Chunk chunk = find(slot);
+        if (chunk == null || chunk.formulas[slot & CHUNK_MASK] == null) {
+            return defaultExpression;
+        }
+        return chunk.formulas[slot & CHUNK_MASK];
+    }
+
+    @Override
+    Expression value(int slot) {
+        Chunk chunk = find(slot);
+        if (chunk == null || chunk.values[slot & CHUNK_MASK] == null) {
+            return defaultExpression;
+        }
+        return chunk.values[slot & CHUNK_MASK];
+    }
+
+    @Override
+    void setFormula(int slot, Expression formula) {
+        Chunk chunk = formula == defaultExpression ? find(slot) : create(slot);
+        if (chunk != null) {
+            chunk.formulas[slot & CHUNK_MASK] = chunk.track(chunk.formulas[slot & CHUNK_MASK], formula);
+            release(slot, chunk);
+        }
+    }
+
+    @Override
+    void setValue(int slot, Expression value) {
+        replacingValue(slot, value(slot), value);
+        Chunk chunk = value == defaultExpression ? find(slot) : create(slot);
+        if (chunk != null) {
+            chunk.values[slot & CHUNK_MASK] = chunk.track(chunk.values[slot & CHUNK_MASK], value);
+            release(slot, chunk);
+        }
+    }
+
+    @Override
+    Program program(int slot) {
+        Chunk chunk = find(slot);
+        return chunk == null ? null : chunk.programs[slot & CHUNK_MASK];
+    }
+
+    @Override
+    void setProgram(int slot, Program program) {
+        Chunk chunk = program == null ? find(slot) : create(slot);
+        if (chunk != null) {
+            Program previous = chunk.programs[slot & CHUNK_MASK];
+            if (previous == null && program != null) {
+                chunk.occupied++;
+            } else if (previous != null && program == null) {
+                chunk.occupied--;
+            }
+            chunk.programs[slot & CHUNK_MASK] = program;
+            release(slot, chunk);
+        }
+    }
+
+    @Override
+    FormulaTemplate template(int slot) {
+        Chunk chunk = find(slot);
+        return chunk == null ? null : chunk.templates[slot & CHUNK_MASK];
+    }
+
+    @Override
+    void setTemplate(int slot, FormulaTemplate template) {
+        Chunk chunk = template == null ? find(slot) : create(slot);
+        if (chunk != null) {
+            FormulaTemplate previous = chunk.templates[slot & CHUNK_MASK];
+            if (previous == null && template != null) {
+                chunk.occupied++;
+            } else if (previous != null && template == null) {
+                chunk.occupied--;
+            }
+            chunk.templates[slot & CHUNK_MASK] = template;
+            release(slot, chunk);
+        }
+    }
+
+    @Override
+    int dependantCount(int slot) {
+        Chunk chunk = find(slot);
+        return chunk == null ? 0 : chunk.dependantCounts[slot & CHUNK_MASK];
+    }
+
+    @Override
+    int dependant(int slot, int index) {
+        return find(slot).dependants[slot & CHUNK_MASK][index];
+    }
+
+    @Override
+    void addDependant(int slot, int dependant) {
+        Chunk chunk = create(slot);
+        int offset = slot & CHUNK_MASK;
+        int count = chunk.dependantCounts[offset];
+        if (count == 0) {
+            chunk.occupied++;
+        }
+        if (chunk.dependants[offset] == null || count == chunk.dependants[offset].length) {
+            chunk.dependants[offset] = chunk.dependants[offset] == null
+                    ? new int[4]
+                    : Arrays.copyOf(chunk.dependants[offset], count * 2);
+        }
+        chunk.dependants[offset][count] = dependant;
+        chunk.dependantCounts[offset] = count + 1;
+    }
+
+    @Override
+    void removeDependant(int slot, int dependant) {
+        Chunk chunk = find(slot);
+        if (chunk == null) {
+            return;
+        }
+        int offset = slot & CHUNK_MASK;
+        int[] list = chunk.dependants[offset];
+        int count = chunk.dependantCounts[offset];
+        for (int i = 0; i < count; i++) {
+            if (list[i] == dependant) {
+                // order of dependants is irrelevant, fill the gap with the last one
+                list[i] = list[count - 1];
+                chunk.dependantCounts[offset] = count - 1;
+                if (count == 1) {
+                    chunk.dependants[offset] = null;
+                    chunk.occupied--;
+                    release(slot, chunk);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * The contents of a run of consecutive slots.
+     * Empty cells are represented by null entries and a dependant count of zero.
+     */
+    private class Chunk {
+        private final Expression[] formulas = new Expression[CHUNK_SIZE];
+        private final Expression[] values = new Expression[CHUNK_SIZE];
+        private final Program[] programs = new Program[CHUNK_SIZE];
+        private final FormulaTemplate[] templates = new FormulaTemplate[CHUNK_SIZE];
+        private final int[][] dependants = new int[CHUNK_SIZE][];
+        private final int[] dependantCounts = new int[CHUNK_SIZE];
+        // number of non-null formulas, values, programs, templates and dependant lists in the chunk
+        private int occupied = 0;
+
+        /**
+         * Account for replacing an entry of the chunk.
+         *
+         * @param previous The entry being replaced, null if empty.
+         * @param next     The expression replacing it.
+         * @return The entry to store, null if the expression is the default expression.
+         */
+        private Expression track(Expression previous, Expression next) {
+            Expression stored = next == defaultExpression ? null : next;
+            if (previous == null && stored != null) {
+                occupied++;
+            } else if (previous != null && stored == null) {
+                occupied--;
+            }
+            return stored;
+        }
+    }
+}
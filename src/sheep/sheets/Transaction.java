@@ -0,0 +1,422 @@
+package sheep.sheets;
+
+import sheep.expression.CellError;
+import sheep.expression.EvalContext;
+import sheep.expression.Expression;
+import sheep.expression.Simplified;
+import sheep.expression.TypeError;
+import sheep.core.ReferenceCodec;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.ErrorValue;
+import sheep.expression.basic.Range;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A pending set of changes to the values of a {@link Sheet}.
+ * <p>
+ * Writes are kept in a small delta keyed by the slot of the cell,
+ * while reads of unchanged cells fall through to the committed values of the sheet.
+ * Starting, committing or discarding a transaction therefore costs time proportional
+ * to the number of changed cells rather than the size of the sheet.
+ * <p>
+ * A transaction is the context expressions are evaluated within by {@link Expression#value(EvalContext)},
+ * and its {@link #state()} is the state mapping expected by {@link Expression#value(Map)}:
+ * identifiers that reference a cell within the sheet, e.g. A1, resolve to the value of that cell,
+ * and any other identifier resolves to the built-ins of the sheet.
+ */
+class Transaction implements EvalContext {
+    // beyond this many changed cells a median is selected from the cells rather than the ordered numbers
+    private static final int MAX_MEDIAN_CHANGES = 64;
+
+    private final CellStore cells;
+    private final Map<String, Expression> builtins;
+    private final Map<Integer, Expression> delta = new HashMap<>();
+    private final Map<String, Expression> state = new State();
+    private final boolean errorsAsValues;
+
+    /**
+     * Start a new transaction over the committed values of a sheet.
+     *
+     * @param cells    The storage of the sheet whose values are read for unchanged cells.
+     * @param builtins A mapping of built-in identifiers to expressions.
+     */
+    Transaction(CellStore cells, Map<String, Expression> builtins) {
+        this(cells, builtins, false);
+    }
+
+    /**
+     * Start a new transaction over the committed values of a sheet,
+     * choosing whether formulas that fail to evaluate result in an {@link ErrorValue}.
+     *
+     * @param cells          The storage of the sheet whose values are read for unchanged cells.
+     * @param builtins       A mapping of built-in identifiers to expressions.
+     * @param errorsAsValues Whether {@link #evaluate(int)} returns errors rather than throwing them.
+     */
+    Transaction(CellStore cells, Map<String, Expression> builtins, boolean errorsAsValues) {
+        this.cells = cells;
+        this.builtins = builtins;
+        this.errorsAsValues = errorsAsValues;
+    }
+
+    /**
+     * The value of a cell as seen by this transaction.
+     *
+     * @param slot A slot within the sheet.
+     * @return The pending value of the cell if it has changed, otherwise its committed value.
+     */
+    Expression get(int slot) {
+        Expression pending = delta.get(slot);
+        return pending == null ? cells.value(slot) : pending;
+    }
+
+    /**
+     * Evaluate the formula of a cell against the values seen by this transaction.
+     * <p>
+     * Formulas that have been compiled are run as a {@link Program},
+     * other operations are evaluated numerically via {@link Expression#value(EvalContext)},
+     * and any other formula is evaluated as a tree via {@link Expression#value(Map)}.
+     * <p>
+     * If this transaction holds errors as values, a formula that fails to evaluate results in an error instead:
+     * the error it read from another cell, {@link ErrorValue#DIV0} if it divided by zero,
+     * or {@link ErrorValue#TYPE} for any other type error.
+     *
+     * @param slot A slot within the sheet.
+     * @return The value of the formula of the cell.
+     * @throws TypeError If evaluating the formula results in a type error and errors are not held as values.
+     */
+    Expression evaluate(int slot) throws TypeError {
+        if (!errorsAsValues) {
+            return compute(slot);
+        }
+        try {
+            return compute(slot);
+        } catch (CellError e) {
+            return e.getError();
+        } catch (TypeError e) {
+            return ErrorValue.TYPE;
+        } catch (ArithmeticException e) {
+            return ErrorValue.DIV0;
+        }
+    }
+
+    private Expression compute(int slot) throws TypeError {
+        FormulaTemplate template = cells.template(slot);
+        if (template != null) {
+            return Constant.of(template.run(this, slot));
+        }
+        Program program = cells.program(slot);
+        if (program != null) {
+            return Constant.of(program.run(this));
+        }
+        Expression formula = cells.formula(slot);
+        if (formula instanceof Operation || formula instanceof Simplified) {
+            // an operation, or a simplification of one, always evaluates to the constant holding its numeric value
+            return Constant.of(formula.value(this));
+        }
+        return formula.value(state);
+    }
+
+    /**
+     * Record a new value for a cell without modifying the sheet.
+     *
+     * @param slot  A slot within the sheet.
+     * @param value The new value of the cell.
+     */
+    void put(int slot, Expression value) {
+        delta.put(slot, value);
+    }
+
+    /**
+     * Write every changed value into the storage of the sheet.
+     */
+    void commit() {
+        delta.forEach(cells::setValue);
+    }
+
+    /**
+     * The cells changed by this transaction and their new values.
+     *
+     * @return An unmodifiable view of the slots of the changed cells and their new values.
+     */
+    Map<Integer, Expression> changes() {
+        return Collections.unmodifiableMap(delta);
+    }
+
+    /**
+     * The slot of the cell named by an identifier.
+     *
+     * @param identifier An identifier which may name a cell.
+     * @return The slot of the named cell, or -1 if the identifier does not name a cell within the sheet.
+     */
+    @Override
+    public int slot(String identifier) {
+        return cells.slot(identifier);
+    }
+
+    /**
+     * The slot of the cell at a packed reference.
+     *
+     * @param reference A reference packed by {@link sheep.core.ReferenceCodec}.
+     * @return The slot of the referenced cell, or -1 if the cell is not within the sheet.
+     */
+    @Override
+    public int slotAt(long reference) {
+        return cells.slotAt(reference);
+    }
+
+    /**
+     * The numeric value of a cell as seen by this transaction.
+     *
+     * @param slot A slot within the sheet.
+     * @return The numeric value of the cell.
+     * @throws TypeError If the value of the cell is not numeric.
+     */
+    @Override
+    public long valueAt(int slot) throws TypeError {
+        return get(slot).value(this);
+    }
+
+    /**
+     * The sum of the numeric values of every cell within a range as seen by this transaction.
+     * <p>
+     * If every column of the range is tracked by the {@link ColumnAggregates} of the sheet,
+     * the committed values are summed in O(log rows) per column
+     * and the pending changes within the range are applied on top.
+     * The cells are only read one by one if that is not possible,
+     * if the transaction has changed more cells than the range covers,
+     * or if a cell within the range does not hold a number, so that the same {@link TypeError} is thrown.
+     *
+     * @param range The range of cells to sum.
+     * @return The sum of the cells, wrapping on overflow as {@code +} does.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    @Override
+    public long sum(Range range) throws TypeError {
+        long[] corners = range.ranges();
+        int top = ReferenceCodec.row(corners[0]);
+        int left = ReferenceCodec.column(corners[0]);
+        int bottom = ReferenceCodec.row(corners[1]);
+        int right = ReferenceCodec.column(corners[1]);
+        if (bottom >= cells.getRows() || right >= cells.getColumns() || delta.size() >= range.size()) {
+            return range.sumCells(this);
+        }
+
+        ColumnAggregates aggregates = cells.aggregates();
+        long sum = 0;
+        int irregular = 0;
+        for (int column = left; column <= right; column++) {
+            if (!aggregates.isTracked(column, top, bottom)) {
+                return range.sumCells(this);
+            }
+            sum += aggregates.sum(column, top, bottom);
+            irregular += aggregates.irregular(column, top, bottom);
+        }
+        for (Map.Entry<Integer, Expression> change : delta.entrySet()) {
+            int row = change.getKey() / cells.getColumns();
+            int column = change.getKey() % cells.getColumns();
+            if (row >= top && row <= bottom && column >= left && column <= right) {
+                Expression committed = cells.value(change.getKey());
+                sum += ColumnAggregates.number(change.getValue()) - ColumnAggregates.number(committed);
+                irregular += (ColumnAggregates.isNumber(committed) ? 1 : 0)
+                        - (ColumnAggregates.isNumber(change.getValue()) ? 1 : 0);
+            }
+        }
+        if (irregular != 0) {
+            return range.sumCells(this);
+        }
+        return sum;
+    }
+
+    /**
+     * The median of the numeric values of every cell within a range as seen by this transaction.
+     * <p>
+     * The committed numbers within ranges used by the sheet are kept in order by its {@link RangeStatistics},
+     * so the median is selected from them in O(log n),
+     * with the pending changes within the range accounted for without modifying them.
+     * The cells are only read one by one if the range is not ordered by the sheet,
+     * if too many cells within the range have changed,
+     * or if a cell within the range does not hold a number, so that the same {@link TypeError} is thrown.
+     *
+     * @param range The range of cells to find the median of.
+     * @return The median of the cells.
+     * @throws TypeError If any cell within the range does not have a numeric value.
+     */
+    @Override
+    public long median(Range range) throws TypeError {
+        long[] corners = range.ranges();
+        int top = ReferenceCodec.row(corners[0]);
+        int left = ReferenceCodec.column(corners[0]);
+        int bottom = ReferenceCodec.row(corners[1]);
+        int right = ReferenceCodec.column(corners[1]);
+        RangeStatistics.Ordered ordered = delta.size() > MAX_MEDIAN_CHANGES ? null
+                : cells.statistics().ordered(top, left, bottom, right);
+        if (ordered == null) {
+            return EvalContext.super.median(range);
+        }
+
+        // numbers leaving and entering the range due to pending changes
+        long[] removed = new long[delta.size()];
+        long[] added = new long[delta.size()];
+        int removedCount = 0;
+        int addedCount = 0;
+        int irregular = ordered.irregular();
+        for (Map.Entry<Integer, Expression> change : delta.entrySet()) {
+            int row = change.getKey() / cells.getColumns();
+            int column = change.getKey() % cells.getColumns();
+            if (row >= top && row <= bottom && column >= left && column <= right) {
+                Expression committed = cells.value(change.getKey());
+                if (ColumnAggregates.isNumber(committed)) {
+                    removed[removedCount++] = ColumnAggregates.number(committed);
+                } else {
+                    irregular--;
+                }
+                if (ColumnAggregates.isNumber(change.getValue())) {
+                    added[addedCount++] = ColumnAggregates.number(change.getValue());
+                } else {
+                    irregular++;
+                }
+            }
+        }
+        if (irregular != 0) {
+            return EvalContext.super.median(range);
+        }
+        removed = Arrays.copyOf(removed, removedCount);
+        added = Arrays.copyOf(added, addedCount);
+        Arrays.sort(removed);
+        Arrays.sort(added);
+
+        int size = range.size();
+        long upper = select(ordered.numbers(), removed, added, size / 2);
+        if (size % 2 != 0) {
+            return upper;
+        }
+        return (select(ordered.numbers(), removed, added, size / 2 - 1) + upper) / 2;
+    }
+
+    /**
+     * The number at a position among the numbers of a tree with some numbers removed and others added.
+     * <p>
+     * The number is either one of those added, or a number of the tree whose position within the tree
+     * differs from the requested position by at most the number of numbers removed or added,
+     * so it is the smallest such candidate with enough numbers no greater than it.
+     *
+     * @requires removed and added are sorted
+     */
+    private static long select(OrderStatisticTree numbers, long[] removed, long[] added, int rank) {
+        int from = Math.max(0, rank - added.length);
+        int to = Math.min(numbers.size() - 1, rank + removed.length);
+        long[] candidates = Arrays.copyOf(added, added.length + Math.max(0, to - from + 1));
+        for (int position = from; position <= to; position++) {
+            candidates[added.length + position - from] = numbers.select(position);
+        }
+        Arrays.sort(candidates);
+        for (long candidate : candidates) {
+            int atMost = numbers.countAtMost(candidate)
+                    - countAtMost(removed, candidate) + countAtMost(added, candidate);
+            if (atMost > rank) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Rank " + rank + " is not within the range");
+    }
+
+    /**
+     * The number of sorted numbers no greater than a value.
+     */
+    private static int countAtMost(long[] numbers, long value) {
+        int low = 0;
+        int high = numbers.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (numbers[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The values seen by this transaction as a mapping of identifiers to expressions.
+     * <p>
+     * Writing to the mapping records a new value for the named cell, as per {@link #put(int, Expression)}.
+     *
+     * @return A view of the cells and built-ins seen by this transaction.
+     */
+    @Override
+    public Map<String, Expression> state() {
+        return state;
+    }
+
+    /**
+     * The values seen by a transaction, keyed by identifier.
+     */
+    private class State extends AbstractMap<String, Expression> {
+        /**
+         * The slot of the cell named by a state key, or -1 if the key does not name a cell.
+         */
+        private int slotOf(Object key) {
+            if (!(key instanceof String identifier)) {
+                return -1;
+            }
+            return cells.slot(identifier);
+        }
+
+        @Override
+        public Expression get(Object key) {
+            int slot = slotOf(key);
+            if (slot < 0) {
+                return builtins.get(key);
+            }
+            return Transaction.this.get(slot);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return slotOf(key) >= 0 || builtins.containsKey(key);
+        }
+
+        /**
+         * Record a new value for the cell named by the key.
+         *
+         * @throws UnsupportedOperationException If the key does not reference a cell,
+         *                                       built-ins cannot be changed by a transaction.
+         */
+        @Override
+        public Expression put(String key, Expression value) {
+            int slot = slotOf(key);
+            if (slot < 0) {
+                throw new UnsupportedOperationException("Cannot assign to built-in: " + key);
+            }
+            Expression previous = Transaction.this.get(slot);
+            delta.put(slot, value);
+            return previous;
+        }
+
+        /**
+         * A snapshot of every built-in and cell visible to the transaction.
+         * <p>
+         * This copies the whole sheet and is only intended for callers that need to
+         * iterate the state, evaluation only ever looks up individual identifiers.
+         */
+        @Override
+        public Set<Entry<String, Expression>> entrySet() {
+            Map<String, Expression> snapshot = new HashMap<>(builtins);
+            for (int row = 0; row < cells.getRows(); row++) {
+                for (int column = 0; column < cells.getColumns(); column++) {
+                    snapshot.put(new CellLocation(row, column).toString(),
+                            Transaction.this.get(cells.slot(row, column)));
+                }
+            }
+            return Collections.unmodifiableSet(snapshot.entrySet());
+        }
+    }
+}
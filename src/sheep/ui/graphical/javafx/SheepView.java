@@ -10,6 +10,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.skin.TableHeaderRow;
 import javafx.scene.layout.BorderPane;
+import sheep.core.ReferenceCodec;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
@@ -167,7 +168,7 @@ public class SheepView {
      * @return The letter representation of the given number.
      */
     private String numberToLetter(int number) {
-        return String.valueOf((char) (number + 'A'));
+        return ReferenceCodec.columnName(number);
     }
 
     /**
@@ -1,5 +1,6 @@
 package sheep.ui.graphical.swing;
 
+import sheep.core.ReferenceCodec;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
@@ -82,7 +83,7 @@ class SheetModel implements TableModel {
             return "";
         }
         if (rowIndex == 0) {
-            return Character.toString(columnIndex + 64);
+            return ReferenceCodec.columnName(columnIndex - 1);
         }
         if (columnIndex == 0) {
             return rowIndex - 1;
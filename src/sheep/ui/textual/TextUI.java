@@ -1,5 +1,6 @@
 package sheep.ui.textual;
 
+import sheep.core.ReferenceCodec;
 import sheep.core.SheetUpdate;
 import sheep.core.SheetView;
 import sheep.core.UpdateResponse;
@@ -36,7 +37,7 @@ public class TextUI extends UI {
     private String columnHeaders(int columns) {
         String[] values = new String[columns];
         for (int column = 0; column < columns; column++) {
-            values[column] = String.valueOf(Character.valueOf((char) (column + 65)));
+            values[column] = ReferenceCodec.columnName(column);
         }
         return renderRow(-1, values);
     }
@@ -81,18 +82,19 @@ public class TextUI extends UI {
     }
 
     private Optional<Integer> readRow(String input) {
-        try {
-            return Optional.of(Integer.parseInt(input.substring(1)));
-        } catch (NumberFormatException e) {
+        long reference = ReferenceCodec.decode(input.toUpperCase());
+        if (reference == ReferenceCodec.NOT_A_REFERENCE) {
             return Optional.empty();
         }
+        return Optional.of(ReferenceCodec.row(reference));
     }
 
     private Optional<Integer> readColumn(String input) {
-        if (Character.isAlphabetic(input.charAt(0))) {
-            return Optional.of(input.charAt(0) - 64);
+        long reference = ReferenceCodec.decode(input.toUpperCase());
+        if (reference == ReferenceCodec.NOT_A_REFERENCE) {
+            return Optional.empty();
         }
-        return Optional.empty();
+        return Optional.of(ReferenceCodec.column(reference) + 1);
     }
 
     private boolean handleAction(String action) {
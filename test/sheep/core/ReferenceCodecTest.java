@@ -0,0 +1,59 @@
+package sheep.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ReferenceCodecTest {
+    @Test
+    public void columnNames() {
+        assertEquals("A", ReferenceCodec.columnName(0));
+        assertEquals("Z", ReferenceCodec.columnName(25));
+        assertEquals("AA", ReferenceCodec.columnName(26));
+        assertEquals("AZ", ReferenceCodec.columnName(51));
+        assertEquals("BA", ReferenceCodec.columnName(52));
+        assertEquals("ZZ", ReferenceCodec.columnName(701));
+        assertEquals("AAA", ReferenceCodec.columnName(702));
+        assertEquals("ZZZ", ReferenceCodec.columnName(ReferenceCodec.MAX_COLUMNS - 1));
+    }
+
+    @Test
+    public void columnLetters() {
+        for (int column = 0; column < ReferenceCodec.MAX_COLUMNS; column++) {
+            assertEquals(ReferenceCodec.columnName(column).length(), ReferenceCodec.columnLetters(column));
+        }
+    }
+
+    @Test
+    public void roundTrip() {
+        for (int column = 0; column < ReferenceCodec.MAX_COLUMNS; column++) {
+            long packed = ReferenceCodec.decode(ReferenceCodec.encode(column, column));
+            assertEquals(column, ReferenceCodec.row(packed));
+            assertEquals(column, ReferenceCodec.column(packed));
+        }
+    }
+
+    @Test
+    public void largeRow() {
+        long packed = ReferenceCodec.decode("B" + Integer.MAX_VALUE);
+        assertEquals(Integer.MAX_VALUE, ReferenceCodec.row(packed));
+        assertEquals(1, ReferenceCodec.column(packed));
+        assertEquals(ReferenceCodec.NOT_A_REFERENCE, ReferenceCodec.decode("B2147483648"));
+    }
+
+    @Test
+    public void notReferences() {
+        String[] invalid = {"", "A", "AB", "1", "12F", "a1", "A-1", "A 1", " A1", "A1 ", "AAAA1", "A1B"};
+        for (String reference : invalid) {
+            assertEquals(reference, ReferenceCodec.NOT_A_REFERENCE, ReferenceCodec.decode(reference));
+        }
+    }
+
+    @Test
+    public void decodeCanonical() {
+        assertEquals(ReferenceCodec.pack(10, 27), ReferenceCodec.decodeCanonical("AB10"));
+        assertEquals(ReferenceCodec.pack(0, 0), ReferenceCodec.decodeCanonical("A0"));
+        assertEquals(ReferenceCodec.NOT_A_REFERENCE, ReferenceCodec.decodeCanonical("A01"));
+        assertEquals(ReferenceCodec.NOT_A_REFERENCE, ReferenceCodec.decodeCanonical("AB00"));
+        assertEquals(ReferenceCodec.NOT_A_REFERENCE, ReferenceCodec.decodeCanonical("life"));
+    }
+}
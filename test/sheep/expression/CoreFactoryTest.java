@@ -3,8 +3,10 @@ package sheep.expression;
 import org.junit.Before;
 import org.junit.Test;
 import sheep.expression.arithmetic.Arithmetic;
+import sheep.expression.arithmetic.Operation;
 import sheep.expression.basic.Constant;
 import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Range;
 import sheep.expression.basic.Reference;
 
 import static org.junit.Assert.*;
@@ -172,4 +174,39 @@ public class CoreFactoryTest {
     public void operatorWithStringOperands() throws InvalidExpression {
         factory.createOperator("+", new Object[]{"1", "2"});
     }
+
+    @Test
+    public void rangeA1B500() throws InvalidExpression {
+        Expression expression = factory.createRange("A1", "B500");
+        if (!(expression instanceof Range range)) {
+            fail("Expression created by createRange is not a Range.");
+            return;
+        }
+        assertEquals("Range has incorrect size.", 1000, range.size());
+        assertEquals("Range has incorrect corners.", "A1:B500", range.render());
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void rangeNotCells() throws InvalidExpression {
+        factory.createRange("A1", "life");
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void rangeTooLarge() throws InvalidExpression {
+        factory.createRange("A0", "ZZ100000");
+    }
+
+    @Test
+    public void rangeArguments() throws InvalidExpression {
+        Expression range = factory.createRange("A1", "A3");
+        for (String name : new String[]{"SUM", "MEAN", "MEDIAN", "+"}) {
+            assertTrue(name + " did not accept a range.",
+                    factory.createOperator(name, new Object[]{range}) instanceof Operation);
+        }
+    }
+
+    @Test(expected = InvalidExpression.class)
+    public void rangeNotAccepted() throws InvalidExpression {
+        factory.createOperator("-", new Object[]{factory.createConstant(1), factory.createRange("A1", "A3")});
+    }
 }
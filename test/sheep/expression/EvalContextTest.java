@@ -0,0 +1,131 @@
+package sheep.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class EvalContextTest {
+    private Map<String, Expression> state;
+    private EvalContext context;
+
+    /**
+     * A context where the cells A0 to A2 occupy slots 0 to 2 and every other identifier is a built-in.
+     */
+    @Before
+    public void setUp() {
+        state = new HashMap<>();
+        state.put("A0", new Constant(4));
+        state.put("A1", new Constant(7));
+        state.put("A2", new Nothing());
+        state.put("ten", new Constant(10));
+        state.put("alias", new Reference("A1"));
+        List<String> cells = List.of("A0", "A1", "A2");
+        context = new EvalContext() {
+            @Override
+            public int slot(String identifier) {
+                return cells.indexOf(identifier);
+            }
+
+            @Override
+            public long valueAt(int slot) throws TypeError {
+                return state.get(cells.get(slot)).value(this);
+            }
+
+            @Override
+            public Map<String, Expression> state() {
+                return state;
+            }
+        };
+    }
+
+    @Test
+    public void testBasic() throws TypeError {
+        assertEquals(3, new Constant(3).value(context));
+        assertEquals(7, new Reference("A1").value(context));
+        assertEquals(10, new Reference("ten").value(context));
+        assertEquals(7, new Reference("alias").value(context));
+    }
+
+    @Test(expected = TypeError.class)
+    public void testNothing() throws TypeError {
+        new Nothing().value(context);
+    }
+
+    @Test(expected = TypeError.class)
+    public void testReferenceToNothing() throws TypeError {
+        new Reference("A2").value(context);
+    }
+
+    @Test(expected = TypeError.class)
+    public void testUnknownReference() throws TypeError {
+        new Reference("unknown").value(context);
+    }
+
+    /**
+     * Every operation gives the same number as the constant it evaluates to.
+     */
+    @Test
+    public void testOperationsMatchState() throws TypeError {
+        Expression[] arguments = {new Reference("A1"), new Reference("A0"), new Constant(2), new Reference("ten")};
+        for (String operator : new String[]{"+", "-", "*", "/", "<", "=", "MEAN", "MEDIAN", ",", ""}) {
+            Operation operation = Operation.build(operator, arguments);
+            assertEquals(operator, operation.value(state).value(), operation.value(context));
+        }
+        Expression[] increasing = {new Constant(1), new Reference("A0"), new Reference("A1")};
+        assertEquals(1, Operation.less(increasing).value(context));
+    }
+
+    /**
+     * Arguments after a failed comparison are still evaluated.
+     */
+    @Test(expected = TypeError.class)
+    public void testLessEvaluatesEveryArgument() throws TypeError {
+        Operation.less(new Expression[]{new Constant(2), new Constant(1), new Reference("A2")}).value(context);
+    }
+
+    /**
+     * Arguments after a division by zero are still evaluated, so a later argument which is not numeric is reported.
+     */
+    @Test(expected = TypeError.class)
+    public void testDivideEvaluatesEveryArgument() throws TypeError {
+        Operation.divide(new Expression[]{new Reference("A0"), new Constant(0), new Reference("A2")}).value(context);
+    }
+
+    /**
+     * References to cells are resolved from their packed reference rather than by decoding their identifier.
+     */
+    @Test
+    public void testReferenceResolvedByPackedReference() throws TypeError {
+        EvalContext packed = new EvalContext() {
+            @Override
+            public int slot(String identifier) {
+                throw new AssertionError("Identifier " + identifier + " was decoded again.");
+            }
+
+            @Override
+            public int slotAt(long reference) {
+                return 1;
+            }
+
+            @Override
+            public long valueAt(int slot) throws TypeError {
+                return context.valueAt(slot);
+            }
+
+            @Override
+            public Map<String, Expression> state() {
+                return state;
+            }
+        };
+        assertEquals(7, new Reference("A1").value(packed));
+    }
+}
@@ -0,0 +1,56 @@
+package sheep.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+import sheep.parsing.ComplexParser;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+
+import static org.junit.Assert.*;
+
+public class InternerTest {
+    private Interner interner;
+
+    @Before
+    public void setUp() {
+        interner = new Interner();
+    }
+
+    @Test
+    public void testInternEqual() {
+        Expression reference = interner.intern(new Reference("A1"));
+        assertSame("Equal references were not interned to the same instance.",
+                reference, interner.intern(new Reference("A1")));
+        assertNotSame("Different references were interned to the same instance.",
+                reference, interner.intern(new Reference("A2")));
+        assertEquals(2, interner.size());
+    }
+
+    @Test
+    public void testInternOperation() {
+        Expression first = interner.intern(Operation.plus(new Expression[]{new Reference("A1"), new Constant(1)}));
+        Expression second = interner.intern(Operation.plus(new Expression[]{new Reference("A1"), new Constant(1)}));
+        assertSame("Structurally equal operations were not interned to the same instance.", first, second);
+        assertNotSame("Operations of different types were interned to the same instance.",
+                first, interner.intern(Operation.minus(new Expression[]{new Reference("A1"), new Constant(1)})));
+    }
+
+    /**
+     * Identical formulas parsed for different cells share a single instance.
+     */
+    @Test
+    public void testInterningFactory() throws ParseException {
+        Parser parser = new ComplexParser(new InterningFactory(new CoreFactory()));
+        Expression first = parser.parse("A1 * 2 + MEAN(B1, 3)");
+        Expression second = parser.parse("A1 * 2 + MEAN(B1, 3)");
+        assertSame(first, second);
+        assertEquals("A1 * 2 + MEAN(B1, 3)", second.render());
+        assertSame(((Operation) parser.parse("MEAN(B1, 3) + A1")).getExpressions().get(0),
+                parser.parse("MEAN(B1, 3)"));
+        assertSame(Nothing.instance(), parser.parse(""));
+    }
+}
@@ -0,0 +1,115 @@
+package sheep.expression;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.arithmetic.Plus;
+import sheep.expression.basic.Constant;
+import sheep.parsing.ComplexParser;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class OptimizingFactoryTest {
+    private Parser parser;
+    private Parser plain;
+    private Map<String, Expression> state;
+
+    @Before
+    public void setUp() {
+        parser = new ComplexParser(new OptimizingFactory(new CoreFactory()));
+        plain = new ComplexParser(new CoreFactory());
+        state = Map.of("A1", new Constant(5), "A2", new Constant(7), "A3", new Constant(-3));
+    }
+
+    private Expression simplified(String formula) throws ParseException {
+        Expression expression = parser.parse(formula);
+        return expression instanceof Simplified simplified ? simplified.simplified() : expression;
+    }
+
+    @Test
+    public void testFoldConstants() throws ParseException {
+        assertEquals("6 + A1", simplified("(2 * 3) + A1").render());
+        assertEquals(new Constant(7), simplified("1 + 2 * 3"));
+        assertEquals(new Constant(2), simplified("MEDIAN(3, 1, 2)"));
+    }
+
+    /**
+     * Simplified formulas still render as they were written, so editing or saving them keeps what was typed.
+     */
+    @Test
+    public void testRenderAsWritten() throws ParseException {
+        String[] formulas = {"MEAN(1, 2, 3)", "(2 * 3) + A1", "1 + A1 + 2 + A2 + 3", "(A1) * 4", "(A1 - A2) * (A1 - A2)"};
+        for (String formula : formulas) {
+            assertEquals("Simplified formula did not render as written.",
+                    plain.parse(formula).render(), parser.parse(formula).render());
+        }
+        assertTrue(parser.parse("MEAN(1, 2, 3)") instanceof Simplified);
+        assertEquals(parser.parse("1 + 2"), parser.parse("1 + 2"));
+        assertNotEquals(parser.parse("1 + 2"), parser.parse("2 + 1"));
+    }
+
+    @Test
+    public void testFlatten() throws InvalidExpression, TypeError {
+        ExpressionFactory factory = new OptimizingFactory(new CoreFactory());
+        Expression sum = factory.createOperator("+", new Object[]{
+                factory.createReference("A1"), factory.createReference("A2")});
+        Expression expression = factory.createOperator("+", new Object[]{
+                factory.createOperator("", new Object[]{sum}), factory.createReference("A3")});
+        assertEquals("(A1 + A2) + A3", expression.render());
+        Expression flat = ((Simplified) expression).simplified();
+        assertEquals("A1 + A2 + A3", flat.render());
+        assertTrue(flat instanceof Plus);
+        assertEquals(3, ((Operation) flat).getExpressions().size());
+        assertEquals(new Constant(9), expression.value(state));
+    }
+
+    @Test
+    public void testCombineConstants() throws ParseException {
+        assertEquals("6 + A1 + A2", simplified("1 + A1 + 2 + A2 + 3").render());
+        assertEquals("A1 * 6", simplified("A1 * 2 * 3").render());
+        assertEquals("2 + A1 + A1", simplified("1 + A1 + 1 + A1").render());
+    }
+
+    /**
+     * Operations that fail are left to fail when evaluated.
+     */
+    @Test
+    public void testNoFoldOnFailure() throws ParseException {
+        assertEquals("1 / 0", parser.parse("1 / 0").render());
+        assertEquals("0 - 42", plain.parse("0 - 42").render());
+        Expression negative = parser.parse("-42");
+        assertTrue(negative instanceof Operation);
+        assertEquals(plain.parse("-42").render(), negative.render());
+    }
+
+    @Test
+    public void testShareSubexpressions() throws ParseException {
+        Operation expression = (Operation) simplified("(A1 - A2) * (A1 - A2)");
+        assertSame(expression.getExpressions().get(0), expression.getExpressions().get(1));
+        assertSame(parser.parse("A1 - A2"), parser.parse("A1 - A2"));
+    }
+
+    /**
+     * Simplified formulas evaluate exactly as the original formulas.
+     */
+    @Test
+    public void testSameValues() throws ParseException, TypeError {
+        String[] formulas = {
+                "(2 * 3) + A1",
+                "(A1 + A2) * 2 * (A3 + 4)",
+                "(A1 - A2) * (A1 - A2) / (1 + 1)",
+                "MEAN(A1, 2 * 2, A3) + MEDIAN(A1, A2, 3 - 1)",
+                "(A1 < A2) + (3 = 3) + (A1)",
+        };
+        for (String formula : formulas) {
+            assertEquals(formula, plain.parse(formula).value(state), parser.parse(formula).value(state));
+            // the rendered formula parses back to an equivalent formula
+            assertEquals(formula, plain.parse(formula).value(state),
+                    plain.parse(parser.parse(formula).render()).value(state));
+        }
+    }
+}
@@ -3,6 +3,7 @@ package sheep.expression;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 
 public class TypeErrorTest {
@@ -41,4 +42,12 @@ public class TypeErrorTest {
         }
         assertEquals("Exception gave incorrect cause.", expected, actual);
     }
+
+    @Test
+    public void throwExceptionNoMessageIsStackless() {
+        assertEquals("Exception without details should not record a stack trace.",
+                0, new TypeError().getStackTrace().length);
+        assertNotEquals("Exception with a message should record a stack trace.",
+                0, new TypeError("Unable to create an expression.").getStackTrace().length);
+    }
 }
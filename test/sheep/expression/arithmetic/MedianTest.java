@@ -5,8 +5,11 @@ import sheep.expression.Expression;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -65,4 +68,44 @@ public class MedianTest {
         long result = arith.perform(new long[]{20, 2, 2, 2});
         assertEquals("Result of performing minus with multiple Constants is incorrect",14, result);
     }
+
+    @Test
+    public void testPerformRange() {
+        Operation arith = new Median(new Expression[]{new Constant(20)});
+        long[] values = new long[]{100, 9, 1, 5, -100};
+        assertEquals("Result of performing median over part of an array is incorrect.",
+                5, arith.perform(values, 1, 4));
+        assertEquals("Performing median over part of an array modified values outside the range.",
+                100, values[0]);
+        assertEquals("Performing median over part of an array modified values outside the range.",
+                -100, values[4]);
+    }
+
+    @Test
+    public void testPerformLeavesArguments() {
+        Operation median = new Median(new Expression[]{new Constant(20)});
+        long[] values = new long[]{9, 1, 5, 3};
+        assertEquals("Result of performing median over an even number of values is incorrect.",
+                4, median.perform(values));
+        assertArrayEquals("Performing median reordered its arguments.", new long[]{9, 1, 5, 3}, values);
+    }
+
+    @Test
+    public void testSelectionMatchesSorting() {
+        Operation median = new Median(new Expression[]{new Constant(20)});
+        Random random = new Random(3);
+        for (int length = 1; length < 300; length++) {
+            long[] values = new long[length];
+            for (int i = 0; i < length; i++) {
+                // few distinct values exercise partitioning around repeated pivots
+                values[i] = length % 2 == 0 ? random.nextInt(5) : random.nextLong() / 4;
+            }
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            long expected = length % 2 == 0
+                    ? (sorted[length / 2 - 1] + sorted[length / 2]) / 2
+                    : sorted[length / 2];
+            assertEquals("Median of " + length + " values is incorrect.", expected, median.perform(values));
+        }
+    }
 }
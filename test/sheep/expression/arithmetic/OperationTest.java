@@ -2,6 +2,7 @@ package sheep.expression.arithmetic;
 
 import org.junit.Before;
 import org.junit.Test;
+import sheep.core.ReferenceCodec;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
@@ -11,6 +12,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.*;
 
@@ -176,4 +178,34 @@ public class OperationTest {
     public void testValue() throws TypeError {
         base.value();
     }
+
+    @Test
+    public void testEquals() {
+        Expression[] arguments = {new Reference("A1"), new Constant(2)};
+        Operation plus = Operation.plus(arguments);
+        assertEquals("Operations with equal arguments are not evaluated as equal to each other.",
+                Operation.plus(new Expression[]{new Reference("A1"), new Constant(2)}), plus);
+        assertEquals("Equal operations have different hash codes.",
+                Operation.plus(new Expression[]{new Reference("A1"), new Constant(2)}).hashCode(), plus.hashCode());
+        assertNotEquals("Operations of different types are evaluated as equal to each other.",
+                Operation.times(arguments), plus);
+        assertNotEquals("Operations with arguments in a different order are evaluated as equal to each other.",
+                Operation.plus(new Expression[]{new Constant(2), new Reference("A1")}), plus);
+        assertEquals("Nested operations are not compared structurally.",
+                Operation.identity(new Expression[]{Operation.plus(arguments)}),
+                Operation.identity(new Expression[]{plus}));
+    }
+
+    @Test
+    public void testReferences() {
+        Operation operation = Operation.plus(new Expression[]{
+                Operation.times(new Expression[]{new Reference("B2"), new Reference("A1")}),
+                new Reference("life"),
+                Operation.minus(new Expression[]{new Reference("A1"), new Reference("C0"), new Constant(1)})});
+        assertArrayEquals("Operation did not merge the references of its arguments.",
+                new long[]{ReferenceCodec.pack(0, 2), ReferenceCodec.pack(1, 0), ReferenceCodec.pack(2, 1)},
+                operation.references());
+        assertEquals(Set.of("A1", "B2", "C0", "life"), operation.dependencies());
+        assertSame("Dependencies are not cached.", operation.dependencies(), operation.dependencies());
+    }
 }
@@ -0,0 +1,87 @@
+package sheep.expression.arithmetic;
+
+import java.util.SplittableRandom;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures the reductions of {@link Reductions} against the plain loops they replace,
+ * which is how their thresholds were chosen.
+ * <p>
+ * Each reduction is run over runs of numbers of increasing length,
+ * after warming up long enough for the JIT to compile the loops,
+ * and the best time per number of several rounds is printed.
+ * The numbers are only a guide, they depend upon the machine and JVM:
+ * <pre>
+ * {@code
+ * java -cp <classes>:<test classes> sheep.expression.arithmetic.ReductionsBenchmark
+ * }</pre>
+ * This is not a test, it is not run with the tests.
+ */
+public final class ReductionsBenchmark {
+    private static final int[] LENGTHS = {16, 64, 256, 4096};
+    private static final int ROUNDS = 10;
+    private static final long NUMBERS_PER_ROUND = 20_000_000;
+
+    // consumed so that the JIT cannot discard the reductions
+    private static long sink = 0;
+
+    private ReductionsBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        for (int length : LENGTHS) {
+            long[] values = new SplittableRandom(length).longs(length, 1, 4).toArray();
+            System.out.printf("%5d numbers: sum %.2f ns, unrolled sum %.2f ns, "
+                            + "plain product %.2f ns, product %.2f ns per number%n", length,
+                    measure(values, numbers -> Reductions.sum(numbers, 0, numbers.length)),
+                    measure(values, ReductionsBenchmark::unrolledSum),
+                    measure(values, ReductionsBenchmark::plainProduct),
+                    measure(values, numbers -> Reductions.product(numbers, 0, numbers.length)));
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * The best time per number taken by a reduction over several rounds, in nanoseconds.
+     */
+    private static double measure(long[] values, ToLongFunction<long[]> reduction) {
+        long repeats = NUMBERS_PER_ROUND / values.length;
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (long i = 0; i < repeats; i++) {
+                sink += reduction.applyAsLong(values);
+            }
+            best = Math.min(best, (double) (System.nanoTime() - start) / (repeats * values.length));
+        }
+        return best;
+    }
+
+    private static long unrolledSum(long[] values) {
+        long first = 0;
+        long second = 0;
+        long third = 0;
+        long fourth = 0;
+        int i = 0;
+        for (; i + 3 < values.length; i += 4) {
+            first += values[i];
+            second += values[i + 1];
+            third += values[i + 2];
+            fourth += values[i + 3];
+        }
+        for (; i < values.length; i++) {
+            first += values[i];
+        }
+        return first + second + third + fourth;
+    }
+
+    private static long plainProduct(long[] values) {
+        long result = 1;
+        for (long value : values) {
+            result *= value;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,58 @@
+package sheep.expression.arithmetic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReductionsTest {
+    private static long[] random(Random random, int length, int bound) {
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = bound == 0 ? random.nextLong() : random.nextInt(bound);
+        }
+        return values;
+    }
+
+    @Test
+    public void testSumMatchesLoop() {
+        Random random = new Random(1);
+        for (int length = 0; length < 200; length++) {
+            long[] values = random(random, length, 0);
+            long expected = 0;
+            for (long value : values) {
+                expected += value;
+            }
+            assertEquals("Sum of " + length + " numbers", expected, Reductions.sum(values, 0, length));
+        }
+    }
+
+    @Test
+    public void testProductMatchesLoop() {
+        Random random = new Random(2);
+        for (int length = 0; length < 200; length++) {
+            long[] values = random(random, length, 0);
+            long expected = 1;
+            for (long value : values) {
+                expected *= value;
+            }
+            assertEquals("Product of " + length + " numbers", expected, Reductions.product(values, 0, length));
+        }
+    }
+
+    @Test
+    public void testSubrange() {
+        long[] values = new long[100];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1;
+        }
+        assertEquals("Sum of part of an array", (11 + 90) * 40, Reductions.sum(values, 10, 90));
+        long expected = 1;
+        for (int i = 5; i < 95; i++) {
+            expected *= values[i];
+        }
+        assertEquals("Product of part of an array", expected, Reductions.product(values, 5, 95));
+        assertEquals("Product of nothing", 1, Reductions.product(values, 5, 5));
+    }
+}
@@ -0,0 +1,58 @@
+package sheep.expression.arithmetic;
+
+import org.junit.Test;
+import sheep.core.ReferenceCodec;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Range;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SumTest {
+    private static final Range COLUMN = new Range(ReferenceCodec.pack(0, 0), ReferenceCodec.pack(2, 0));
+
+    private static Map<String, Expression> column() {
+        Map<String, Expression> state = new HashMap<>();
+        state.put("A0", new Constant(5));
+        state.put("A1", new Constant(9));
+        state.put("A2", new Constant(1));
+        return state;
+    }
+
+    @Test
+    public void testValue() throws TypeError {
+        Operation sum = Operation.sum(new Expression[]{new Constant(20), new Constant(10), new Constant(-4)});
+        assertEquals("Result of sum is incorrect.", new Constant(26), sum.value(new HashMap<>()));
+        assertEquals("Sum did not render as a function.", "SUM(20, 10, -4)", sum.render());
+    }
+
+    @Test
+    public void testRange() throws TypeError {
+        Operation sum = Operation.sum(new Expression[]{COLUMN, new Constant(100)});
+        assertEquals("Result of sum over a range is incorrect.", new Constant(115), sum.value(column()));
+        assertEquals("SUM(A0:A2, 100)", sum.render());
+    }
+
+    /**
+     * Mean, median and plus treat a range as if its cells had been listed.
+     */
+    @Test
+    public void testRangeAggregates() throws TypeError {
+        assertEquals(new Constant(5), Operation.mean(new Expression[]{COLUMN}).value(column()));
+        assertEquals(new Constant(5), Operation.median(new Expression[]{COLUMN}).value(column()));
+        assertEquals(new Constant(6), Operation.median(new Expression[]{COLUMN, new Constant(7)}).value(column()));
+        assertEquals(new Constant(16), Operation.plus(new Expression[]{new Constant(1), COLUMN}).value(column()));
+    }
+
+    /**
+     * Operations that do not accept ranges cannot evaluate them.
+     */
+    @Test(expected = TypeError.class)
+    public void testRangeNotAccepted() throws TypeError {
+        Operation.times(new Expression[]{COLUMN, new Constant(2)}).value(column());
+    }
+}
@@ -79,4 +79,12 @@ public class ConstantTest {
         assertEquals(same, same.value(new HashMap<>()));
         assertEquals(base, same.value(new HashMap<>()));
     }
+
+    @Test
+    public void testOf() {
+        assertEquals("Constant.of did not store the given value.", base, Constant.of(24));
+        assertSame("Small constants are not shared.", Constant.of(24), Constant.of(24));
+        assertSame("Small negative constants are not shared.", Constant.of(-1), Constant.of(-1));
+        assertEquals("Constant.of did not store a large value.", 1L << 40, Constant.of(1L << 40).getValue());
+    }
 }
@@ -0,0 +1,48 @@
+package sheep.expression.basic;
+
+import org.junit.Test;
+import sheep.expression.CellError;
+import sheep.expression.TypeError;
+
+import java.util.HashMap;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ErrorValueTest {
+    @Test
+    public void testDependencies() {
+        assertEquals("Errors should not have dependencies.", Set.of(), ErrorValue.TYPE.dependencies());
+        assertArrayEquals("Errors should not reference cells.", new long[0], ErrorValue.DIV0.references());
+    }
+
+    @Test
+    public void testRender() {
+        assertEquals("Type error did not render its name.", "#TYPE", ErrorValue.TYPE.render());
+        assertEquals("Division error did not render its name.", "#DIV0", ErrorValue.DIV0.render());
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("ErrorValue.toString did not return correct representation.",
+                "ERROR(#DIV0)", ErrorValue.DIV0.toString());
+    }
+
+    @Test
+    public void testValueMap() {
+        assertSame("An error should evaluate to itself.", ErrorValue.TYPE, ErrorValue.TYPE.value(new HashMap<>()));
+    }
+
+    @Test
+    public void testValueCarriesError() {
+        try {
+            ErrorValue.DIV0.value();
+            fail("Reading the value of an error should throw.");
+        } catch (CellError e) {
+            assertSame("Thrown exception should carry the error.", ErrorValue.DIV0, e.getError());
+            assertEquals("Thrown exception should not record a stack trace.", 0, e.getStackTrace().length);
+        } catch (TypeError e) {
+            fail("Reading the value of an error should throw a CellError.");
+        }
+    }
+}
@@ -42,4 +42,12 @@ public class NothingTest {
     public void testValueState() throws TypeError {
         assertEquals(base, base.value(new HashMap<>()));
     }
+
+    @Test
+    public void testEquals() {
+        assertEquals("Empty expressions are not evaluated as equal to each other.", new Nothing(), base);
+        assertEquals("Equal empty expressions have different hash codes.", new Nothing().hashCode(), base.hashCode());
+        assertNotEquals("An empty expression is evaluated as equal to a constant.", new Constant(0), base);
+        assertSame("Nothing.instance did not return a shared instance.", Nothing.instance(), Nothing.instance());
+    }
 }
@@ -0,0 +1,93 @@
+package sheep.expression.basic;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.core.ReferenceCodec;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RangeTest {
+    private Range base;
+    private Map<String, Expression> state;
+
+    @Before
+    public void setUp() {
+        // written from the bottom right corner to check the corners are normalised
+        base = new Range(ReferenceCodec.pack(2, 1), ReferenceCodec.pack(1, 0));
+        state = new HashMap<>();
+        state.put("A1", new Constant(1));
+        state.put("B1", new Constant(2));
+        state.put("A2", new Constant(3));
+        state.put("B2", new Reference("A1"));
+    }
+
+    @Test
+    public void testRender() {
+        assertEquals("Range did not render its corners.", "A1:B2", base.render());
+        assertEquals("Range.toString did not return correct representation.", "RANGE(A1:B2)", base.toString());
+    }
+
+    @Test
+    public void testSize() {
+        assertEquals("Range has incorrect number of cells.", 4, base.size());
+        assertEquals(4, Range.cells(ReferenceCodec.pack(2, 1), ReferenceCodec.pack(1, 0)));
+        assertEquals(1000, Range.cells(ReferenceCodec.pack(1, 0), ReferenceCodec.pack(1000, 0)));
+    }
+
+    @Test
+    public void testDependencies() {
+        Set<String> dependencies = base.dependencies();
+        assertEquals("Range has incorrect dependencies.", Set.of("A1", "B1", "A2", "B2"), dependencies);
+        assertEquals(List.of("A1", "B1", "A2", "B2"), List.copyOf(dependencies));
+        assertTrue(dependencies.contains("B2"));
+        assertFalse(dependencies.contains("C2"));
+        assertFalse(dependencies.contains("A01"));
+    }
+
+    @Test
+    public void testReferences() {
+        assertArrayEquals("Cells of a range are not individual references.", new long[0], base.references());
+        assertArrayEquals("Range has incorrect corners.",
+                new long[]{ReferenceCodec.pack(1, 0), ReferenceCodec.pack(2, 1)}, base.ranges());
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals("Ranges covering the same cells are not equal.",
+                new Range(ReferenceCodec.pack(1, 0), ReferenceCodec.pack(2, 1)), base);
+        assertEquals(new Range(ReferenceCodec.pack(1, 0), ReferenceCodec.pack(2, 1)).hashCode(), base.hashCode());
+        assertNotEquals("Ranges covering different cells are equal.",
+                new Range(ReferenceCodec.pack(1, 0), ReferenceCodec.pack(2, 2)), base);
+    }
+
+    @Test
+    public void testValueState() {
+        assertSame("A range on its own did not evaluate to itself.", base, base.value(state));
+    }
+
+    @Test(expected = TypeError.class)
+    public void testValue() throws TypeError {
+        base.value();
+    }
+
+    @Test
+    public void testFill() throws TypeError {
+        long[] values = new long[6];
+        assertEquals(5, base.fill(state, values, 1));
+        assertArrayEquals("Range did not read its cells in row-major order.",
+                new long[]{0, 1, 2, 3, 1, 0}, values);
+    }
+
+    @Test(expected = TypeError.class)
+    public void testFillMissingCell() throws TypeError {
+        state.remove("B2");
+        base.fill(state, new long[4], 0);
+    }
+}
@@ -2,6 +2,7 @@ package sheep.expression.basic;
 
 import org.junit.Before;
 import org.junit.Test;
+import sheep.core.ReferenceCodec;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 
@@ -111,4 +112,14 @@ public class ReferenceTest {
         assertEquals(nothing, same.value(state));
         assertEquals(nothing, same.value(state));
     }
+
+    @Test
+    public void testReferences() {
+        assertArrayEquals("Reference did not resolve the cell it references.",
+                new long[]{ReferenceCodec.pack(1, 0)}, other.references());
+        assertArrayEquals("Reference to a built-in resolved to a cell.",
+                new long[0], new Reference("life").references());
+        assertArrayEquals("Reference with a leading zero resolved to a cell.",
+                new long[0], new Reference("A01").references());
+    }
 }
@@ -0,0 +1,58 @@
+package sheep.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.Expression;
+
+import static org.junit.Assert.*;
+
+public class CachingParserTest {
+    private CachingParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new CachingParser(new PrattParser(new EchoFactory()), 2);
+    }
+
+    @Test
+    public void testRepeatedInputShared() throws ParseException {
+        Expression first = parser.parse("A1 + 1");
+        assertSame("Parsing the same input twice did not return the cached expression.",
+                first, parser.parse("A1 + 1"));
+        assertEquals("Repeated input was not counted as a hit.", 1, parser.hits());
+        assertEquals("First parse was not counted as a miss.", 1, parser.misses());
+    }
+
+    @Test
+    public void testResult() throws ParseException {
+        assertEquals("Caching changed the parsed expression.",
+                "(Operator: + [(Reference: A1), (Constant: 1)])", parser.parse("A1 + 1").toString());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws ParseException {
+        Expression a = parser.parse("1");
+        parser.parse("2");
+        parser.parse("1");
+        parser.parse("3");
+        assertEquals("Cache grew beyond its capacity.", 2, parser.size());
+        assertSame("Recently used input was evicted.", a, parser.parse("1"));
+        assertEquals(2, parser.hits());
+        parser.parse("2");
+        assertEquals("Least recently used input was not evicted.", 4, parser.misses());
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        for (int i = 0; i < 2; i++) {
+            try {
+                parser.parse("(1 + 2");
+                fail("Unmatched parenthesis did not throw ParseException.");
+            } catch (ParseException ignored) {
+                // expected
+            }
+        }
+        assertEquals("Failed input was cached.", 0, parser.size());
+        assertEquals("Failed input was counted as a hit.", 0, parser.hits());
+    }
+}
@@ -186,4 +186,78 @@ public class ComplexScannerTest {
         assertEquals("func1", tokens.get(0).name());
         assertEquals("func2(2+3)", tokens.get(0).contents());
     }
-}
\ No newline at end of file
+
+    ///////////////////////////////////////////////////
+    // Scan Tests
+    ///////////////////////////////////////////////////
+    @Test
+    public void testScanOffsets() {
+        String input = "SUM(A1:B2, 12) * x";
+        ComplexScanner.Tokens tokens = ComplexScanner.scan(input);
+        int[] types = {ComplexScanner.Tokens.WORD, ComplexScanner.Tokens.OPEN, ComplexScanner.Tokens.WORD,
+                ComplexScanner.Tokens.OPERATOR, ComplexScanner.Tokens.NUMBER, ComplexScanner.Tokens.CLOSE,
+                ComplexScanner.Tokens.OPERATOR, ComplexScanner.Tokens.WORD};
+        String[] texts = {"SUM", "(", "A1:B2", ",", "12", ")", "*", "x"};
+        assertEquals("Scanning did not produce every token.", types.length, tokens.count());
+        for (int i = 0; i < types.length; i++) {
+            assertEquals("Token " + i + " has the wrong type.", types[i], tokens.type(i));
+            assertEquals("Token " + i + " has the wrong text.", texts[i], tokens.text(i));
+            assertEquals("Token " + i + " does not refer to its text within the input.",
+                    texts[i], input.substring(tokens.start(i), tokens.end(i)));
+        }
+        assertEquals("Number token has the wrong value.", 12, tokens.number(4));
+        assertEquals("Operator token has the wrong character.", '*', tokens.character(6));
+    }
+
+    @Test
+    public void testScanNegativeNumbers() {
+        ComplexScanner.Tokens tokens = ComplexScanner.scan("-42 * (-7)");
+        assertEquals(5, tokens.count());
+        assertEquals(ComplexScanner.Tokens.NUMBER, tokens.type(0));
+        assertEquals("Leading minus sign is not part of the number.", -42, tokens.number(0));
+        assertEquals(ComplexScanner.Tokens.NUMBER, tokens.type(3));
+        assertEquals("Minus sign after a parenthesis is not part of the number.", -7, tokens.number(3));
+        tokens = ComplexScanner.scan("- 42 * ( -\t7)");
+        assertEquals("Spaced minus sign was not scanned as part of the number.", 5, tokens.count());
+        assertEquals(-42, tokens.number(0));
+        assertEquals(-7, tokens.number(3));
+    }
+
+    @Test
+    public void testScanSubtraction() {
+        ComplexScanner.Tokens tokens = ComplexScanner.scan("3 -42");
+        assertEquals(3, tokens.count());
+        assertEquals("Minus sign after an operand is not an operator.",
+                ComplexScanner.Tokens.OPERATOR, tokens.type(1));
+        assertEquals(42, tokens.number(2));
+    }
+
+    @Test
+    public void testScanNumberLimits() {
+        ComplexScanner.Tokens tokens = ComplexScanner.scan("-9223372036854775808, 9223372036854775808");
+        assertEquals(3, tokens.count());
+        assertEquals(ComplexScanner.Tokens.NUMBER, tokens.type(0));
+        assertEquals("Smallest long was not scanned.", Long.MIN_VALUE, tokens.number(0));
+        assertEquals("Number too large for a long is not a word.", ComplexScanner.Tokens.WORD, tokens.type(2));
+    }
+
+    @Test
+    public void testScanReusesBuffer() {
+        ComplexScanner.Tokens tokens = new ComplexScanner.Tokens();
+        tokens.scan("a + b + c + d + e + f + g + h + i + j");
+        assertSame("Scanning did not return the same buffer.", tokens, tokens.scan("x"));
+        assertEquals("Previous tokens remain after scanning again.", 1, tokens.count());
+        assertEquals("x", tokens.text(0));
+    }
+
+    @Test
+    public void testScanMatchesTokenize() throws ParseException {
+        String input = "1 + A2 * 30";
+        ComplexScanner.Tokens tokens = ComplexScanner.scan(input);
+        List<ComplexScanner.Token> expected = ComplexScanner.tokenize(input);
+        assertEquals(expected.size(), tokens.count());
+        for (int i = 0; i < tokens.count(); i++) {
+            assertEquals("Scanned token does not match the tokenized token.", expected.get(i), tokens.token(i));
+        }
+    }
+}
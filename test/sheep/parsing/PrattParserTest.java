@@ -0,0 +1,164 @@
+package sheep.parsing;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+
+import static org.junit.Assert.assertEquals;
+
+public class PrattParserTest {
+    private PrattParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new PrattParser(new EchoFactory());
+    }
+
+    private String parse(String input) throws ParseException {
+        return parser.parse(input).toString();
+    }
+
+    @Test
+    public void testNothing() throws ParseException {
+        assertEquals("Parsing an empty string did not return result of createEmpty().", "(Empty)", parse(""));
+        assertEquals("Parsing whitespace did not return result of createEmpty().", "(Empty)", parse("\t    "));
+    }
+
+    @Test
+    public void testConstant() throws ParseException {
+        assertEquals("Parsing a constant surrounded by whitespace did not return result of createConstant(long).",
+                "(Constant: 42)", parse("  42\t"));
+        assertEquals("Parsing multiple zeros did not return result of createConstant(long).",
+                "(Constant: 0)", parse("00000"));
+    }
+
+    @Test
+    public void testConstantNegative() throws ParseException {
+        assertEquals("Parsing a negative constant did not return result of createConstant(long).",
+                "(Constant: -42)", parse("-42"));
+        assertEquals("Parsing the smallest constant did not return result of createConstant(long).",
+                "(Constant: " + Long.MIN_VALUE + ")", parse(String.valueOf(Long.MIN_VALUE)));
+        assertEquals("Parsing a negative constant as an operand did not return result of createConstant(long).",
+                "(Operator: - [(Constant: 3), (Constant: -2)])", parse("3 - -2"));
+    }
+
+    @Test
+    public void testConstantNegativeSpace() throws ParseException {
+        assertEquals("Parsing a negative constant with whitespace did not return result of createConstant(long).",
+                "(Constant: -42)", parse("- 42"));
+        assertEquals("Spacing a negative constant from its sign changed how it was parsed.",
+                parse("3 * -2"), parse("3 * - 2"));
+        assertEquals("Parsing a negated reference with whitespace did not subtract it from nothing.",
+                "(Operator: - [(Empty), (Reference: A2)])", parse("- A2"));
+    }
+
+    @Test
+    public void testNegation() throws ParseException {
+        assertEquals("Parsing a negated reference did not subtract it from nothing.",
+                "(Operator: - [(Empty), (Reference: A2)])", parse("   -A2"));
+    }
+
+    @Test
+    public void testReference() throws ParseException {
+        assertEquals("Parsing a reference string did not return result of createReference.",
+                "(Reference: A0)", parse("A0"));
+        assertEquals("Parsing a reference string with whitespace did not return result of createReference.",
+                "(Reference: OO)", parse("   OO  "));
+        assertEquals("Parsing something that is not a whole number did not return result of createReference.",
+                "(Reference: 42.0)", parse("42.0"));
+    }
+
+    @Test
+    public void testArithmetic() throws ParseException {
+        assertEquals("Parsing addition expression with whitespace did not return result of createOperator.",
+                "(Operator: + [(Constant: 3), (Constant: 20), (Constant: 12), (Constant: 100)])",
+                parse("3+ 20 +12+ 100"));
+        assertEquals("Parsing multiplication expression did not return result of createOperator.",
+                "(Operator: * [(Constant: 3), (Constant: 20), (Constant: 12), (Constant: 100)])",
+                parse("3* 20 *12* 100"));
+    }
+
+    @Test
+    public void testArithmeticNested() throws ParseException {
+        assertEquals("Parsing mixed expression did not respect the precedence of operators.",
+                "(Operator: + [(Operator: - [(Operator: * [(Constant: 3), (Constant: 2), (Constant: 20)]), "
+                        + "(Operator: / [(Constant: 2), (Constant: 15)])]), "
+                        + "(Operator: * [(Constant: 12), (Constant: 100)])])",
+                parse("3* 2 * 20 - 2/15 +12* 100"));
+        assertEquals("Parsing comparisons did not bind more loosely than arithmetic.",
+                "(Operator: = [(Operator: < [(Reference: A1), (Operator: + [(Constant: 1), (Constant: 2)])]), "
+                        + "(Constant: 1)])",
+                parse("A1 < 1 + 2 = 1"));
+    }
+
+    @Test
+    public void testParentheses() throws ParseException {
+        assertEquals("Parsing parenthesised empty expressions did not return result of createOperator.",
+                "(Operator:  [(Operator: + [(Operator:  [(Empty)]), (Operator:  [(Empty)])])])",
+                parse("(()+())"));
+        assertEquals("Parsing parentheses did not override precedence.",
+                "(Operator: * [(Operator:  [(Operator: + [(Reference: A1), (Reference: A2)])]), (Constant: 2)])",
+                parse("(A1 + A2) * 2"));
+    }
+
+    @Test
+    public void testFunctions() throws ParseException {
+        assertEquals("Parsing functions did not return result of createOperator.",
+                "(Operator: + [(Operator: MEAN [(Operator:  [(Constant: 5), (Constant: 5)])]), "
+                        + "(Operator: MEDIAN [(Constant: 5), (Constant: 5)])])",
+                parse("MEAN((5,5))+MEDIAN(5,5)"));
+        assertEquals("Parsing a function with nested arguments did not return result of createOperator.",
+                "(Operator: SUM [(Operator: + [(Reference: A1), (Constant: 1)]), (Operator: MEAN [(Constant: 2)])])",
+                parse("SUM(A1 + 1, MEAN(2))"));
+    }
+
+    @Test
+    public void testList() throws ParseException {
+        assertEquals("Parsing a list did not return result of createOperator.",
+                "(Operator: , [(Constant: 3), (Operator: + [(Constant: 2), (Constant: 5)]), (Constant: 8)])",
+                parse("3, 2 + 5, 8"));
+    }
+
+    @Test
+    public void testRange() throws ParseException {
+        Parser core = new PrattParser(new CoreFactory());
+        assertEquals("Parsing a range did not return result of createRange.",
+                "SUM(A1:B3)", core.parse("SUM(A1:B3)").render());
+    }
+
+    @Test
+    public void testRoundTrip() throws ParseException {
+        Parser core = new PrattParser(new CoreFactory());
+        for (String formula : new String[]{"A1 + A2 * 3", "(A1 + A2) * 3", "MEAN(A1, 2, MEDIAN(B1:B9))", "1 < 2 = 1"}) {
+            Expression expression = core.parse(formula);
+            assertEquals("Parsing the rendered formula did not return an equal expression.",
+                    expression, core.parse(expression.render()));
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testUnmatchedOpen() throws ParseException {
+        parse("(A1 + 2");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testUnmatchedClose() throws ParseException {
+        parse("A1 + 2)");
+    }
+
+    @Test(expected = ParseException.class)
+    public void testMissingOperator() throws ParseException {
+        parse("A1 A2");
+    }
+
+    @Test
+    public void testLongFormula() throws ParseException {
+        StringBuilder formula = new StringBuilder("A1");
+        for (int i = 2; i <= 100000; i++) {
+            formula.append(" + A").append(i);
+        }
+        Expression expression = new PrattParser(new CoreFactory()).parse(formula.toString());
+        assertEquals("Parsing a long sum did not include every operand.", 100000, expression.dependencies().size());
+    }
+}
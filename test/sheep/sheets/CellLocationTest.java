@@ -289,4 +289,27 @@ public class CellLocationTest {
                 "F10", cell.toString());
     }
 
+    /**
+     * Assert that the toString of cells beyond column Z use multiple letters.
+     */
+    @Test
+    public void testToStringMultipleLetters() {
+        assertEquals("toString did not return the correct representation of the cell location.",
+                "AA3", new CellLocation(3, 26).toString());
+        assertEquals("toString did not return the correct representation of the cell location.",
+                "ZZ0", new CellLocation(0, 701).toString());
+        assertEquals("toString did not return the correct representation of the cell location.",
+                "AAA12", new CellLocation(12, 702).toString());
+    }
+
+    /**
+     * Assert that references with multiple column letters are parsed.
+     */
+    @Test
+    public void testMaybeReferenceMultipleLetters() {
+        assertEquals(Optional.of(new CellLocation(2, 27)), CellLocation.maybeReference("AB2"));
+        assertEquals(Optional.of(new CellLocation(0, 18277)), CellLocation.maybeReference("ZZZ0"));
+        assertEquals(Optional.empty(), CellLocation.maybeReference("AAAA1"));
+        assertEquals(Optional.empty(), CellLocation.maybeReference("A99999999999"));
+    }
 }
@@ -0,0 +1,135 @@
+package sheep.sheets;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import sheep.expression.Expression;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+
+import static org.junit.Assert.*;
+
+public class ColumnAggregatesTest {
+    private CellStore cells;
+    private ColumnAggregates aggregates;
+
+    @Before
+    public void setUp() {
+        cells = new DenseCellStore(Nothing.instance(), 20, 3);
+        aggregates = cells.aggregates();
+    }
+
+    @Test
+    public void testUntracked() {
+        assertFalse("Columns should not be tracked until requested", aggregates.isTracked(0, 0, 19));
+        cells.setValue(cells.slot(0, 0), new Constant(5));
+        aggregates.retain(0, 0, 19, 0);
+        assertTrue("Column should be tracked", aggregates.isTracked(0, 0, 19));
+        assertFalse("Other columns should not be tracked", aggregates.isTracked(1, 0, 19));
+    }
+
+    @Test
+    public void testOnlyRangeRowsTracked() {
+        for (int row = 0; row < 20; row++) {
+            cells.setValue(cells.slot(row, 0), new Constant(row));
+        }
+        aggregates.retain(5, 0, 8, 0);
+        assertTrue("Rows of the range should be tracked", aggregates.isTracked(0, 5, 8));
+        assertFalse("Rows outside the range should not be tracked", aggregates.isTracked(0, 4, 8));
+        assertEquals("Sum of the range", 5 + 6 + 7 + 8, aggregates.sum(0, 5, 8));
+        cells.setValue(cells.slot(2, 0), new Constant(100));
+        aggregates.retain(1, 0, 3, 0);
+        assertTrue("Tracked rows should widen to cover both ranges", aggregates.isTracked(0, 1, 8));
+        assertEquals("Sum across both ranges", 1 + 100 + 3 + 4 + 5, aggregates.sum(0, 1, 5));
+        cells.setValue(cells.slot(8, 0), new Constant(0));
+        assertEquals("Sum after replacing a tracked cell", 5 + 6 + 7, aggregates.sum(0, 5, 8));
+    }
+
+    @Test
+    public void testReleased() {
+        aggregates.retain(0, 0, 9, 1);
+        aggregates.retain(0, 1, 9, 1);
+        aggregates.release(0, 0, 9, 1);
+        assertFalse("Column without ranges should no longer be tracked", aggregates.isTracked(0, 0, 9));
+        assertTrue("Column still used by a range should be tracked", aggregates.isTracked(1, 0, 9));
+        aggregates.release(0, 1, 9, 1);
+        assertFalse("Column without ranges should no longer be tracked", aggregates.isTracked(1, 0, 9));
+    }
+
+    @Test
+    public void testOutsideSheetIgnored() {
+        aggregates.retain(10, 2, 100, 50);
+        assertTrue("Part of the range within the sheet should be tracked", aggregates.isTracked(2, 10, 19));
+        aggregates.retain(30, 0, 40, 0);
+        assertFalse("Range below the sheet should not be tracked", aggregates.isTracked(0, 19, 19));
+        aggregates.release(30, 0, 40, 0);
+        aggregates.release(10, 2, 100, 50);
+        assertFalse(aggregates.isTracked(2, 10, 19));
+    }
+
+    @Test
+    public void testTrackExistingValues() {
+        for (int row = 0; row < 20; row++) {
+            cells.setValue(cells.slot(row, 1), new Constant(row));
+        }
+        aggregates.retain(0, 1, 19, 1);
+        assertEquals("Sum of the whole column", 190, aggregates.sum(1, 0, 19));
+        assertEquals("Sum of part of the column", 3 + 4 + 5, aggregates.sum(1, 3, 5));
+        assertEquals("Every cell holds a number", 0, aggregates.irregular(1, 0, 19));
+    }
+
+    @Test
+    public void testIrregular() {
+        aggregates.retain(0, 0, 19, 0);
+        assertEquals("Empty cells are not numbers", 20, aggregates.irregular(0, 0, 19));
+        cells.setValue(cells.slot(4, 0), new Constant(10));
+        assertEquals("Cell now holds a number", 19, aggregates.irregular(0, 0, 19));
+        assertEquals("Sum of the only number", 10, aggregates.sum(0, 0, 19));
+        cells.setValue(cells.slot(4, 0), Nothing.instance());
+        assertEquals("Cell emptied again", 20, aggregates.irregular(0, 0, 19));
+        assertEquals("No numbers remain", 0, aggregates.sum(0, 0, 19));
+    }
+
+    @Test
+    public void testSparseStore() {
+        cells = new SparseCellStore(new Constant(0), 1000, 2);
+        aggregates = cells.aggregates();
+        aggregates.retain(0, 1, 999, 1);
+        cells.setValue(cells.slot(999, 1), new Constant(7));
+        cells.setValue(cells.slot(500, 1), new Constant(-2));
+        assertEquals("Sum of the whole column", 5, aggregates.sum(1, 0, 999));
+        assertEquals("Sum of the last cell", 7, aggregates.sum(1, 999, 999));
+        assertEquals("Default cells are numbers", 0, aggregates.irregular(1, 0, 999));
+    }
+
+    @Test
+    public void testRandomUpdates() {
+        Random random = new Random(23);
+        aggregates.retain(0, 2, 19, 2);
+        Expression[] column = new Expression[20];
+        Arrays.fill(column, Nothing.instance());
+        for (int i = 0; i < 1000; i++) {
+            int row = random.nextInt(20);
+            Expression value = random.nextInt(5) == 0 ? Nothing.instance() : new Constant(random.nextInt(100));
+            cells.setValue(cells.slot(row, 2), value);
+            column[row] = value;
+
+            int top = random.nextInt(20);
+            int bottom = top + random.nextInt(20 - top);
+            long sum = 0;
+            int irregular = 0;
+            for (int r = top; r <= bottom; r++) {
+                if (column[r] instanceof Constant constant) {
+                    sum += constant.getValue();
+                } else {
+                    irregular++;
+                }
+            }
+            assertEquals("Sum of rows " + top + " to " + bottom, sum, aggregates.sum(2, top, bottom));
+            assertEquals("Irregular cells of rows " + top + " to " + bottom,
+                    irregular, aggregates.irregular(2, top, bottom));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package sheep.sheets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DenseCellStoreTest {
+    private CellStore cells;
+
+    @Before
+    public void setUp() {
+        cells = new DenseCellStore(new FormulaExpr("Default"), 4, 3);
+    }
+
+    @Test
+    public void testSlots() {
+        assertEquals(7, cells.slot(2, 1));
+        assertEquals(7, cells.slot("B2"));
+        assertEquals(-1, cells.slot("D2"));
+        assertEquals(-1, cells.slot("B4"));
+        assertEquals(-1, cells.slot("B02"));
+        assertEquals(-1, cells.slot("life"));
+        assertEquals(new CellLocation(2, 1), cells.location(7));
+    }
+
+    @Test
+    public void testSlotsMultipleLetters() {
+        CellStore wide = new DenseCellStore(new FormulaExpr("Default"), 2, 30);
+        assertEquals(57, wide.slot("AB1"));
+        assertEquals(-1, wide.slot("AE1"));
+        assertEquals(-1, wide.slot("AB01"));
+        assertEquals(-1, wide.slot("AB99999999999"));
+        assertEquals(new CellLocation(1, 27), wide.location(57));
+    }
+
+    @Test
+    public void testDefaults() {
+        for (int slot = 0; slot < 12; slot++) {
+            assertEquals(new FormulaExpr("Default"), cells.formula(slot));
+            assertEquals(new FormulaExpr("Default"), cells.value(slot));
+            assertEquals(0, cells.dependantCount(slot));
+        }
+    }
+
+    @Test
+    public void testDependants() {
+        for (int dependant = 1; dependant < 12; dependant++) {
+            cells.addDependant(0, dependant);
+        }
+        assertEquals(11, cells.dependantCount(0));
+
+        cells.removeDependant(0, 5);
+        cells.removeDependant(0, 6);
+        assertEquals(9, cells.dependantCount(0));
+        for (int i = 0; i < cells.dependantCount(0); i++) {
+            int dependant = cells.dependant(0, i);
+            assertTrue(dependant != 5 && dependant != 6);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package sheep.sheets;
+
+import sheep.expression.CoreFactory;
+import sheep.expression.OptimizingFactory;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.parsing.ComplexParser;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+import sheep.parsing.PrattParser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FormulaTemplateTest {
+    private static final int ROWS = 1000;
+
+    private final Parser parser = new ComplexParser(new CoreFactory());
+    private Sheet sheet;
+
+    /**
+     * Fill the first column with the Fibonacci sequence, every formula after the first two being the same template.
+     */
+    @Before
+    public void setUp() {
+        sheet = new SheetBuilder(parser, new Nothing())
+                .includeBuiltIn("ten", new Constant(10))
+                .empty(ROWS, 3);
+        sheet.update(0, 0, "0");
+        sheet.update(1, 0, "1");
+        for (int row = 2; row < ROWS; row++) {
+            sheet.update(row, 0, "A" + (row - 1) + " + A" + (row - 2));
+        }
+    }
+
+    @Test
+    public void testKey() throws ParseException {
+        int[] bounds = new int[4];
+        String key = FormulaTemplate.key(parser.parse("A1 + A0 * 2"), 2, 0, bounds);
+        assertEquals("+(R[-1]C[0],*(R[-2]C[0],2))", key);
+        assertArrayEquals("Bounds of the references were not found.", new int[]{-2, 0, 0, 0}, bounds);
+        assertEquals("Filled formula did not have the same relative form.",
+                key, FormulaTemplate.key(parser.parse("B5 + B4 * 2"), 6, 1, bounds));
+        assertNull("Formula with a built-in was templated.",
+                FormulaTemplate.key(parser.parse("A1 + ten"), 2, 0, bounds));
+        assertNull("Reference was templated.", FormulaTemplate.key(parser.parse("A1"), 2, 0, bounds));
+    }
+
+    @Test
+    public void testFilledColumnShared() {
+        assertEquals("Filled formulas do not share a single template.", 1, sheet.templateCount());
+        long previous = 0;
+        long current = 1;
+        for (int row = 2; row < ROWS; row++) {
+            long next = previous + current;
+            previous = current;
+            current = next;
+        }
+        assertEquals(String.valueOf(current), sheet.valueAt(ROWS - 1, 0).getContent());
+    }
+
+    @Test
+    public void testFormulaAbsolute() throws ParseException {
+        assertEquals("A499 + A498", sheet.formulaAt(500, 0).getContent());
+        assertEquals("A1 + A0", sheet.formulaAt(2, 0).getContent());
+        assertEquals(parser.parse("A699 + A698"), sheet.formulaAt(new CellLocation(700, 0)));
+        String[] lines = sheet.encode().split("\n");
+        assertEquals("A9 + A8||", lines[10]);
+    }
+
+    @Test
+    public void testRecalculated() {
+        sheet.update(0, 0, "1");
+        sheet.update(1, 0, "1");
+        assertEquals("2", sheet.valueAt(2, 0).getContent());
+        assertEquals("89", sheet.valueAt(10, 0).getContent());
+        assertTrue(sheet.usedBy(new CellLocation(997, 0)).contains(new CellLocation(999, 0)));
+    }
+
+    @Test
+    public void testReleased() {
+        sheet.update(1, 1, "A0 + 1");
+        assertEquals(2, sheet.templateCount());
+        for (int row = 2; row < ROWS; row++) {
+            sheet.update(row, 0, "5");
+        }
+        assertEquals("Template of overwritten cells was not released.", 1, sheet.templateCount());
+        assertEquals("5", sheet.valueAt(ROWS - 1, 0).getContent());
+    }
+
+    @Test
+    public void testNotShared() {
+        sheet.update(2, 1, "A1 + ten");
+        sheet.update(3, 1, "A2 + ten");
+        assertEquals("Formulas with built-ins were templated.", 1, sheet.templateCount());
+        assertEquals("11", sheet.valueAt(2, 1).getContent());
+        assertEquals("A2 + ten", sheet.formulaAt(3, 1).getContent());
+    }
+
+    @Test
+    public void testAcrossColumns() {
+        sheet.update(5, 1, "A5 * 2");
+        sheet.update(5, 2, "B5 * 2");
+        assertEquals(2, sheet.templateCount());
+        assertEquals("20", sheet.valueAt(5, 2).getContent());
+        assertEquals("B5 * 2", sheet.formulaAt(5, 2).getContent());
+    }
+
+    /**
+     * Simplified formulas are shared as templates, evaluated simplified and rendered as they were written.
+     */
+    @Test
+    public void testSimplifiedAsWritten() {
+        Sheet optimized = new SheetBuilder(new PrattParser(new OptimizingFactory(new CoreFactory())), new Nothing())
+                .empty(10, 2);
+        for (int row = 0; row < 10; row++) {
+            optimized.update(row, 0, String.valueOf(row));
+            optimized.update(row, 1, "A" + row + " * (2 * 3) + MEAN(1, 2, 3)");
+        }
+        assertEquals("Simplified formulas do not share a single template.", 1, optimized.templateCount());
+        assertEquals("56", optimized.valueAt(9, 1).getContent());
+        assertEquals("A4 * (2 * 3) + MEAN(1, 2, 3)", optimized.formulaAt(4, 1).getContent());
+        assertEquals("7|A7 * (2 * 3) + MEAN(1, 2, 3)", optimized.encode().split("\n")[7]);
+    }
+
+    /**
+     * Cells sharing a template also share its generated method handle.
+     */
+    @Test
+    public void testGeneratedShared() {
+        Sheet generated = new SheetBuilder(parser, new Nothing()).generateHotFormulas(2).empty(ROWS, 1);
+        generated.update(0, 0, "0");
+        generated.update(1, 0, "1");
+        for (int row = 2; row < ROWS; row++) {
+            generated.update(row, 0, "A" + (row - 1) + " + A" + (row - 2));
+        }
+        assertEquals("Generating hot formulas stopped cells sharing templates.", 1, generated.templateCount());
+        for (Sheet recalculated : new Sheet[]{sheet, generated}) {
+            recalculated.update(0, 0, "1");
+            recalculated.update(1, 0, "1");
+            recalculated.update(0, 0, "2");
+        }
+        for (int row = 0; row < ROWS; row++) {
+            assertEquals(sheet.valueAt(row, 0).getContent(), generated.valueAt(row, 0).getContent());
+        }
+        assertEquals("A499 + A498", generated.formulaAt(500, 0).getContent());
+    }
+
+    /**
+     * A rejected update restores the templates of the cells it replaced.
+     */
+    @Test
+    public void testRejectedUpdateRestored() {
+        assertFalse(sheet.update(500, 0, "A499 + C0").isSuccess());
+        assertEquals("Template of the restored cell was dropped.", 1, sheet.templateCount());
+        assertEquals("A499 + A498", sheet.formulaAt(500, 0).getContent());
+        assertTrue("Usages of the restored cell were lost.",
+                sheet.usedBy(new CellLocation(498, 0)).contains(new CellLocation(500, 0)));
+        sheet.update(498, 0, "0");
+        assertEquals(sheet.valueAt(499, 0).getContent(), sheet.valueAt(500, 0).getContent());
+    }
+}
@@ -0,0 +1,77 @@
+package sheep.sheets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrderStatisticTreeTest {
+    private OrderStatisticTree tree;
+
+    @Before
+    public void setUp() {
+        tree = new OrderStatisticTree();
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals("Empty tree has no numbers", 0, tree.size());
+        assertEquals("No numbers are at most anything", 0, tree.countAtMost(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testSelect() {
+        tree.add(5);
+        tree.add(-3);
+        tree.add(5);
+        tree.add(12);
+        assertEquals("Repeated numbers are counted", 4, tree.size());
+        assertEquals("Smallest number", -3, tree.select(0));
+        assertEquals("Repeated number", 5, tree.select(1));
+        assertEquals("Repeated number", 5, tree.select(2));
+        assertEquals("Largest number", 12, tree.select(3));
+        assertEquals("Numbers at most 5", 3, tree.countAtMost(5));
+        assertEquals("Numbers at most 4", 1, tree.countAtMost(4));
+    }
+
+    @Test
+    public void testRemove() {
+        tree.add(1);
+        tree.add(1);
+        tree.remove(1);
+        tree.remove(7);
+        assertEquals("Only one occurrence removed", 1, tree.size());
+        assertEquals("Remaining number", 1, tree.select(0));
+        tree.remove(1);
+        assertEquals("Tree emptied", 0, tree.size());
+    }
+
+    @Test
+    public void testMatchesSortedList() {
+        Random random = new Random(11);
+        List<Long> numbers = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            if (numbers.isEmpty() || random.nextInt(3) > 0) {
+                long number = random.nextInt(50) - 25;
+                numbers.add(number);
+                tree.add(number);
+            } else {
+                long number = numbers.remove(random.nextInt(numbers.size()));
+                tree.remove(number);
+            }
+            numbers.sort(null);
+            assertEquals("Size after " + i + " changes", numbers.size(), tree.size());
+            if (!numbers.isEmpty()) {
+                int rank = random.nextInt(numbers.size());
+                assertEquals("Number at rank " + rank, (long) numbers.get(rank), tree.select(rank));
+            }
+            long bound = random.nextInt(60) - 30;
+            assertEquals("Numbers at most " + bound,
+                    numbers.stream().filter(number -> number <= bound).count(), tree.countAtMost(bound));
+        }
+    }
+}
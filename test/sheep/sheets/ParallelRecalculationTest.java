@@ -0,0 +1,80 @@
+package sheep.sheets;
+
+import sheep.expression.CoreFactory;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Nothing;
+import sheep.parsing.ComplexParser;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ParallelRecalculationTest {
+    private static final int ROWS = 400;
+
+    private ForkJoinPool pool;
+    private Sheet serial;
+    private Sheet parallel;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+        SheetBuilder builder = new SheetBuilder(new ComplexParser(new CoreFactory()), new Nothing());
+        serial = builder.empty(ROWS, 4);
+        parallel = builder.recalculateOn(pool).empty(ROWS, 4);
+        for (Sheet sheet : new Sheet[]{serial, parallel}) {
+            sheet.update(0, 0, "1");
+            for (int row = 0; row < ROWS; row++) {
+                sheet.update(row, 1, "A0 + " + row);
+                sheet.update(row, 2, "B" + row + " * 2");
+                sheet.update(row, 3, "C" + row + " + B" + row + " + A0");
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private void assertSameValues() {
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < 4; column++) {
+                assertEquals("Parallel recalculation differs from serial recalculation.",
+                        serial.valueAt(row, column).getContent(),
+                        parallel.valueAt(row, column).getContent());
+            }
+        }
+    }
+
+    /**
+     * Updating a cell used by every level matches serial recalculation.
+     */
+    @Test
+    public void testMatchesSerial() {
+        assertSameValues();
+        assertTrue(serial.update(0, 0, "7").isSuccess());
+        assertTrue(parallel.update(0, 0, "7").isSuccess());
+        assertSameValues();
+        assertEquals(String.valueOf((7 + 399) * 3 + 7), parallel.valueAt(399, 3).getContent());
+    }
+
+    /**
+     * A type error in any cell of a level leaves the sheet unchanged.
+     */
+    @Test
+    public void testTypeErrorRollsBack() {
+        assertThrows(TypeError.class,
+                () -> parallel.update(new CellLocation(0, 0), new Nothing()));
+        assertEquals("1", parallel.valueAt(0, 0).getContent());
+        assertEquals("1", parallel.formulaAt(0, 0).getContent());
+        assertSameValues();
+
+        assertEquals(serial.update(0, 0, "").getMessage(), parallel.update(0, 0, "").getMessage());
+        assertSameValues();
+    }
+}
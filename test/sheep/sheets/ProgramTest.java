@@ -0,0 +1,244 @@
+package sheep.sheets;
+
+import sheep.expression.CoreFactory;
+import sheep.expression.Expression;
+import sheep.expression.OptimizingFactory;
+import sheep.expression.TypeError;
+import sheep.expression.arithmetic.Operation;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
+import sheep.expression.basic.Reference;
+import sheep.fun.Fibonacci;
+import sheep.fun.FunException;
+import sheep.parsing.ComplexParser;
+import sheep.parsing.ParseException;
+import sheep.parsing.Parser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProgramTest {
+    private final Parser parser = new ComplexParser(new CoreFactory());
+    private CellStore cells;
+    private Map<String, Expression> builtins;
+    private Transaction transaction;
+
+    @Before
+    public void setUp() {
+        builtins = new HashMap<>();
+        builtins.put("ten", new Constant(10));
+        builtins.put("alias", new Reference("A1"));
+        cells = new DenseCellStore(new Nothing(), 5, 3);
+        cells.setValue(cells.slot(0, 0), new Constant(4));
+        cells.setValue(cells.slot(1, 0), new Constant(6));
+        cells.setValue(cells.slot(0, 1), new Constant(9));
+        transaction = new Transaction(cells, builtins);
+    }
+
+    private Program compile(String formula) throws ParseException {
+        return Program.compile(parser.parse(formula), cells, builtins);
+    }
+
+    /**
+     * Compiled formulas produce the same result as evaluating the tree.
+     */
+    @Test
+    public void testMatchesTree() throws ParseException, TypeError {
+        String[] formulas = {
+                "1 + 2 * 3",
+                "A0 + A1 * B0",
+                "(A0 + ten) / 2 - B0",
+                "MEDIAN(A0, B0, A1, ten)",
+                "MEAN(A0, B0, A1) + MEDIAN(3, 1, 2)",
+                "A0 < A1",
+                "A0 = 4",
+        };
+        for (String formula : formulas) {
+            Program program = compile(formula);
+            assertNotNull(formula, program);
+            assertEquals(formula, parser.parse(formula).value(transaction.state()), new Constant(program.run(transaction)));
+            // programs reuse their stack, running again must give the same result
+            assertEquals(formula, parser.parse(formula).value(transaction.state()), new Constant(program.run(transaction)));
+        }
+    }
+
+    /**
+     * Pending values of the transaction are seen by compiled formulas.
+     */
+    @Test
+    public void testReadsTransaction() throws ParseException, TypeError {
+        Program program = compile("A0 * 2");
+        cells.setFormula(cells.slot(2, 2), parser.parse("A0 * 2"));
+        cells.setProgram(cells.slot(2, 2), program);
+        transaction.put(cells.slot(0, 0), new Constant(21));
+        assertEquals(42, program.run(transaction));
+        assertEquals(new Constant(42), transaction.evaluate(cells.slot(2, 2)));
+    }
+
+    @Test(expected = TypeError.class)
+    public void testEmptyCell() throws ParseException, TypeError {
+        compile("A0 + C4").run(transaction);
+    }
+
+    @Test(expected = TypeError.class)
+    public void testUnknownReference() throws ParseException, TypeError {
+        compile("A0 + unknown").run(transaction);
+    }
+
+    @Test(expected = TypeError.class)
+    public void testOutOfBounds() throws ParseException, TypeError {
+        compile("A0 + Z0").run(transaction);
+    }
+
+    /**
+     * Formulas which cannot be evaluated numerically are left as trees.
+     */
+    @Test
+    public void testNotCompiled() throws ParseException {
+        assertNull(compile("A0"));
+        assertNull(compile("42"));
+        assertNull(compile("alias + 1"));
+        assertNull(Program.compile(new FormulaExpr("A0"), cells, builtins));
+        assertNull(Program.compile(Operation.plus(new Expression[]{new FormulaExpr("A0")}), cells, builtins));
+    }
+
+    /**
+     * Programs run often enough are generated into method handles which give the same results.
+     */
+    @Test
+    public void testGeneratedMatchesTree() throws ParseException, TypeError {
+        String[] formulas = {
+                "1 + 2 * 3 - 4 / 2",
+                "A0 + A1 * B0 + ten",
+                "MEDIAN(A0, B0, A1, ten)",
+                "MEAN(A0, B0) + (A0 < A1) + (A0 = 4) + (1 < 2 < 3)",
+        };
+        for (String formula : formulas) {
+            Program program = Program.compile(parser.parse(formula), cells, builtins, 2);
+            assertEquals(formula, parser.parse(formula).value(transaction.state()), new Constant(program.run(transaction)));
+            assertFalse(formula, program.isGenerated());
+            assertEquals(formula, parser.parse(formula).value(transaction.state()), new Constant(program.run(transaction)));
+            assertTrue(formula, program.isGenerated());
+            assertEquals(formula, parser.parse(formula).value(transaction.state()), new Constant(program.run(transaction)));
+        }
+    }
+
+    @Test(expected = TypeError.class)
+    public void testGeneratedEmptyCell() throws ParseException, TypeError {
+        Program program = Program.compile(parser.parse("A0 + C4"), cells, builtins, 1);
+        try {
+            program.run(transaction);
+        } catch (TypeError e) {
+            assertTrue(program.isGenerated());
+        }
+        program.run(transaction);
+    }
+
+    /**
+     * Dividing by zero before a later argument which is not numeric fails with a type error
+     * whether the program is interpreted or generated, as every argument is evaluated before dividing.
+     */
+    @Test
+    public void testGeneratedDivideFailure() {
+        Expression formula = Operation.divide(new Expression[]{new Reference("A0"), new Constant(0),
+                new Reference("C4")});
+        Program interpreted = Program.compile(formula, cells, builtins);
+        Program generated = Program.compile(formula, cells, builtins, 1);
+        for (Program program : new Program[]{interpreted, generated}) {
+            for (int run = 0; run < 3; run++) {
+                try {
+                    program.run(transaction);
+                    fail("Division with an empty argument did not fail.");
+                } catch (TypeError expected) {
+                    // every argument is evaluated before dividing by zero
+                }
+            }
+        }
+        assertFalse(interpreted.isGenerated());
+        assertTrue(generated.isGenerated());
+    }
+
+    /**
+     * A sheet generating every formula gives the same values as one interpreting them.
+     */
+    @Test
+    public void testGeneratedSheet() throws FunException {
+        SheetBuilder builder = new SheetBuilder(parser, new Nothing());
+        Sheet interpreted = builder.empty(60, 1);
+        Sheet generated = builder.generateHotFormulas(1).empty(60, 1);
+        for (Sheet sheet : new Sheet[]{interpreted, generated}) {
+            new Fibonacci(60).draw(sheet);
+            sheet.update(1, 0, "2");
+            sheet.update(2, 0, "3");
+        }
+        for (int row = 0; row < 60; row++) {
+            assertEquals(interpreted.valueAt(row, 0).getContent(), generated.valueAt(row, 0).getContent());
+        }
+    }
+
+    /**
+     * Repeated subexpressions shared by an optimizing factory are evaluated once and give the same results.
+     */
+    @Test
+    public void testSharedSubexpressions() throws ParseException, TypeError {
+        Parser optimizing = new ComplexParser(new OptimizingFactory(new CoreFactory()));
+        String[] formulas = {
+                "(A0 - B0) * (A0 - B0)",
+                "MEAN(A0 - A1, B0) + (A0 - A1) / 2",
+                "(A0 - B0) * (A0 - B0) + C4 - C4",
+        };
+        for (String formula : formulas) {
+            Expression shared = optimizing.parse(formula);
+            for (int threshold : new int[]{Program.NEVER, 1}) {
+                Program program = Program.compile(shared, cells, builtins, threshold);
+                assertNotNull(formula, program);
+                try {
+                    assertEquals(formula, parser.parse(formula).value(transaction.state()),
+                            new Constant(program.run(transaction)));
+                } catch (TypeError e) {
+                    assertThrows(formula, TypeError.class, () -> parser.parse(formula).value(transaction.state()));
+                }
+            }
+        }
+    }
+
+    /**
+     * A generated handle computes each shared subexpression once,
+     * so a formula doubling a shared subexpression at every level stays linear in its depth.
+     */
+    @Test(timeout = 10000)
+    public void testGeneratedDeeplyShared() throws TypeError {
+        Expression formula = new Reference("A0");
+        long expected = 4;
+        for (int level = 0; level < 40; level++) {
+            formula = Operation.minus(new Expression[]{Operation.plus(new Expression[]{formula, formula}),
+                    new Reference("A0")});
+            expected = expected + expected - 4;
+        }
+        Program program = Program.compile(formula, cells, builtins, 1);
+        assertNotNull(program);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, program.run(transaction));
+        }
+        assertTrue(program.isGenerated());
+    }
+
+    /**
+     * The generated handle of a relative program reads cells relative to the slot it is run for.
+     */
+    @Test
+    public void testGeneratedRelative() throws ParseException, TypeError {
+        cells.setValue(cells.slot(2, 0), new Constant(5));
+        Program program = Program.compileRelative(parser.parse("(A1 * A0) + A1"), cells, cells.slot(2, 0), 1);
+        assertEquals(6 * 4 + 6, program.run(transaction, cells.slot(2, 0)));
+        assertTrue(program.isGenerated());
+        assertEquals(6 * 4 + 6, program.run(transaction, cells.slot(2, 0)));
+        assertEquals("Generated handle did not read cells relative to the slot.",
+                5 * 6 + 5, program.run(transaction, cells.slot(3, 0)));
+    }
+}
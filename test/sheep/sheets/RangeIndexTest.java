@@ -0,0 +1,90 @@
+package sheep.sheets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RangeIndexTest {
+    private RangeIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RangeIndex();
+    }
+
+    private List<Integer> containing(int row, int column) {
+        List<Integer> dependants = new ArrayList<>();
+        index.forEachContaining(row, column, dependants::add);
+        dependants.sort(null);
+        return dependants;
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(List.of(), containing(0, 0));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testContaining() {
+        index.add(1, 0, 100000, 0, 7);
+        index.add(5, 0, 10, 2, 8);
+        assertEquals(List.of(7), containing(1, 0));
+        assertEquals(List.of(7, 8), containing(5, 0));
+        assertEquals(List.of(8), containing(10, 2));
+        assertEquals(List.of(), containing(11, 2));
+        assertEquals(List.of(), containing(0, 0));
+        assertEquals(List.of(7), containing(100000, 0));
+    }
+
+    @Test
+    public void testRemove() {
+        index.add(1, 0, 10, 0, 7);
+        index.add(1, 0, 10, 0, 7);
+        index.add(1, 0, 10, 0, 8);
+        index.remove(1, 0, 10, 0, 7);
+        assertEquals("A range added twice is only removed once.", List.of(7, 8), containing(3, 0));
+        index.remove(1, 0, 10, 0, 7);
+        assertEquals(List.of(8), containing(3, 0));
+        index.remove(1, 0, 10, 0, 9);
+        assertEquals("Removing an unknown range changed the index.", 1, index.size());
+    }
+
+    /**
+     * The index finds exactly the ranges a brute force search would.
+     */
+    @Test
+    public void testMatchesBruteForce() {
+        Random random = new Random(7023);
+        List<int[]> ranges = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            int top = random.nextInt(500);
+            int left = random.nextInt(10);
+            int[] range = {top, left, top + random.nextInt(50), left + random.nextInt(3), i};
+            ranges.add(range);
+            index.add(range[0], range[1], range[2], range[3], range[4]);
+        }
+        for (int i = 0; i < 1000; i++) {
+            int[] range = ranges.remove(random.nextInt(ranges.size()));
+            index.remove(range[0], range[1], range[2], range[3], range[4]);
+        }
+        assertEquals(ranges.size(), index.size());
+        for (int row = 0; row < 560; row += 3) {
+            for (int column = 0; column < 13; column++) {
+                List<Integer> expected = new ArrayList<>();
+                for (int[] range : ranges) {
+                    if (range[0] <= row && row <= range[2] && range[1] <= column && column <= range[3]) {
+                        expected.add(range[4]);
+                    }
+                }
+                expected.sort(null);
+                assertEquals(expected, containing(row, column));
+            }
+        }
+    }
+}
@@ -1,14 +1,27 @@
 package sheep.sheets;
 
+import sheep.core.UpdateResponse;
+import sheep.expression.CoreFactory;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
 import sheep.expression.basic.Constant;
+import sheep.parsing.ComplexParser;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
+import sheep.parsing.PrattParser;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Before;
 import org.junit.Rule;
@@ -122,4 +135,137 @@ public class SheetBuilderTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a sheet far larger than the dense limit and uses cells at its extremes.
+     */
+    @Test
+    public void testEmptyLarge() throws TypeError {
+        Sheet large = builder.empty(2_000_000, 20);
+        large.update(new CellLocation(1_999_999, 19), new FormulaExpr("Far"));
+        large.update(new CellLocation(0, 0), new RefExpr("T1999999"));
+        assertEquals("Value(Far)", large.valueAt(0, 0).getContent());
+        assertEquals(new DummyExpression(), large.formulaAt(new CellLocation(1_000_000, 10)));
+        assertEquals(Set.of(new CellLocation(0, 0)), large.usedBy(new CellLocation(1_999_999, 19)));
+    }
+
+    /**
+     * Loads a sheet with a forward reference, a reference loop, and a type error,
+     * and asserts that only the problem cells are reported and reset.
+     */
+    @Test
+    public void testLoadReportsFailures() throws IOException, ParseException {
+        File file = File.createTempFile("sheet", ".sheep");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("A1 + 1|B1|1 + DEATH\n2|B0|C0 + 1");
+        }
+
+        CoreFactory factory = new CoreFactory();
+        SheetBuilder loader = new SheetBuilder(new ComplexParser(factory), factory.createEmpty());
+        Map<CellLocation, UpdateResponse> failures = new HashMap<>();
+        Sheet loaded = loader.load(file.getPath(), failures);
+
+        assertEquals("3", loaded.valueAt(0, 0).getContent());
+        assertEquals("2", loaded.valueAt(1, 0).getContent());
+        assertEquals(Set.of(new CellLocation(0, 1), new CellLocation(1, 1),
+                new CellLocation(0, 2), new CellLocation(1, 2)), failures.keySet());
+        assertEquals("", loaded.formulaAt(0, 1).getContent());
+        assertEquals("", loaded.formulaAt(0, 2).getContent());
+        assertTrue(failures.get(new CellLocation(0, 1)).getMessage().startsWith("Circular reference"));
+        assertTrue(failures.get(new CellLocation(0, 2)).getMessage().startsWith("Type error"));
+    }
+
+    /**
+     * Loads a sheet where every row holds the same formulas,
+     * and asserts that each distinct formula is only parsed once.
+     */
+    @Test
+    public void testLoadParsesRepeatedFormulasOnce() throws IOException, ParseException {
+        File file = File.createTempFile("sheet", ".sheep");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            for (int row = 0; row < 50; row++) {
+                writer.write("1|A0 + 1|B0 * 2\n");
+            }
+        }
+
+        CoreFactory factory = new CoreFactory();
+        Parser complex = new ComplexParser(factory);
+        int[] parsed = {0};
+        Parser counting = input -> {
+            parsed[0]++;
+            return complex.parse(input);
+        };
+        Sheet loaded = new SheetBuilder(counting, factory.createEmpty()).load(file.getPath());
+
+        assertEquals("Repeated formulas were parsed again.", 3, parsed[0]);
+        assertEquals("4", loaded.valueAt(49, 2).getContent());
+    }
+
+    private static File write(String contents) throws IOException {
+        File file = File.createTempFile("sheet", ".sheep");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    /**
+     * Loads a large sheet parsing on a pool,
+     * and asserts that it is identical to loading it serially, including the order of the failures.
+     */
+    @Test
+    public void testParallelLoadMatchesSerial() throws IOException, ParseException {
+        StringBuilder contents = new StringBuilder();
+        for (int row = 0; row < 1000; row++) {
+            contents.append(row).append("|A").append(row).append(" * 2|(").append(row).append('\n');
+        }
+        File file = write(contents.toString());
+
+        CoreFactory factory = new CoreFactory();
+        Map<CellLocation, UpdateResponse> serialFailures = new LinkedHashMap<>();
+        Sheet serial = new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                .load(file.getPath(), serialFailures);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<CellLocation, UpdateResponse> parallelFailures = new LinkedHashMap<>();
+            Sheet parallel = new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                    .parseOn(pool)
+                    .load(file.getPath(), parallelFailures);
+            assertEquals("Parallel load did not give the same sheet.", serial.encode(), parallel.encode());
+            assertEquals("1998", parallel.valueAt(999, 1).getContent());
+            assertEquals("Parallel load did not report failures in the same order.",
+                    new ArrayList<>(serialFailures.keySet()), new ArrayList<>(parallelFailures.keySet()));
+            assertEquals(1000, parallelFailures.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Loads several files at once and asserts that the sheets are returned in the order of the files.
+     */
+    @Test
+    public void testLoadAll() throws IOException, ParseException {
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            files.add(write(i + "|A0 + 1").getPath());
+        }
+        CoreFactory factory = new CoreFactory();
+        List<Sheet> sheets = new SheetBuilder(new PrattParser(factory), factory.createEmpty()).loadAll(files);
+        assertEquals(8, sheets.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals("Sheet was not loaded from the file in the same position.",
+                    String.valueOf(i + 1), sheets.get(i).valueAt(0, 1).getContent());
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testLoadAllMissingFile() throws IOException, ParseException {
+        CoreFactory factory = new CoreFactory();
+        new SheetBuilder(new PrattParser(factory), factory.createEmpty())
+                .loadAll(List.of(write("1").getPath(), "this-file-does-not-exist.sheep"));
+    }
+}
@@ -2,9 +2,13 @@ package sheep.sheets;
 
 import sheep.core.UpdateResponse;
 import sheep.core.ViewElement;
+import sheep.expression.CoreFactory;
 import sheep.expression.Expression;
 import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Nothing;
 import sheep.expression.basic.Reference;
+import sheep.parsing.ComplexParser;
 import sheep.parsing.ParseException;
 import sheep.parsing.Parser;
 
@@ -368,6 +372,42 @@ public class SheetTest {
                 "Value(NewValue)", base.valueAt(0, 0).getContent());
     }
 
+    /**
+     * Builds a ladder of diamonds, where both cells of each row read both cells of the row above,
+     * and asserts that updating the top cell evaluates every dependant exactly once.
+     */
+    @Test(timeout = 6000)
+    public void testUpdateDiamondEvaluatesOnce() throws TypeError {
+        Map<CellLocation, Integer> evaluations = new HashMap<>();
+        for (int row = 1; row < NUM_ROWS; row++) {
+            for (int column = 0; column < 2; column++) {
+                CellLocation location = new CellLocation(row, column);
+                Set<String> above = Set.of("A" + (row - 1), "B" + (row - 1));
+                base.update(location, new FormulaExpr("Diamond") {
+                    @Override
+                    public Set<String> dependencies() {
+                        return above;
+                    }
+
+                    @Override
+                    public Expression value(Map<String, Expression> state) {
+                        evaluations.merge(location, 1, Integer::sum);
+                        return new ValueExpr("Diamond");
+                    }
+                });
+            }
+        }
+
+        evaluations.clear();
+        base.update(new CellLocation(0, 0), new FormulaExpr("Top"));
+        for (int row = 1; row < NUM_ROWS; row++) {
+            for (int column = 0; column < 2; column++) {
+                assertEquals("Dependant cell was not evaluated exactly once.",
+                        Integer.valueOf(1), evaluations.get(new CellLocation(row, column)));
+            }
+        }
+    }
+
     @Test(timeout = 6000)
     public void testUpdateTypeError() {
         UpdateResponse response = base.update(1, 2, SpecialStrings.ThrowTypeError.label);
@@ -445,6 +485,37 @@ public class SheetTest {
         assertEquals("Value(NewValue)", base.valueAt(0, 0).getContent());
     }
 
+    @Test(timeout = 6000)
+    public void testUpdateAllForwardReference() {
+        Map<CellLocation, String> inputs = new LinkedHashMap<>();
+        inputs.put(new CellLocation(0, 0), "->A1");
+        inputs.put(new CellLocation(1, 0), "AtA1");
+        Map<CellLocation, UpdateResponse> responses = base.updateAll(inputs);
+
+        assertEquals(inputs.keySet(), responses.keySet());
+        assertTrue(responses.values().stream().allMatch(UpdateResponse::isSuccess));
+        assertEquals("Ref(A1)", base.formulaAt(0, 0).getContent());
+        assertEquals("Value(AtA1)", base.valueAt(0, 0).getContent());
+        assertEquals("Value(AtA1)", base.valueAt(1, 0).getContent());
+    }
+
+    @Test(timeout = 6000)
+    public void testUpdateAllReportsEachCell() {
+        Map<CellLocation, String> inputs = new LinkedHashMap<>();
+        inputs.put(new CellLocation(0, 0), "Fine");
+        inputs.put(new CellLocation(0, 1), SpecialStrings.ThrowTypeError.label);
+        inputs.put(new CellLocation(0, 2), SpecialStrings.ThrowParseException.label);
+        Map<CellLocation, UpdateResponse> responses = base.updateAll(inputs);
+
+        assertTrue(responses.get(new CellLocation(0, 0)).isSuccess());
+        assertTrue(responses.get(new CellLocation(0, 1)).getMessage()
+                .startsWith("Type error: sheep.expression.TypeError"));
+        assertEquals("Unable to parse: " + SpecialStrings.ThrowParseException.label,
+                responses.get(new CellLocation(0, 2)).getMessage());
+        assertEquals("Value(Fine)", base.valueAt(0, 0).getContent());
+        assertEquals("Formula(Default)", base.formulaAt(0, 1).getContent());
+    }
+
     @Test(timeout = 6000)
     public void testResolveBuiltIn() throws TypeError {
         Parser parser = new EchoParser();
@@ -546,4 +617,145 @@ public class SheetTest {
                 )),
                 base.usedBy(new CellLocation(4, 0)));
     }
+
+    /**
+     * Changing any cell within a range recalculates the formulas using the range.
+     */
+    @Test
+    public void testRangeUsages() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Nothing()).empty(6, 3);
+        for (int row = 0; row < 4; row++) {
+            sheet.update(row, 0, String.valueOf(row + 1));
+        }
+        assertTrue(sheet.update(0, 1, "SUM(A0:A3)").isSuccess());
+        assertTrue(sheet.update(1, 1, "MEAN(A0:A3) + B0").isSuccess());
+        assertTrue(sheet.update(2, 1, "MEDIAN(A0:A3, 100)").isSuccess());
+        assertEquals("10", sheet.valueAt(0, 1).getContent());
+        assertEquals("12", sheet.valueAt(1, 1).getContent());
+        assertEquals("3", sheet.valueAt(2, 1).getContent());
+
+        sheet.update(3, 0, "14");
+        assertEquals("20", sheet.valueAt(0, 1).getContent());
+        assertEquals("25", sheet.valueAt(1, 1).getContent());
+        assertEquals("3", sheet.valueAt(2, 1).getContent());
+        assertTrue(sheet.usedBy(new CellLocation(2, 0)).contains(new CellLocation(0, 1)));
+
+        // an empty cell within a range is not numeric, neither is a range on its own
+        assertFalse(sheet.update(3, 1, "SUM(A0:A4)").isSuccess());
+        assertTrue(sheet.update(3, 1, "A0:A3").isSuccess());
+        assertFalse(sheet.update(4, 1, "B3 + 1").isSuccess());
+    }
+
+    /**
+     * A range over a whole column is a single usage rather than one usage per cell.
+     */
+    @Test
+    public void testLargeRangeUsages() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Constant(0)).empty(100000, 2);
+        assertTrue(sheet.update(0, 1, "SUM(A0:A99999)").isSuccess());
+        sheet.update(1, 1, "B0 + 1");
+        assertEquals(Set.of(new CellLocation(0, 1), new CellLocation(1, 1)), sheet.usedBy(new CellLocation(5000, 0)));
+        sheet.update(0, 1, "1");
+        assertEquals(Set.of(), sheet.usedBy(new CellLocation(5000, 0)));
+    }
+
+    /**
+     * Sums over ranges maintained incrementally agree with summing every cell after each edit.
+     */
+    @Test
+    public void testIncrementalRangeSums() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Constant(0)).empty(1000, 3);
+        assertTrue(sheet.update(0, 1, "SUM(A0:A999)").isSuccess());
+        assertTrue(sheet.update(1, 1, "MEAN(A10:A19) + B0").isSuccess());
+        assertTrue(sheet.update(0, 2, "A0:A999 + 1").isSuccess());
+        Random random = new Random(7);
+        long[] column = new long[1000];
+        for (int i = 0; i < 200; i++) {
+            int row = random.nextInt(1000);
+            column[row] = random.nextInt(2000);
+            assertTrue(sheet.update(row, 0, String.valueOf(column[row])).isSuccess());
+            long sum = Arrays.stream(column).sum();
+            long mean = Arrays.stream(column, 10, 20).sum() / 10;
+            assertEquals(String.valueOf(sum), sheet.valueAt(0, 1).getContent());
+            assertEquals(String.valueOf(mean + sum), sheet.valueAt(1, 1).getContent());
+            assertEquals(String.valueOf(sum + 1), sheet.valueAt(0, 2).getContent());
+        }
+
+        // a cell within the range without a number still fails as if every cell were read
+        assertFalse(sheet.update(15, 0, "A0:A1").isSuccess());
+        assertEquals(String.valueOf(Arrays.stream(column).sum()), sheet.valueAt(0, 1).getContent());
+    }
+
+    /**
+     * Medians over ranges kept in order agree with sorting every cell after each edit.
+     */
+    @Test
+    public void testIncrementalRangeMedians() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Constant(0)).empty(500, 3);
+        assertTrue(sheet.update(0, 1, "MEDIAN(A0:A499)").isSuccess());
+        assertTrue(sheet.update(1, 1, "MEDIAN(A0:A98) + B0").isSuccess());
+        assertTrue(sheet.update(2, 1, "MEDIAN(A0:A3, 100)").isSuccess());
+        Random random = new Random(5);
+        long[] column = new long[500];
+        for (int i = 0; i < 200; i++) {
+            int row = random.nextInt(500);
+            column[row] = random.nextInt(100);
+            assertTrue(sheet.update(row, 0, String.valueOf(column[row])).isSuccess());
+            long[] whole = column.clone();
+            Arrays.sort(whole);
+            long[] part = Arrays.copyOf(column, 99);
+            Arrays.sort(part);
+            long median = (whole[249] + whole[250]) / 2;
+            assertEquals(String.valueOf(median), sheet.valueAt(0, 1).getContent());
+            assertEquals(String.valueOf(part[49] + median), sheet.valueAt(1, 1).getContent());
+        }
+
+        // a cell within the range without a number still fails as if every cell were read
+        assertFalse(sheet.update(7, 0, "A0:A1").isSuccess());
+        sheet.update(0, 1, "1");
+        sheet.update(1, 1, "1");
+        assertTrue(sheet.update(7, 0, "A0:A1").isSuccess());
+    }
+
+    /**
+     * Errors held as values are rendered in their cell and passed on to the cells using them.
+     */
+    @Test
+    public void testErrorsAsValues() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Nothing())
+                .holdErrorsAsValues(true)
+                .empty(5, 3);
+        assertTrue(sheet.update(0, 0, "10").isSuccess());
+        assertTrue(sheet.update(1, 0, "A0 / 0").isSuccess());
+        assertTrue(sheet.update(2, 0, "A1 + 1").isSuccess());
+        assertTrue(sheet.update(3, 0, "C4 + 1").isSuccess());
+        assertTrue(sheet.update(0, 1, "SUM(A0:A2)").isSuccess());
+        assertEquals("#DIV0", sheet.valueAt(1, 0).getContent());
+        assertEquals("#DIV0", sheet.valueAt(2, 0).getContent());
+        assertEquals("#TYPE", sheet.valueAt(3, 0).getContent());
+        assertEquals("#DIV0", sheet.valueAt(0, 1).getContent());
+
+        // fixing the cell fixes every cell using it
+        assertTrue(sheet.update(1, 0, "A0 / 2").isSuccess());
+        assertEquals("6", sheet.valueAt(2, 0).getContent());
+        assertEquals("21", sheet.valueAt(0, 1).getContent());
+
+        // one bad cell does not prevent the rest of a batch from being applied
+        Map<CellLocation, String> inputs = new LinkedHashMap<>();
+        inputs.put(new CellLocation(4, 0), "C4 * 2");
+        inputs.put(new CellLocation(4, 1), "A0 * 2");
+        assertTrue(sheet.updateAll(inputs).values().stream().allMatch(UpdateResponse::isSuccess));
+        assertEquals("#TYPE", sheet.valueAt(4, 0).getContent());
+        assertEquals("20", sheet.valueAt(4, 1).getContent());
+    }
+
+    /**
+     * A strict sheet still rejects updates resulting in a type error.
+     */
+    @Test
+    public void testStrictByDefault() {
+        Sheet sheet = new SheetBuilder(new ComplexParser(new CoreFactory()), new Nothing()).empty(5, 3);
+        assertFalse(sheet.update(0, 0, "C4 + 1").isSuccess());
+        assertEquals("", sheet.valueAt(0, 0).getContent());
+    }
 }
@@ -0,0 +1,31 @@
+package sheep.sheets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SlotListTest {
+    @Test
+    public void testAppendGrows() {
+        SlotList list = new SlotList();
+        for (int slot = 0; slot < 100; slot++) {
+            list.accept(slot);
+        }
+        assertEquals(100, list.size());
+        assertEquals(42, list.get(42));
+        assertEquals(99, list.pop());
+        assertEquals(99, list.size());
+    }
+
+    @Test
+    public void testTruncate() {
+        SlotList list = new SlotList();
+        list.accept(3);
+        list.accept(5);
+        list.accept(7);
+        list.truncate(1);
+        assertEquals("Truncated list kept later slots.", 1, list.size());
+        list.accept(9);
+        assertEquals("Slot appended after truncating was not placed at the end.", 9, list.get(1));
+    }
+}
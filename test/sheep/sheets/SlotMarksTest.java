@@ -0,0 +1,36 @@
+package sheep.sheets;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SlotMarksTest {
+    @Test
+    public void testMark() {
+        SlotMarks marks = new SlotMarks(10000);
+        assertFalse(marks.isMarked(5000));
+        assertTrue("Unmarked slot was not newly marked.", marks.mark(5000));
+        assertFalse("Marked slot was newly marked again.", marks.mark(5000));
+        assertTrue(marks.isMarked(5000));
+        assertFalse("Neighbouring slot was marked.", marks.isMarked(5001));
+    }
+
+    @Test
+    public void testClear() {
+        SlotMarks marks = new SlotMarks(10000);
+        marks.mark(0);
+        marks.mark(9999);
+        marks.clear();
+        assertFalse("Slot remained marked after clearing.", marks.isMarked(0));
+        assertFalse("Slot remained marked after clearing.", marks.isMarked(9999));
+        assertTrue(marks.mark(9999));
+    }
+
+    @Test
+    public void testLargeSheet() {
+        SlotMarks marks = new SlotMarks(Integer.MAX_VALUE);
+        assertTrue(marks.mark(Integer.MAX_VALUE - 1));
+        assertTrue(marks.isMarked(Integer.MAX_VALUE - 1));
+        assertFalse(marks.isMarked(0));
+    }
+}
@@ -0,0 +1,61 @@
+package sheep.sheets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SparseCellStoreTest {
+    private static final int ROWS = 4_000_000;
+    private static final int COLUMNS = 26;
+
+    private SparseCellStore cells;
+
+    @Before
+    public void setUp() {
+        cells = new SparseCellStore(new FormulaExpr("Default"), ROWS, COLUMNS);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals(new FormulaExpr("Default"), cells.formula(cells.slot(ROWS - 1, COLUMNS - 1)));
+        assertEquals(new FormulaExpr("Default"), cells.value(0));
+        assertEquals(0, cells.dependantCount(12345));
+        assertEquals(0, cells.chunkCount());
+    }
+
+    @Test
+    public void testPopulateAndClear() {
+        int slot = cells.slot(ROWS - 1, 3);
+        cells.setFormula(slot, new FormulaExpr("Set"));
+        cells.setValue(slot, new ValueExpr("Set"));
+        assertEquals(new FormulaExpr("Set"), cells.formula(slot));
+        assertEquals(new ValueExpr("Set"), cells.value(slot));
+        assertEquals(new FormulaExpr("Default"), cells.formula(slot + 1));
+        assertEquals(1, cells.chunkCount());
+
+        cells.setFormula(slot, cells.defaultExpression);
+        assertEquals(1, cells.chunkCount());
+        cells.setValue(slot, cells.defaultExpression);
+        assertEquals(0, cells.chunkCount());
+    }
+
+    @Test
+    public void testDependants() {
+        cells.addDependant(7, 1_000_000);
+        cells.addDependant(7, 2_000_000);
+        assertEquals(2, cells.dependantCount(7));
+        assertEquals(1, cells.chunkCount());
+
+        cells.removeDependant(7, 1_000_000);
+        assertEquals(2_000_000, cells.dependant(7, 0));
+        cells.removeDependant(7, 2_000_000);
+        assertEquals(0, cells.dependantCount(7));
+        assertEquals(0, cells.chunkCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyCells() {
+        new SparseCellStore(new FormulaExpr("Default"), Integer.MAX_VALUE, COLUMNS);
+    }
+}
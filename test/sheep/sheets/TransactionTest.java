@@ -0,0 +1,116 @@
+package sheep.sheets;
+
+import sheep.core.ReferenceCodec;
+import sheep.expression.Expression;
+import sheep.expression.TypeError;
+import sheep.expression.basic.Constant;
+import sheep.expression.basic.Range;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TransactionTest {
+    private CellStore cells;
+    private Transaction transaction;
+
+    @Before
+    public void setUp() {
+        Map<String, Expression> builtins = new HashMap<>();
+        builtins.put("dood", new ValueExpr("3490524077"));
+        cells = new DenseCellStore(new FormulaExpr("Default"), 5, 3);
+        cells.setValue(cells.slot(1, 0), new ValueExpr("AtA1"));
+        transaction = new Transaction(cells, builtins);
+    }
+
+    /**
+     * Unchanged cells and built-ins resolve to their committed values.
+     */
+    @Test
+    public void testReadThrough() {
+        assertEquals(new ValueExpr("AtA1"), transaction.state().get("A1"));
+        assertEquals(new ValueExpr("3490524077"), transaction.state().get("dood"));
+        assertTrue(transaction.state().containsKey("C4"));
+        assertFalse(transaction.state().containsKey("D4"));
+        assertFalse(transaction.state().containsKey("A5"));
+        assertFalse(transaction.state().containsKey("A01"));
+        assertNull(transaction.state().get("unknown"));
+    }
+
+    /**
+     * Pending writes are visible to the transaction but not to the sheet until committed.
+     */
+    @Test
+    public void testWriteIsolated() {
+        transaction.state().put("A1", new ValueExpr("Pending"));
+        assertEquals(new ValueExpr("Pending"), transaction.state().get("A1"));
+        assertEquals(new ValueExpr("AtA1"), cells.value(cells.slot(1, 0)));
+        assertEquals(Map.of(cells.slot(1, 0), new ValueExpr("Pending")), transaction.changes());
+
+        transaction.commit();
+        assertEquals(new ValueExpr("Pending"), cells.value(cells.slot(1, 0)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testWriteBuiltIn() {
+        transaction.state().put("dood", new ValueExpr("Pending"));
+    }
+
+    /**
+     * Medians of ordered ranges account for pending changes without modifying the ordered numbers.
+     */
+    @Test
+    public void testOrderedMedian() throws TypeError {
+        cells = new DenseCellStore(new Constant(0), 10, 1);
+        for (int row = 0; row < 10; row++) {
+            cells.setValue(row, new Constant(row));
+        }
+        cells.statistics().retain(0, 0, 9, 0);
+        Range range = new Range(ReferenceCodec.pack(0, 0), ReferenceCodec.pack(9, 0));
+        transaction = new Transaction(cells, Map.of());
+        assertEquals(4, transaction.median(range));
+        assertNotNull(cells.statistics().ordered(0, 0, 9, 0));
+
+        transaction.put(0, new Constant(100));
+        transaction.put(1, new Constant(100));
+        transaction.put(2, new Constant(50));
+        assertEquals(7, transaction.median(range));
+        assertEquals(4, new Transaction(cells, Map.of()).median(range));
+
+        transaction.commit();
+        assertEquals(7, new Transaction(cells, Map.of()).median(range));
+        assertEquals(10, cells.statistics().ordered(0, 0, 9, 0).numbers().size());
+    }
+
+    /**
+     * Only the ordered ranges containing a replaced cell are adjusted,
+     * including ranges collected after others were discarded.
+     */
+    @Test
+    public void testOrderedRangesReplaced() throws TypeError {
+        cells = new DenseCellStore(new Constant(0), 10, 2);
+        RangeStatistics statistics = cells.statistics();
+        statistics.retain(0, 0, 4, 0);
+        statistics.retain(5, 0, 9, 1);
+        statistics.ordered(0, 0, 4, 0);
+        statistics.ordered(5, 0, 9, 1);
+        statistics.release(0, 0, 4, 0);
+        statistics.retain(0, 0, 9, 0);
+        statistics.ordered(0, 0, 9, 0);
+
+        cells.setValue(cells.slot(7, 0), new Constant(8));
+        cells.setValue(cells.slot(2, 1), new Constant(3));
+        Range column = new Range(ReferenceCodec.pack(0, 0), ReferenceCodec.pack(9, 0));
+        Range block = new Range(ReferenceCodec.pack(5, 0), ReferenceCodec.pack(9, 1));
+        assertEquals("Range collected after another was discarded was not adjusted.",
+                8, statistics.ordered(0, 0, 9, 0).numbers().select(9));
+        assertEquals(8, statistics.ordered(5, 0, 9, 1).numbers().select(9));
+        assertEquals("Cell outside the range was counted.", 9, statistics.ordered(5, 0, 9, 1).numbers().countAtMost(2));
+        assertEquals(0, new Transaction(cells, Map.of()).median(column));
+        assertEquals(0, new Transaction(cells, Map.of()).median(block));
+    }
+}